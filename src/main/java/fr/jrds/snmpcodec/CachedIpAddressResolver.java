@@ -0,0 +1,106 @@
+package fr.jrds.snmpcodec;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
+
+import fr.jrds.snmpcodec.log.LogAdapter;
+
+/**
+ * An {@link IpAddressResolver} with a bounded LRU cache, that can resolve the names in the background.
+ */
+class CachedIpAddressResolver implements IpAddressResolver {
+
+    private static final LogAdapter logger = LogAdapter.getLogger(CachedIpAddressResolver.class);
+
+    private static class CachedName {
+        private final String name;
+        private final long expiration;
+        CachedName(String name, long expiration) {
+            this.name = name;
+            this.expiration = expiration;
+        }
+    }
+
+    private final IpAddressResolver resolver;
+    private final long ttl;
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final Map<InetAddress, CachedName> cache;
+    private final Set<InetAddress> pending = new HashSet<>();
+
+    CachedIpAddressResolver(IpAddressResolver resolver, Duration ttl, int maxSize, Executor executor, LongSupplier clock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid cache size " + maxSize);
+        }
+        this.resolver = resolver;
+        this.ttl = ttl.toNanos();
+        this.executor = executor;
+        this.clock = clock;
+        this.cache = new LinkedHashMap<>(Math.min(maxSize, 64), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InetAddress, CachedName> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public String resolve(InetAddress address) {
+        CachedName e;
+        synchronized (cache) {
+            e = cache.get(address);
+        }
+        long now = clock.getAsLong();
+        if (e != null && now - e.expiration < 0) {
+            return e.name;
+        } else if (executor == null) {
+            String name = resolver.resolve(address);
+            store(address, name);
+            return name;
+        } else {
+            refresh(address);
+            return e != null ? e.name : address.getHostAddress();
+        }
+    }
+
+    private void refresh(InetAddress address) {
+        synchronized (cache) {
+            if (! pending.add(address)) {
+                return;
+            }
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    store(address, resolver.resolve(address));
+                } catch (RuntimeException ex) {
+                    logger.warn("Failed to resolve %s: %s", address.getHostAddress(), ex.getMessage());
+                } finally {
+                    synchronized (cache) {
+                        pending.remove(address);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            synchronized (cache) {
+                pending.remove(address);
+            }
+            logger.warn("Resolution of %s rejected: %s", address.getHostAddress(), ex.getMessage());
+        }
+    }
+
+    private void store(InetAddress address, String name) {
+        CachedName e = new CachedName(name, clock.getAsLong() + ttl);
+        synchronized (cache) {
+            cache.put(address, e);
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package fr.jrds.snmpcodec;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>The policy used to format an IpAddress value.</p>
+ * <p>The default, {@link #SYSTEM}, does a blocking reverse DNS lookup for each formatted value.</p>
+ */
+@FunctionalInterface
+public interface IpAddressResolver {
+
+    /**
+     * Use {@link InetAddress#getHostName()}, a blocking reverse DNS lookup.
+     */
+    IpAddressResolver SYSTEM = InetAddress::getHostName;
+
+    /**
+     * Never resolve the address, return its numeric form.
+     */
+    IpAddressResolver NUMERIC = InetAddress::getHostAddress;
+
+    /**
+     * @param address the address to format
+     * @return the name of the address, or its numeric form
+     */
+    String resolve(InetAddress address);
+
+    /**
+     * A resolver that keeps the names found by another resolver in a bounded cache.
+     * @param resolver the resolver to use on a cache miss
+     * @param ttl how long a name is kept
+     * @param maxSize the maximum number of names kept
+     * @return a new resolver
+     */
+    static IpAddressResolver cached(IpAddressResolver resolver, Duration ttl, int maxSize) {
+        return new CachedIpAddressResolver(resolver, ttl, maxSize, null, System::nanoTime);
+    }
+
+    /**
+     * A resolver that never blocks. On a cache miss it returns the numeric form, and the name is resolved in the
+     * background using the given executor, so following calls will get it. An expired name is still used while it's
+     * refreshed.
+     * @param resolver the resolver used in the background
+     * @param ttl how long a name is kept
+     * @param maxSize the maximum number of names kept
+     * @param executor the executor that run the resolutions
+     * @return a new resolver
+     */
+    static IpAddressResolver async(IpAddressResolver resolver, Duration ttl, int maxSize, Executor executor) {
+        return new CachedIpAddressResolver(resolver, ttl, maxSize, executor, System::nanoTime);
+    }
+
+}
@@ -0,0 +1,165 @@
+package fr.jrds.snmpcodec;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+
+import fr.jrds.snmpcodec.log.LogAdapter;
+import fr.jrds.snmpcodec.parsing.MibLoader;
+import fr.jrds.snmpcodec.parsing.ModuleFragment;
+
+/**
+ * <p>A {@link MibStore} holder that loads modules when an OID from a module not yet loaded is seen.</p>
+ * <p>It uses a {@link ModuleIndex} to find the module defining the longest known prefix of an OID. If this module is not
+ * loaded, a new store is built with it in the background, and replace the current one. The current store is used until
+ * then. The stores are never modified, so the readers don't need any lock, they see either the old or the new store.</p>
+ * <p>The parsed files are kept, so a new store only parse the files of the new modules.</p>
+ */
+public class LazyMibStore {
+
+    private static final LogAdapter logger = LogAdapter.getLogger(LazyMibStore.class);
+
+    private static class State {
+        private final MibStore store;
+        // The modules asked for
+        private final Set<String> requested;
+        // The modules loaded, or that failed to load
+        private final Set<String> loaded;
+
+        private State(MibStore store, Set<String> requested, Set<String> loaded) {
+            this.store = store;
+            this.requested = requested;
+            this.loaded = loaded;
+        }
+    }
+
+    private final ModuleIndex index;
+    // Only used by the builds, that are chained
+    private final Map<Path, ModuleFragment> fragments = new HashMap<>();
+    private volatile State state;
+    // The last build, the next one is chained to it
+    private CompletableFuture<State> building;
+    private final Map<String, CompletableFuture<MibStore>> pending = new HashMap<>();
+
+    /**
+     * @param index the index of the modules files
+     * @param modules the modules to load immediately
+     */
+    public LazyMibStore(ModuleIndex index, Collection<String> modules) {
+        this.index = index;
+        this.state = build(new HashSet<>(modules), Collections.emptySet());
+        this.building = CompletableFuture.completedFuture(state);
+    }
+
+    /**
+     * @return the current store
+     */
+    public MibStore getStore() {
+        return state.store;
+    }
+
+    /**
+     * Return the current store, and if a module defining this OID is found but not loaded, load it in the background.
+     * @param oid the OID
+     * @return the current store
+     */
+    public MibStore resolve(int[] oid) {
+        State current = state;
+        String module = index.findModule(oid);
+        if (module != null && ! current.loaded.contains(module)) {
+            load(module);
+        }
+        return current.store;
+    }
+
+    /**
+     * Load a module in the background, if it's not already loaded.
+     * @param module the module name
+     * @return the store, once the module is loaded
+     */
+    public synchronized CompletableFuture<MibStore> load(String module) {
+        State current = state;
+        if (current.loaded.contains(module)) {
+            return CompletableFuture.completedFuture(current.store);
+        }
+        return pending.computeIfAbsent(module, k -> {
+            building = building.thenApplyAsync(i -> add(i, module));
+            return building.thenApply(i -> i.store);
+        });
+    }
+
+    /**
+     * @see MibStore#format(OID, Variable)
+     */
+    public String format(OID instanceOID, Variable variable) {
+        return resolve(instanceOID.getValue()).format(instanceOID, variable);
+    }
+
+    /**
+     * @see MibStore#parseIndexOID(int[])
+     */
+    public Map<String, Object> parseIndexOID(int[] oid) {
+        return resolve(oid).parseIndexOID(oid);
+    }
+
+    /**
+     * @return the modules currently loaded
+     */
+    public Set<String> getModules() {
+        return state.store.modules;
+    }
+
+    private State add(State current, String module) {
+        State next = current;
+        // Might have been loaded by a previous build, as an import
+        if (! current.loaded.contains(module)) {
+            logger.debug("Loading module %s", module);
+            Set<String> requested = new HashSet<>(current.requested);
+            requested.add(module);
+            Set<String> tried = new HashSet<>(current.loaded);
+            tried.add(module);
+            try {
+                next = build(requested, tried);
+            } catch (RuntimeException e) {
+                logger.error(e, "Failed to load module %s: %s", module, e.getMessage());
+                next = new State(current.store, current.requested, Collections.unmodifiableSet(tried));
+            }
+        }
+        synchronized (this) {
+            state = next;
+            pending.remove(module);
+        }
+        return next;
+    }
+
+    private State build(Set<String> requested, Set<String> tried) {
+        MibLoader loader = new MibLoader();
+        for (Path file: index.resolve(requested)) {
+            ModuleFragment fragment = fragments.get(file);
+            if (fragment == null) {
+                fragment = loader.parse(file);
+                // Only kept if it can be replayed again
+                if (fragment != null && fragment.keepSteps()) {
+                    fragments.put(file, fragment);
+                }
+            }
+            if (fragment != null) {
+                loader.load(fragment);
+            }
+        }
+        MibStore store = loader.buildTree();
+        Set<String> loaded = new HashSet<>(tried);
+        loaded.addAll(requested);
+        loaded.addAll(store.modules);
+        return new State(store, Collections.unmodifiableSet(requested), Collections.unmodifiableSet(loaded));
+    }
+
+}
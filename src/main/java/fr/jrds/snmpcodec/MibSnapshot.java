@@ -0,0 +1,65 @@
+package fr.jrds.snmpcodec;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import fr.jrds.snmpcodec.parsing.SnapshotFormat;
+
+/**
+ * <p>A binary snapshot of a built {@link MibStore}, that can be loaded again without parsing the modules.</p>
+ * <p>The snapshot keeps the list of the modules files used to build the store. It's considered stale if the list of
+ * files changed, or if a file changed in size or in content.</p>
+ * @see MibStore#load(Path, boolean, String...)
+ * @see MibStore#map(Path, String...)
+ */
+public class MibSnapshot {
+
+    private MibSnapshot() {
+    }
+
+    /**
+     * Read a snapshot, if it's still valid for the given modules files.
+     * @param snapshot the snapshot file
+     * @param sources the modules files, in the loading order
+     * @param compile if true, the OID tree is compiled
+     * @return the store, or null if the snapshot is missing, stale or unreadable
+     */
+    public static MibStore read(Path snapshot, Path[] sources, boolean compile) {
+        return SnapshotFormat.read(snapshot, sources, compile);
+    }
+
+    /**
+     * Write a snapshot of a store. The file is replaced atomically.
+     * @param store the store to save
+     * @param snapshot the snapshot file
+     * @param sources the modules files used to build the store, in the loading order
+     * @throws IOException if the snapshot can't be written
+     */
+    public static void write(MibStore store, Path snapshot, Path[] sources) throws IOException {
+        SnapshotFormat.write(store, snapshot, sources);
+    }
+
+    /**
+     * Map a snapshot written by {@link #writeMapped(MibStore, Path, Path[])}, if it's still valid for the given modules files.
+     * The syntaxes, object types and indexes are only built when used.
+     * @param snapshot the snapshot file
+     * @param sources the modules files, in the loading order
+     * @return the store, or null if the snapshot is missing, stale or unreadable
+     */
+    public static MibStore map(Path snapshot, Path[] sources) {
+        return SnapshotFormat.map(snapshot, sources);
+    }
+
+    /**
+     * Write a snapshot of a store that can be mapped in memory. The file is replaced atomically, so the stores
+     * already mapping the previous version are still valid.
+     * @param store the store to save
+     * @param snapshot the snapshot file
+     * @param sources the modules files used to build the store, in the loading order
+     * @throws IOException if the snapshot can't be written
+     */
+    public static void writeMapped(MibStore store, Path snapshot, Path[] sources) throws IOException {
+        SnapshotFormat.writeMapped(store, snapshot, sources);
+    }
+
+}
@@ -7,10 +7,11 @@ import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Stream;
@@ -31,6 +32,7 @@ public abstract class MibStore {
     public final Map<String, Syntax> syntaxes;
     public final Map<OidTreeNode, ObjectType> objects ;
     public final Map<OidTreeNode, Map<Integer, Trap>> resolvedTraps;
+    private volatile IpAddressResolver ipAddressResolver = IpAddressResolver.SYSTEM;
     public final Set<String> modules;
 
     protected MibStore(OidTreeNode top, Set<String> modules,
@@ -56,42 +58,63 @@ public abstract class MibStore {
      * @return The description of the OID.
      */
     public Map<String, Object> parseIndexOID(int[] oid) {
-        OidTreeNode found = top.search(oid);
+        return parseIndexOID(oid, 0, oid.length);
+    }
+
+    /**
+     * Parse a part of an OID, without copying it.
+     * @param oid to parse
+     * @param offset the first element to use
+     * @param length the number of elements to use
+     * @return The description of the OID.
+     * @see #parseIndexOID(int[])
+     */
+    public Map<String, Object> parseIndexOID(int[] oid, int offset, int length) {
+        ParsedOid parsed = new ParsedOid();
+        parseIndexOID(oid, offset, length, parsed);
+        return parsed.toMap();
+    }
+
+    /**
+     * Parse a part of an OID, and store the result in a reusable holder. The OID is not copied.
+     * @param oid to parse
+     * @param offset the first element to use
+     * @param length the number of elements to use
+     * @param result the holder for the result, it's reset before parsing
+     * @return true if the OID was found
+     * @throws IllegalArgumentException if the index values of a table cell can't be decoded
+     */
+    public boolean parseIndexOID(int[] oid, int offset, int length, ParsedOid result) {
+        result.reset(oid, offset, length);
+        OidTreeNode found = top.search(oid, offset, length);
         if(found == null) {
-            return Collections.emptyMap();
+            return false;
         }
-        Map<String, Object> parts;
-        int[] foundOID = found.getElements();
-        if(foundOID.length < oid.length ) {
+        int foundLength = found.getDepth();
+        if(foundLength < length ) {
             //The full path was not found, try to resolve the suffix as a value
 
             // It's not a table, MIB module missing, abort
             // Table check is needed, some broken implementations starts tables at index 0 (not allowed in RFC)
-            if (found.getTableEntry() == null) {
-                if (foundOID.length == oid.length  - 1 && oid[oid.length - 1] == 0) {
+            OidTreeNode table = found.getTableEntry();
+            if (table == null) {
+                if (foundLength == length  - 1 && oid[offset + length - 1] == 0) {
                     // Hey of course it was not a table, it was a oid value
-                    return Collections.singletonMap(found.getSymbol(), found.getSymbol());
+                    result.set(ParsedOid.Kind.SCALAR, found, null);
                 } else {
-                    //Don't throw uncompleted OID, store it as [String, [x, ...]]
-                    int[] numberPart = Arrays.copyOfRange(oid, foundOID.length, oid.length);
-                    return Collections.singletonMap(found.getSymbol(),new Object[] {found.getSymbol(), numberPart});
+                    result.set(ParsedOid.Kind.PARTIAL, found, null);
                 }
-            }
-            parts = new LinkedHashMap<>();
-            parts.put(found.getTableEntry().getSymbol(), found.getSymbol());
-            OidTreeNode parent = top.find(Arrays.copyOf(foundOID, foundOID.length -1 ));
-            if (parent != null) {
-                ObjectType parentCodec = objects.get(parent);
-                if(parentCodec.isIndexed()) {
-                    Index idx = parentCodec.getIndex();
-                    int[] index = Arrays.copyOfRange(oid, foundOID.length, oid.length);
-                    parts.putAll(idx.resolve(index, this));
+            } else {
+                result.set(ParsedOid.Kind.CELL, found, table);
+                Index idx = found.getIndex();
+                if (idx != null) {
+                    idx.resolve(oid, offset + foundLength, length - foundLength, result.getCollector());
                 }
             }
         } else {
-            parts = Collections.singletonMap(found.getSymbol(), found.getSymbol());
+            result.set(ParsedOid.Kind.NODE, found, null);
         }
-        return parts;
+        return true;
     }
 
     public boolean containsKey(String text) {
@@ -115,16 +138,15 @@ public abstract class MibStore {
         OidTreeNode node = top.search(instanceOID.getValue());
         if (node == null) {
             return null;
-        } else if (resolvedTraps.containsKey(node)) {
-            Trap trap = resolvedTraps.get(node).get(variable.toInt());
+        } else if (node.getTraps() != null) {
+            Trap trap = node.getTraps().get(variable.toInt());
             if (trap == null) {
                 return null;
             } else {
                 return trap.name;
             }
-        } else if (objects.containsKey(node)) {
-            ObjectType ot = objects.get(node);
-            return ot.format(variable);
+        } else if (node.getObjectType() != null) {
+            return node.getObjectType().format(variable, ipAddressResolver);
         } else {
             return null;
         }
@@ -134,16 +156,30 @@ public abstract class MibStore {
         OidTreeNode node = top.search(instanceOID.getValue());
         if (node == null) {
             return null;
-        } else if (syntaxes.containsKey(node.getSymbol())) {
-            return syntaxes.get(node.getSymbol()).parse(text);
-        } else if (objects.containsKey(node)) {
-            Syntax s = objects.get(node).getSyntax();
-            return s.parse(text);
+        } else if (node.getSyntax() != null) {
+            return node.getSyntax().parse(text);
+        } else if (node.getObjectType() != null) {
+            return node.getObjectType().getSyntax().parse(text);
         } else {
             return null;
         }
     }
 
+    /**
+     * @return the policy used to format IpAddress values
+     */
+    public IpAddressResolver getIpAddressResolver() {
+        return ipAddressResolver;
+    }
+
+    /**
+     * Change the policy used to format IpAddress values, the default is {@link IpAddressResolver#SYSTEM}.
+     * @param ipAddressResolver the new policy
+     */
+    public void setIpAddressResolver(IpAddressResolver ipAddressResolver) {
+        this.ipAddressResolver = Objects.requireNonNull(ipAddressResolver);
+    }
+
     public boolean isEmpty() {
         return modules.isEmpty();
     }
@@ -155,8 +191,85 @@ public abstract class MibStore {
      * @return a new {@link MibStore}
      */
     public static MibStore load(String... mibdirs) {
+        return load(false, mibdirs);
+    }
+
+    /**
+     * Load a mibstore using the given paths. If a file is given, it will be load. If it's a directory, all non hidden
+     * files will be loaded
+     * @param compile if true, the OID tree is compiled in a frozen, array based, form. It uses less memory but can't be modified.
+     * @param mibdirs a list of directory where
+     * @return a new {@link MibStore}
+     */
+    public static MibStore load(boolean compile, String... mibdirs) {
         MibLoader loader = new MibLoader();
-        Arrays.stream(mibdirs)
+        loader.load(sources(mibdirs));
+        return loader.buildTree(compile);
+    }
+
+    /**
+     * Load a mibstore using the given paths, and a snapshot of the built store. If the snapshot is missing, or if the
+     * modules files changed since it was written, the modules are parsed and the snapshot is written again.
+     * @param snapshot the snapshot file
+     * @param compile if true, the OID tree is compiled in a frozen, array based, form.
+     * @param mibdirs a list of directory where
+     * @return a new {@link MibStore}
+     */
+    public static MibStore load(Path snapshot, boolean compile, String... mibdirs) {
+        Path[] sources = sources(mibdirs);
+        MibStore store = MibSnapshot.read(snapshot, sources, compile);
+        if (store == null) {
+            MibLoader loader = new MibLoader();
+            loader.load(sources);
+            store = loader.buildTree(compile, snapshot, sources);
+        }
+        return store;
+    }
+
+    /**
+     * Load a mibstore from a memory mapped snapshot. The snapshot is shared between the processes that are using it and
+     * the syntaxes are only built when used. If the snapshot is missing, or if the modules files changed since it was
+     * written, the modules are parsed and the snapshot is written again.
+     * @param snapshot the snapshot file
+     * @param mibdirs a list of directory where
+     * @return a new {@link MibStore}
+     */
+    public static MibStore map(Path snapshot, String... mibdirs) {
+        Path[] sources = sources(mibdirs);
+        MibStore store = MibSnapshot.map(snapshot, sources);
+        if (store == null) {
+            MibLoader loader = new MibLoader();
+            loader.load(sources);
+            store = loader.buildMapped(snapshot, sources);
+        }
+        return store;
+    }
+
+    /**
+     * Load a mibstore with only some modules and the modules they import. The given paths are scanned for the
+     * modules headers, and only the needed files are parsed.
+     * @param index a file to keep the modules index, can be null
+     * @param modules the modules needed
+     * @param mibdirs a list of directory where
+     * @return a new {@link MibStore}
+     * @see ModuleIndex
+     */
+    public static MibStore loadModules(Path index, Collection<String> modules, String... mibdirs) {
+        Path[] sources = sources(mibdirs);
+        ModuleIndex moduleIndex = index != null ? ModuleIndex.update(index, sources) : ModuleIndex.scan(sources);
+        MibLoader loader = new MibLoader();
+        loader.load(moduleIndex.resolve(modules));
+        return loader.buildTree();
+    }
+
+    /**
+     * List the modules files in the given paths. If a file is given, it's used. If it's a directory, all non hidden
+     * files are used.
+     * @param mibdirs a list of files or directories
+     * @return the modules files
+     */
+    public static Path[] sources(String... mibdirs) {
+        return Arrays.stream(mibdirs)
                 .map(Paths::get)
                 .filter(i -> {
                     try {
@@ -167,9 +280,8 @@ public abstract class MibStore {
                     }
                 })
                 .map(MibStore::scanDirectory)
-                .forEach(loader::load);
-
-        return loader.buildTree();
+                .flatMap(Arrays::stream)
+                .toArray(Path[]::new);
     }
 
     private static Path[] scanDirectory(Path i) {
@@ -0,0 +1,648 @@
+package fr.jrds.snmpcodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fr.jrds.snmpcodec.log.LogAdapter;
+
+/**
+ * <p>An index of the modules defined in a set of files, and of the modules they import.</p>
+ * <p>The files are only scanned for the <code>X DEFINITIONS ::= BEGIN</code> headers and the IMPORTS clauses, it's much
+ * faster than parsing them. It's then used to find the files needed for a set of modules, following the imports.</p>
+ * <p>The OID values of the MODULE-IDENTITY, OBJECT-IDENTITY and OBJECT IDENTIFIER assignments are also kept, so the module
+ * defining an OID can be found without parsing it.</p>
+ * <p>The index can be saved. When loaded again, only the files with a new size or modification time are scanned again.</p>
+ */
+public class ModuleIndex {
+
+    private static final LogAdapter logger = LogAdapter.getLogger(ModuleIndex.class);
+
+    private static final int MAGIC = 0x534E4D49;
+    // To be incremented for any change in the format
+    private static final int VERSION = 2;
+
+    private static final Set<String> TAGS = Set.of("EXPLICIT", "IMPLICIT", "AUTOMATIC", "TAGS");
+
+    /**
+     * An OID value, as written in the module: an optional parent symbol, followed by numbers
+     */
+    private static class OidValue {
+        private final String parent;
+        private final int[] arcs;
+
+        private OidValue(String parent, int[] arcs) {
+            this.parent = parent;
+            this.arcs = arcs;
+        }
+    }
+
+    private static class Module {
+        private final List<String> imports = new ArrayList<>();
+        private final Map<String, OidValue> oids = new LinkedHashMap<>();
+    }
+
+    /**
+     * The tree of the known OID, with the module defining the deepest ones. The children are sorted by arc.
+     */
+    private static class Prefix {
+        private static final int[] NOARCS = new int[0];
+        private static final Prefix[] NOCHILDREN = new Prefix[0];
+        private int[] arcs = NOARCS;
+        private Prefix[] children = NOCHILDREN;
+        private String module;
+
+        private Prefix get(int arc) {
+            int i = Arrays.binarySearch(arcs, arc);
+            return i >= 0 ? children[i] : null;
+        }
+
+        private Prefix add(int arc) {
+            int i = Arrays.binarySearch(arcs, arc);
+            if (i >= 0) {
+                return children[i];
+            }
+            i = -i - 1;
+            int[] newArcs = new int[arcs.length + 1];
+            Prefix[] newChildren = new Prefix[arcs.length + 1];
+            System.arraycopy(arcs, 0, newArcs, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(arcs, i, newArcs, i + 1, arcs.length - i);
+            System.arraycopy(children, i, newChildren, i + 1, arcs.length - i);
+            newArcs[i] = arc;
+            newChildren[i] = new Prefix();
+            arcs = newArcs;
+            children = newChildren;
+            return newChildren[i];
+        }
+    }
+
+    private static class Entry {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final Map<String, Module> modules;
+
+        private Entry(String path, long size, long lastModified, Map<String, Module> modules) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.modules = modules;
+        }
+    }
+
+    private final Path[] sources;
+    private final Entry[] entries;
+    private final Map<String, Integer> definitions = new HashMap<>();
+    private final int scanned;
+    private volatile Prefix prefixes = null;
+
+    private ModuleIndex(Path[] sources, Map<String, Entry> saved) {
+        this.sources = sources;
+        this.entries = new Entry[sources.length];
+        int scannedCount = 0;
+        for (int i = 0; i < sources.length; i++) {
+            Path file = sources[i].toAbsolutePath().normalize();
+            try {
+                long size = Files.size(file);
+                long lastModified = Files.getLastModifiedTime(file).toMillis();
+                Entry e = saved.get(file.toString());
+                if (e == null || e.size != size || e.lastModified != lastModified) {
+                    e = new Entry(file.toString(), size, lastModified, scan(file));
+                    scannedCount++;
+                }
+                entries[i] = e;
+            } catch (IOException e) {
+                logger.warn("Unreadable module file %s: %s", file, e.getMessage());
+                entries[i] = new Entry(file.toString(), -1, -1, Collections.emptyMap());
+            }
+            for (String module: entries[i].modules.keySet()) {
+                Integer previous = definitions.putIfAbsent(module, i);
+                if (previous != null) {
+                    logger.debug("Module %s defined in %s and %s", module, entries[previous].path, entries[i].path);
+                }
+            }
+        }
+        scanned = scannedCount;
+    }
+
+    /**
+     * Scan the modules files.
+     * @param sources the modules files
+     * @return the index
+     */
+    public static ModuleIndex scan(Path... sources) {
+        return new ModuleIndex(sources, Collections.emptyMap());
+    }
+
+    /**
+     * Build the index of the modules files, using a previously saved index for the files that didn't change.
+     * @param index the saved index, it might be missing
+     * @param sources the modules files
+     * @return the index
+     */
+    public static ModuleIndex load(Path index, Path... sources) {
+        Map<String, Entry> saved = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String path = in.readUTF();
+                    long size = in.readLong();
+                    long lastModified = in.readLong();
+                    int modulesCount = in.readInt();
+                    Map<String, Module> modules = new LinkedHashMap<>(modulesCount);
+                    for (int j = 0; j < modulesCount; j++) {
+                        String name = in.readUTF();
+                        Module module = new Module();
+                        int importsCount = in.readInt();
+                        for (int k = 0; k < importsCount; k++) {
+                            module.imports.add(in.readUTF());
+                        }
+                        int oidsCount = in.readInt();
+                        for (int k = 0; k < oidsCount; k++) {
+                            String symbol = in.readUTF();
+                            String parent = in.readUTF();
+                            int[] arcs = new int[in.readInt()];
+                            for (int l = 0; l < arcs.length; l++) {
+                                arcs[l] = in.readInt();
+                            }
+                            module.oids.put(symbol, new OidValue(parent.isEmpty() ? null : parent, arcs));
+                        }
+                        modules.put(name, module);
+                    }
+                    saved.put(path, new Entry(path, size, lastModified, modules));
+                }
+            } else {
+                logger.info("Modules index %s has an unknown format", index);
+            }
+        } catch (NoSuchFileException e) {
+            // Will be created
+        } catch (IOException e) {
+            logger.warn("Unusable modules index %s: %s", index, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+            saved.clear();
+        }
+        return new ModuleIndex(sources, saved);
+    }
+
+    /**
+     * Build the index of the modules files using a saved index, and save it again if some files were scanned.
+     * A failure to write the index is only logged.
+     * @param index the saved index, it might be missing
+     * @param sources the modules files
+     * @return the index
+     */
+    public static ModuleIndex update(Path index, Path... sources) {
+        ModuleIndex moduleIndex = load(index, sources);
+        if (moduleIndex.scanned > 0) {
+            try {
+                moduleIndex.save(index);
+            } catch (IOException e) {
+                logger.warn("Can't write modules index %s: %s", index, e.getMessage());
+            }
+        }
+        return moduleIndex;
+    }
+
+    /**
+     * Save the index. The file is replaced atomically.
+     * @param index the index file
+     * @throws IOException if the index can't be written
+     */
+    public void save(Path index) throws IOException {
+        Path parent = index.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, index.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.length);
+                for (Entry e: entries) {
+                    out.writeUTF(e.path);
+                    out.writeLong(e.size);
+                    out.writeLong(e.lastModified);
+                    out.writeInt(e.modules.size());
+                    for (Map.Entry<String, Module> m: e.modules.entrySet()) {
+                        out.writeUTF(m.getKey());
+                        out.writeInt(m.getValue().imports.size());
+                        for (String i: m.getValue().imports) {
+                            out.writeUTF(i);
+                        }
+                        out.writeInt(m.getValue().oids.size());
+                        for (Map.Entry<String, OidValue> i: m.getValue().oids.entrySet()) {
+                            out.writeUTF(i.getKey());
+                            out.writeUTF(i.getValue().parent != null ? i.getValue().parent : "");
+                            out.writeInt(i.getValue().arcs.length);
+                            for (int arc: i.getValue().arcs) {
+                                out.writeInt(arc);
+                            }
+                        }
+                    }
+                }
+            }
+            Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return the number of files that were scanned, and not found in a saved index
+     */
+    public int getScanned() {
+        return scanned;
+    }
+
+    /**
+     * @return all the modules found
+     */
+    public Set<String> getModules() {
+        return Collections.unmodifiableSet(definitions.keySet());
+    }
+
+    /**
+     * @param module a module name
+     * @return the file defining this module, or null if it's unknown
+     */
+    public Path getFile(String module) {
+        Integer rank = definitions.get(module);
+        return rank != null ? sources[rank] : null;
+    }
+
+    /**
+     * @param module a module name
+     * @return the modules imported by this module, or null if it's unknown
+     */
+    public List<String> getImports(String module) {
+        Integer rank = definitions.get(module);
+        return rank != null ? Collections.unmodifiableList(entries[rank].modules.get(module).imports) : null;
+    }
+
+    /**
+     * Find the module defining an OID, using the OID assignments found when scanning. If many modules define a prefix
+     * of this OID, the one defining the longest prefix is returned.
+     * @param oid the OID to find
+     * @return the module name, or null if no module defines a prefix of this OID
+     */
+    public String findModule(int[] oid) {
+        Prefix current = getPrefixes();
+        String module = null;
+        for (int arc: oid) {
+            current = current.get(arc);
+            if (current == null) {
+                break;
+            } else if (current.module != null) {
+                module = current.module;
+            }
+        }
+        return module;
+    }
+
+    private Prefix getPrefixes() {
+        Prefix root = prefixes;
+        if (root == null) {
+            root = new Prefix();
+            for (Map.Entry<String, int[]> e: resolveOids().entrySet()) {
+                Prefix current = root;
+                for (int arc: e.getValue()) {
+                    current = current.add(arc);
+                }
+                // The first module defining an OID is kept
+                if (current.module == null) {
+                    current.module = e.getKey().substring(0, e.getKey().indexOf(' '));
+                }
+            }
+            prefixes = root;
+        }
+        return root;
+    }
+
+    /**
+     * Resolve the OID assignments to numerical values. A parent symbol is searched in the same module, then in the
+     * imported modules and then in any module.
+     * @return the numerical OIDs, keyed by "module symbol", in the order of the sources
+     */
+    private Map<String, int[]> resolveOids() {
+        Map<String, Map<String, Module>> definers = new HashMap<>();
+        for (Entry entry: entries) {
+            for (Map.Entry<String, Module> m: entry.modules.entrySet()) {
+                for (String symbol: m.getValue().oids.keySet()) {
+                    definers.computeIfAbsent(symbol, k -> new LinkedHashMap<>(2)).putIfAbsent(m.getKey(), m.getValue());
+                }
+            }
+        }
+        Map<String, int[]> done = new HashMap<>();
+        Map<String, int[]> resolved = new LinkedHashMap<>();
+        for (Entry entry: entries) {
+            for (Map.Entry<String, Module> m: entry.modules.entrySet()) {
+                for (String symbol: m.getValue().oids.keySet()) {
+                    int[] oid = resolveOid(m.getKey(), m.getValue(), symbol, definers, done);
+                    if (oid != null) {
+                        resolved.put(m.getKey() + " " + symbol, oid);
+                    }
+                }
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Resolve an OID assignment, after its parent. Each assignment is resolved only once, a loop is unresolved.
+     */
+    private int[] resolveOid(String name, Module module, String symbol, Map<String, Map<String, Module>> definers, Map<String, int[]> done) {
+        String key = name + " " + symbol;
+        if (done.containsKey(key)) {
+            return done.get(key);
+        }
+        // Marks the assignment as being resolved, a loop will find null
+        done.put(key, null);
+        OidValue value = module.oids.get(symbol);
+        int[] parent = value.parent != null ? resolveParent(name, module, value.parent, definers, done) : new int[0];
+        int[] oid = null;
+        if (parent != null) {
+            oid = Arrays.copyOf(parent, parent.length + value.arcs.length);
+            System.arraycopy(value.arcs, 0, oid, parent.length, value.arcs.length);
+        }
+        done.put(key, oid);
+        return oid;
+    }
+
+    private int[] resolveParent(String name, Module module, String parent, Map<String, Map<String, Module>> definers, Map<String, int[]> done) {
+        if (module.oids.containsKey(parent)) {
+            return resolveOid(name, module, parent, definers, done);
+        }
+        switch (parent) {
+        case "ccitt":
+            return new int[] {0};
+        case "iso":
+            return new int[] {1};
+        case "joint-iso-ccitt":
+            return new int[] {2};
+        default:
+            break;
+        }
+        Map<String, Module> candidates = definers.getOrDefault(parent, Collections.emptyMap());
+        for (String imported: module.imports) {
+            Module candidate = candidates.get(imported);
+            int[] oid = candidate != null ? resolveOid(imported, candidate, parent, definers, done) : null;
+            if (oid != null) {
+                return oid;
+            }
+        }
+        for (Map.Entry<String, Module> candidate: candidates.entrySet()) {
+            int[] oid = resolveOid(candidate.getKey(), candidate.getValue(), parent, definers, done);
+            if (oid != null) {
+                return oid;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the files needed to load some modules, following the imports. The missing modules are logged.
+     * @param modules the modules names
+     * @return the files, in the order of the sources
+     */
+    public Path[] resolve(Collection<String> modules) {
+        Set<String> seen = new HashSet<>(modules);
+        Deque<String> toResolve = new ArrayDeque<>(modules);
+        boolean[] needed = new boolean[sources.length];
+        while (! toResolve.isEmpty()) {
+            String module = toResolve.pop();
+            Integer rank = definitions.get(module);
+            if (rank == null) {
+                logger.warn("Module %s not found", module);
+                continue;
+            }
+            needed[rank] = true;
+            // All the modules in the file will be loaded
+            for (Map.Entry<String, Module> e: entries[rank].modules.entrySet()) {
+                seen.add(e.getKey());
+                e.getValue().imports.stream().filter(seen::add).forEach(toResolve::add);
+            }
+        }
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < sources.length; i++) {
+            if (needed[i]) {
+                files.add(sources[i]);
+            }
+        }
+        return files.toArray(new Path[files.size()]);
+    }
+
+    private enum State {
+        HEADER,
+        BEGIN,
+        IMPORTS,
+        BODY,
+    }
+
+    /**
+     * Scan a modules file for the modules headers, imports and OID assignments. The strings and the comments are skipped.
+     * @param file the modules file
+     * @return the modules found
+     * @throws IOException
+     */
+    static Map<String, Module> scan(Path file) throws IOException {
+        Map<String, Module> modules = new LinkedHashMap<>();
+        // Only ASCII is needed, ISO-8859-1 never fails
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            State state = State.HEADER;
+            boolean inString = false;
+            int braces = 0;
+            String previous = null;
+            String lastName = null;
+            String candidate = null;
+            Module module = null;
+            boolean from = false;
+            // The OID assignment being read
+            String assigned = null;
+            boolean assigning = false;
+            List<String> value = null;
+            String line;
+            List<String> tokens = new ArrayList<>();
+            while ((line = reader.readLine()) != null) {
+                tokens.clear();
+                inString = tokenize(line, inString, tokens);
+                for (String token: tokens) {
+                    if (value != null) {
+                        if ("}".equals(token)) {
+                            OidValue oid = parseValue(value);
+                            if (oid != null && module != null) {
+                                module.oids.putIfAbsent(assigned, oid);
+                            }
+                            value = null;
+                            assigned = null;
+                        } else {
+                            value.add(token);
+                        }
+                        continue;
+                    } else if (assigning) {
+                        assigning = false;
+                        if ("{".equals(token) && braces == 0) {
+                            value = new ArrayList<>();
+                            continue;
+                        }
+                        assigned = null;
+                    }
+                    if ("{".equals(token)) {
+                        braces++;
+                        continue;
+                    } else if ("}".equals(token)) {
+                        braces = Math.max(0, braces - 1);
+                        continue;
+                    } else if (braces > 0) {
+                        continue;
+                    }
+                    if (state == State.BEGIN) {
+                        // The imports are optional, the body might follow BEGIN
+                        if ("IMPORTS".equals(token)) {
+                            state = State.IMPORTS;
+                            continue;
+                        }
+                        state = State.BODY;
+                    }
+                    switch (state) {
+                    case HEADER:
+                    case BODY:
+                        if ("DEFINITIONS".equals(token)) {
+                            candidate = lastName;
+                        } else if (candidate != null && ("::=".equals(token) || TAGS.contains(token))) {
+                            // Still in the header
+                        } else if (candidate != null && "BEGIN".equals(token)) {
+                            module = new Module();
+                            modules.put(candidate, module);
+                            candidate = null;
+                            assigned = null;
+                            state = State.BEGIN;
+                        } else if ("::=".equals(token)) {
+                            assigning = assigned != null;
+                        } else {
+                            candidate = null;
+                            if (("MODULE-IDENTITY".equals(token) || "OBJECT-IDENTITY".equals(token)) && isValueName(lastName)) {
+                                assigned = lastName;
+                            } else if ("IDENTIFIER".equals(token) && "OBJECT".equals(lastName) && isValueName(previous)) {
+                                assigned = previous;
+                            }
+                            previous = lastName;
+                            lastName = token;
+                        }
+                        break;
+                    case IMPORTS:
+                        if (";".equals(token)) {
+                            state = State.BODY;
+                        } else if (from) {
+                            if (! module.imports.contains(token)) {
+                                module.imports.add(token);
+                            }
+                            from = false;
+                        } else if ("FROM".equals(token)) {
+                            from = true;
+                        }
+                        break;
+                    default:
+                        break;
+                    }
+                }
+            }
+        }
+        return modules;
+    }
+
+    private static boolean isValueName(String token) {
+        return token != null && Character.isLowerCase(token.charAt(0));
+    }
+
+    /**
+     * Parse the content of an OID value, like <code>{ iso(1) org(3) 6 }</code> or <code>{ mib-2 31 }</code>
+     * @return the value, or null if it's not understood
+     */
+    private static OidValue parseValue(List<String> tokens) {
+        String parent = null;
+        int[] arcs = new int[tokens.size()];
+        int count = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            try {
+                if (Character.isDigit(token.charAt(0))) {
+                    arcs[count++] = Integer.parseInt(token);
+                } else if (i + 3 < tokens.size() && "(".equals(tokens.get(i + 1)) && ")".equals(tokens.get(i + 3))) {
+                    arcs[count++] = Integer.parseInt(tokens.get(i + 2));
+                    i += 3;
+                } else if (i == 0) {
+                    parent = token;
+                } else {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return new OidValue(parent, Arrays.copyOf(arcs, count));
+    }
+
+    /**
+     * Split a line in tokens: words, <code>::=</code>, braces, parenthesis and semicolons.
+     * @return true if the line ends inside a string
+     */
+    private static boolean tokenize(String line, boolean inString, List<String> tokens) {
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (inString) {
+                if (c == '"') {
+                    inString = false;
+                }
+                i++;
+            } else if (c == '"') {
+                inString = true;
+                i++;
+            } else if (c == '-' && i + 1 < length && line.charAt(i + 1) == '-') {
+                // A comment, ends with the line or with another --
+                int end = line.indexOf("--", i + 2);
+                if (end < 0) {
+                    break;
+                }
+                i = end + 2;
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                while (i < length && (Character.isLetterOrDigit(line.charAt(i)) || line.charAt(i) == '_'
+                        || (line.charAt(i) == '-' && (i + 1 >= length || line.charAt(i + 1) != '-')))) {
+                    i++;
+                }
+                tokens.add(line.substring(start, i));
+            } else if (line.startsWith("::=", i)) {
+                tokens.add("::=");
+                i += 3;
+            } else if (c == '{' || c == '}' || c == ';' || c == '(' || c == ')') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else {
+                i++;
+            }
+        }
+        return inString;
+    }
+
+}
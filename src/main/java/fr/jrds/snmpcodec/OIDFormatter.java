@@ -1,12 +1,10 @@
 package fr.jrds.snmpcodec;
 
 import java.io.File;
+import java.nio.file.Paths;
 import java.text.ParseException;
-import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import org.snmp4j.SNMP4JSettings;
 import org.snmp4j.smi.OID;
@@ -22,28 +20,62 @@ public class OIDFormatter implements OIDTextFormat, VariableTextFormat {
 
     public static final String MIBDIRSPROPERTY = "snmpcodec.mibdirs";
     public static final String MIBDIRSPROPERTY_DEFAULT = "/usr/share/snmp/mibs";
+    public static final String SNAPSHOTPROPERTY = "snmpcodec.snapshot";
 
     private static final Pattern OIDWITSUFFIX = Pattern.compile("(?<prefix>\\p{L}(?:\\p{L}|\\d)+)(?:\\.(?<oids>\\d+(?:\\.\\d*)*))?");
 
 
+    // The formatter can be used by many threads
+    private static final ThreadLocal<ParsedOid> PARSED = ThreadLocal.withInitial(ParsedOid::new);
+
+    /**
+     * The store used when the formatter was created, {@link #getStore()} returns the current one
+     */
     public final MibStore store;
+    private final ReloadableMibStore reloadable;
     private OIDTextFormat previous;
     private VariableTextFormat previousVar;
 
     public OIDFormatter(MibStore resolver) {
+        this(resolver, null);
+    }
+
+    /**
+     * A formatter that always use the current store of a reloadable store.
+     * @param reloadable the reloadable store
+     */
+    public OIDFormatter(ReloadableMibStore reloadable) {
+        this(reloadable.getStore(), reloadable);
+    }
+
+    private OIDFormatter(MibStore resolver, ReloadableMibStore reloadable) {
         this.store = resolver;
+        this.reloadable = reloadable;
         previous = SNMP4JSettings.getOIDTextFormat();
         previousVar = SNMP4JSettings.getVariableTextFormat();
     }
 
+    /**
+     * @return the store currently used
+     */
+    public MibStore getStore() {
+        return reloadable != null ? reloadable.getStore() : store;
+    }
+
     /**
      * <p>Register in SNMP4J a default {@link MibStore}. The modules folders are found using the system property {@link #MIBDIRSPROPERTY}.</p>
+     * <p>If the system property {@link #SNAPSHOTPROPERTY} is set, it's the path to a snapshot of the store, used to avoid parsing the modules again.</p>
      * <p>If called many times, formatters and parsers are chained.</p>
      * @return the new OIDFormatter
      */
     public static OIDFormatter register() {
         String[] mibdirs = System.getProperty(MIBDIRSPROPERTY, MIBDIRSPROPERTY_DEFAULT).split(File.pathSeparator);
-        return register(mibdirs);
+        String snapshot = System.getProperty(SNAPSHOTPROPERTY);
+        if (snapshot != null) {
+            return register(MibStore.load(Paths.get(snapshot), false, mibdirs));
+        } else {
+            return register(mibdirs);
+        }
     }
 
     /**
@@ -64,9 +96,22 @@ public class OIDFormatter implements OIDTextFormat, VariableTextFormat {
      * @return the new OIDFormatter
      */
     public static OIDFormatter register(MibStore resolver) {
+        return register(new OIDFormatter(resolver));
+    }
+
+    /**
+     * <p>Register in SNMP4J a reloadable {@link MibStore}, the formatter will always use the last loaded store.</p>
+     * <p>If called many times, formatters and parsers are chained.</p>
+     * @param reloadable the reloadable store
+     * @return the new OIDFormatter
+     */
+    public static OIDFormatter register(ReloadableMibStore reloadable) {
+        return register(new OIDFormatter(reloadable));
+    }
+
+    private static OIDFormatter register(OIDFormatter formatter) {
         OIDTextFormat previousTextFormat = SNMP4JSettings.getOIDTextFormat();
         VariableTextFormat previousVarFormat = SNMP4JSettings.getVariableTextFormat();
-        OIDFormatter formatter = new OIDFormatter(resolver);
         SNMP4JSettings.setOIDTextFormat(formatter);
         SNMP4JSettings.setVariableTextFormat(formatter);
         if (previousTextFormat instanceof OIDFormatter) {
@@ -80,25 +125,38 @@ public class OIDFormatter implements OIDTextFormat, VariableTextFormat {
 
     @Override
     public String format(int[] value) {
-        if (store.isEmpty()) {
+        MibStore current = getStore();
+        if (current.isEmpty()) {
             return previous.format(value);
         }
-        Object[] parsed = store.parseIndexOID(value).values().toArray();
-        if(parsed != null && parsed.length > 0) {
-            // The content is in the form of [String, [x, ...]], it's a uncompleted OID
-            if(parsed.length == 1 && parsed[0].getClass().isArray()) {
-                Object[] content = (Object[]) parsed[0];
-                String prefix = (String)content[0];
-                int[] numberPart = (int[]) content[1];
-                String suffix = Arrays.stream(numberPart).mapToObj(Integer::toString).collect(Collectors.joining("."));
-                return prefix + "." + suffix;
-            } else {
-                StringBuilder buffer = new StringBuilder(parsed[0].toString());
-                IntStream.range(1, parsed.length).forEach(i -> buffer.append("[").append(parsed[i]).append("]"));
+        ParsedOid parsed = PARSED.get();
+        try {
+            if (current.parseIndexOID(value, 0, value.length, parsed)) {
+                StringBuilder buffer = new StringBuilder();
+                buffer.append(parsed.getNode().getSymbol());
+                switch (parsed.getKind()) {
+                case PARTIAL:
+                    // It's a uncompleted OID
+                    int end = parsed.getSuffixOffset() + parsed.getSuffixLength();
+                    for (int i = parsed.getSuffixOffset(); i < end; i++) {
+                        buffer.append('.').append(value[i]);
+                    }
+                    break;
+                case CELL:
+                    for (int i = 0; i < parsed.getIndexCount(); i++) {
+                        buffer.append('[').append(parsed.getIndexValue(i)).append(']');
+                    }
+                    break;
+                default:
+                    break;
+                }
                 return buffer.toString();
+            } else {
+                return previous.format(value);
             }
-        } else {
-            return previous.format(value);
+        } finally {
+            // Don't keep the OID and the nodes of a store that might be replaced
+            parsed.clear();
         }
     }
 
@@ -109,13 +167,14 @@ public class OIDFormatter implements OIDTextFormat, VariableTextFormat {
 
     @Override
     public int[] parse(String text) throws ParseException {
-        if (text == null || store.isEmpty()) {
+        MibStore current = getStore();
+        if (text == null || current.isEmpty()) {
             return previous.parse(text);
         }
         Matcher m = OIDWITSUFFIX.matcher(text);
         if (m.matches()) {
             String prefixString = m.group("prefix");
-            int[] prefix = store.getFromName(prefixString);
+            int[] prefix = current.getFromName(prefixString);
             if (prefix != null) {
                 int[] parsed;
                 if (m.group("oids") != null) {
@@ -136,7 +195,7 @@ public class OIDFormatter implements OIDTextFormat, VariableTextFormat {
 
     @Override
     public String format(OID instanceOID, Variable variable, boolean withOID) {
-        String formatted = store.format(instanceOID, variable);
+        String formatted = getStore().format(instanceOID, variable);
         if (formatted != null) {
             return formatted;
         } else {
@@ -151,7 +210,7 @@ public class OIDFormatter implements OIDTextFormat, VariableTextFormat {
 
     @Override
     public Variable parse(OID classOrInstanceOID, String text) throws ParseException {
-        Variable v = store.parse(classOrInstanceOID, text);
+        Variable v = getStore().parse(classOrInstanceOID, text);
         if (v != null) {
             return v;
         } else {
@@ -1,75 +1,120 @@
 package fr.jrds.snmpcodec;
 
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.NavigableMap;
-import java.util.TreeMap;
+import java.util.Map;
 
 import org.snmp4j.smi.OID;
 
+import fr.jrds.snmpcodec.smi.Index;
+import fr.jrds.snmpcodec.smi.ObjectType;
+import fr.jrds.snmpcodec.smi.Syntax;
+import fr.jrds.snmpcodec.smi.Trap;
+
 public abstract class OidTreeNode {
 
-    private final String name;
-    protected int[] oidElements;
-    private final NavigableMap<Integer, OidTreeNode> childs = new TreeMap<>();
     protected final OidTreeNode root;
-    private final boolean isTableEntry;
-    private final OidTreeNode parent;
 
+    /**
+     * Create a root node
+     */
     protected OidTreeNode() {
-        name = null;
         root = this;
-        oidElements = new int[] {};
-        isTableEntry = false;
-        parent = null;
     }
 
-    protected OidTreeNode(OidTreeNode parent, int id, String name, boolean isTableEntry) {
-        this.parent = parent;
-        this.name = name;
-        this.root = parent.root;
-        parent.childs.put(id, this);
-        this.oidElements = Arrays.copyOf(parent.oidElements, parent.oidElements.length + 1);
-        this.oidElements[this.oidElements.length - 1] = id;
-        this.isTableEntry = isTableEntry;
+    /**
+     * Create a node inside a tree
+     * @param root the root of the tree
+     */
+    protected OidTreeNode(OidTreeNode root) {
+        this.root = root;
     }
 
     /**
      * @return The node content
      */
-    public String getSymbol() {
-        return name;
-    }
+    public abstract String getSymbol();
 
-    public OidTreeNode getParent() {
-        return parent;
-    }
+    public abstract OidTreeNode getParent();
+
+    /**
+     * Return the direct child identified by the given arc.
+     * @param arc the last element of the child's OID
+     * @return the child, or null if not found
+     */
+    protected abstract OidTreeNode getChild(int arc);
+
+    /**
+     * @return the childs, sorted by arc
+     */
+    public abstract Collection<OidTreeNode> childs();
+
+    /**
+     * @return the last element of the OID
+     */
+    protected abstract int getArc();
+
+    /**
+     * @return the number of elements in the OID, 0 for the root
+     */
+    protected abstract int getDepth();
+
+    protected abstract boolean isTableEntry();
+
+    /**
+     * @return the object type defined by this node, or null
+     */
+    public abstract ObjectType getObjectType();
+
+    /**
+     * @return the syntax named like the symbol of this node, or null
+     */
+    public abstract Syntax getSyntax();
+
+    /**
+     * @return the SNMPv1 traps using this node as enterprise, indexed by specific trap number, or null
+     */
+    public abstract Map<Integer, Trap> getTraps();
 
     public OidTreeNode search(int[] oid) {
-        if (oid.length > 0 && root.childs.containsKey(oid[0])) {
-            return root.childs.get(oid[0]).search(oid, 1);
-        } else {
-            return null;
-        }
+        return search(oid, 0, oid.length);
     }
 
-    private OidTreeNode search(int[] oid, int level) {
-        if (oid.length == level) {
-            return this;
-        } else {
-            int key = oid[level];
-            if (childs.containsKey(key)) {
-                return childs.get(key).search(oid, level + 1);
-            } else {
-                return this;
+    /**
+     * Search the deepest node matching a part of an OID, without copying it.
+     * @param oid the OID
+     * @param offset the first element to use
+     * @param length the number of elements to use
+     * @return the deepest node found, or null if even the first element is not found
+     */
+    public OidTreeNode search(int[] oid, int offset, int length) {
+        OidTreeNode found = length > 0 ? root.getChild(oid[offset]) : null;
+        if (found == null) {
+            return null;
+        }
+        for (int level = offset + 1; level < offset + length; level++) {
+            OidTreeNode next = found.getChild(oid[level]);
+            if (next == null) {
+                break;
             }
+            found = next;
         }
+        return found;
     }
 
     public OidTreeNode find(int[] oid) {
-        OidTreeNode found = search(oid);
-        if (found != null && found.oidEquals(oid)) {
+        return find(oid, 0, oid.length);
+    }
+
+    /**
+     * Find the node matching exactly a part of an OID, without copying it.
+     * @param oid the OID
+     * @param offset the first element to use
+     * @param length the number of elements to use
+     * @return the node found, or null
+     */
+    public OidTreeNode find(int[] oid, int offset, int length) {
+        OidTreeNode found = search(oid, offset, length);
+        if (found != null && found.getDepth() == length) {
             return found;
         } else {
             return null;
@@ -78,39 +123,57 @@ public abstract class OidTreeNode {
 
     @Override
     public String toString() {
-        return (oidElements != null ? Utils.dottedNotation(oidElements) : "" )+ "=" + (name !=null ? name : "");
+        String name = getSymbol();
+        return Utils.dottedNotation(getElements()) + "=" + (name !=null ? name : "");
     }
 
     public int[] getElements() {
-        return Arrays.copyOf(oidElements, oidElements.length);
-    }
-
-    protected int[] getElementsPrivate() {
-        return oidElements;
+        int[] elements = new int[getDepth()];
+        OidTreeNode curs = this;
+        for (int i = elements.length - 1; i >= 0; i--) {
+            elements[i] = curs.getArc();
+            curs = curs.getParent();
+        }
+        return elements;
     }
 
     public OID getOID() {
-        return new OID(oidElements);
+        return new OID(getElements());
     }
 
     public boolean oidEquals(int[] other) {
-        return other != null && Arrays.equals(oidElements, other);
+        return other != null && oidEquals(other, 0, other.length);
     }
 
-    public Collection<OidTreeNode> childs() {
-        return Collections.unmodifiableCollection(childs.values());
-    }
-
-    public OidTreeNode getTableEntry() {
-        OidTreeNode curs = this;
-        while( curs != null && ! curs.isTableEntry) {
-            curs = curs.parent;
+    /**
+     * Check if a part of an OID is the OID of this node, without copying it.
+     * @param other the OID
+     * @param offset the first element to use
+     * @param length the number of elements to use
+     * @return true if the OID matches
+     */
+    public boolean oidEquals(int[] other, int offset, int length) {
+        if (length != getDepth()) {
+            return false;
         }
-        if (curs != null && curs.isTableEntry) {
-            return curs.parent;
-        } else {
-            return null;
+        OidTreeNode curs = this;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            if (other[i] != curs.getArc()) {
+                return false;
+            }
+            curs = curs.getParent();
         }
+        return true;
     }
 
+    /**
+     * @return the table containing this node, or null if it's not inside a table
+     */
+    public abstract OidTreeNode getTableEntry();
+
+    /**
+     * @return the index of the row if this node is a column, or null
+     */
+    public abstract Index getIndex();
+
 }
@@ -0,0 +1,228 @@
+package fr.jrds.snmpcodec;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import fr.jrds.snmpcodec.smi.Index;
+
+/**
+ * <p>The result of the parsing of an OID by {@link MibStore#parseIndexOID(int[], int, int, ParsedOid)}.</p>
+ * <p>It can be reused for many parsing, so decoding a lot of OID don't need to allocate a map for each of them.
+ * It's not thread safe, and it keeps a reference to the parsed array, that must not be modified while the result is used.</p>
+ */
+public class ParsedOid {
+
+    public enum Kind {
+        /**
+         * The OID was not found
+         */
+        UNKNOWN,
+        /**
+         * The OID is the one of a node
+         */
+        NODE,
+        /**
+         * The OID is a scalar value, a node with a trailing 0
+         */
+        SCALAR,
+        /**
+         * The OID is a node followed by unknown sub-identifiers, the suffix
+         */
+        PARTIAL,
+        /**
+         * The OID is a table cell, a column followed by index values
+         */
+        CELL,
+    }
+
+    /**
+     * A callback for the index values of a table cell.
+     */
+    @FunctionalInterface
+    public interface IndexVisitor {
+        void visit(int position, OidTreeNode column, Object value);
+    }
+
+    private int[] oid;
+    private int offset;
+    private int length;
+    private Kind kind = Kind.UNKNOWN;
+    private OidTreeNode node;
+    private OidTreeNode table;
+    private int indexCount;
+    private OidTreeNode[] indexColumns = new OidTreeNode[4];
+    private Object[] indexValues = new Object[4];
+    private int[] indexOffsets = new int[4];
+    private int[] indexLengths = new int[4];
+    // Allocated once, used to collect the index values
+    private final Index.IndexConsumer collector = this::addIndex;
+
+    /**
+     * Create an empty result, to be filled by {@link MibStore#parseIndexOID(int[], int, int, ParsedOid)}.
+     */
+    public ParsedOid() {
+        // Filled by the parsing
+    }
+
+    /**
+     * Forget the last result, so it doesn't keep a reference to the OID, the nodes or the index values.
+     */
+    void clear() {
+        reset(null, 0, 0);
+    }
+
+    void reset(int[] oid, int offset, int length) {
+        this.oid = oid;
+        this.offset = offset;
+        this.length = length;
+        this.kind = Kind.UNKNOWN;
+        this.node = null;
+        this.table = null;
+        // Don't keep references to old values
+        Arrays.fill(indexValues, 0, indexCount, null);
+        Arrays.fill(indexColumns, 0, indexCount, null);
+        this.indexCount = 0;
+    }
+
+    void set(Kind kind, OidTreeNode node, OidTreeNode table) {
+        this.kind = kind;
+        this.node = node;
+        this.table = table;
+    }
+
+    Index.IndexConsumer getCollector() {
+        return collector;
+    }
+
+    private void addIndex(OidTreeNode column, int offset, int length, Object value) {
+        if (indexCount == indexColumns.length) {
+            int newSize = indexCount * 2;
+            indexColumns = Arrays.copyOf(indexColumns, newSize);
+            indexValues = Arrays.copyOf(indexValues, newSize);
+            indexOffsets = Arrays.copyOf(indexOffsets, newSize);
+            indexLengths = Arrays.copyOf(indexLengths, newSize);
+        }
+        indexColumns[indexCount] = column;
+        indexValues[indexCount] = value;
+        indexOffsets[indexCount] = offset;
+        indexLengths[indexCount] = length;
+        indexCount++;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the deepest node found, the column for a table cell, or null if the OID is unknown
+     */
+    public OidTreeNode getNode() {
+        return node;
+    }
+
+    /**
+     * @return the table for a table cell, or null
+     */
+    public OidTreeNode getTable() {
+        return table;
+    }
+
+    /**
+     * @return the parsed OID
+     */
+    public int[] getOid() {
+        return oid;
+    }
+
+    /**
+     * @return the offset of the suffix following the node in the parsed OID
+     */
+    public int getSuffixOffset() {
+        return node != null ? offset + node.getDepth() : offset;
+    }
+
+    /**
+     * @return the length of the suffix following the node in the parsed OID
+     */
+    public int getSuffixLength() {
+        return offset + length - getSuffixOffset();
+    }
+
+    /**
+     * @return the number of index values decoded for a table cell
+     */
+    public int getIndexCount() {
+        return indexCount;
+    }
+
+    public OidTreeNode getIndexColumn(int position) {
+        checkPosition(position);
+        return indexColumns[position];
+    }
+
+    /**
+     * @param position the index position
+     * @return the decoded value of the index
+     */
+    public Object getIndexValue(int position) {
+        checkPosition(position);
+        return indexValues[position];
+    }
+
+    /**
+     * @param position the index position
+     * @return the offset of the sub-identifiers of the index in the parsed OID
+     */
+    public int getIndexOffset(int position) {
+        checkPosition(position);
+        return indexOffsets[position];
+    }
+
+    /**
+     * @param position the index position
+     * @return the number of sub-identifiers used by the index in the parsed OID
+     */
+    public int getIndexLength(int position) {
+        checkPosition(position);
+        return indexLengths[position];
+    }
+
+    public void forEachIndex(IndexVisitor visitor) {
+        for (int i = 0; i < indexCount; i++) {
+            visitor.visit(i, indexColumns[i], indexValues[i]);
+        }
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= indexCount) {
+            throw new IndexOutOfBoundsException(position);
+        }
+    }
+
+    /**
+     * @return the content in the form returned by {@link MibStore#parseIndexOID(int[])}
+     */
+    public Map<String, Object> toMap() {
+        switch (kind) {
+        case NODE:
+        case SCALAR:
+            return Collections.singletonMap(node.getSymbol(), node.getSymbol());
+        case PARTIAL:
+            //Don't throw uncompleted OID, store it as [String, [x, ...]]
+            int[] numberPart = Arrays.copyOfRange(oid, getSuffixOffset(), offset + length);
+            return Collections.singletonMap(node.getSymbol(), new Object[] {node.getSymbol(), numberPart});
+        case CELL:
+            Map<String, Object> parts = new LinkedHashMap<>(indexCount + 1);
+            parts.put(table.getSymbol(), node.getSymbol());
+            for (int i = 0; i < indexCount; i++) {
+                parts.put(indexColumns[i].getSymbol(), indexValues[i]);
+            }
+            return parts;
+        default:
+            return Collections.emptyMap();
+        }
+    }
+
+}
@@ -0,0 +1,276 @@
+package fr.jrds.snmpcodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import fr.jrds.snmpcodec.log.LogAdapter;
+import fr.jrds.snmpcodec.parsing.MibLoader;
+import fr.jrds.snmpcodec.parsing.ModuleFragment;
+import fr.jrds.snmpcodec.parsing.SnapshotFormat;
+
+/**
+ * <p>A {@link MibStore} holder that can be reloaded when the modules files change.</p>
+ * <p>The parsed files are kept, so a reload only parse the new or modified files. A file is identified by the SHA-256 of its
+ * content, so a touched, copied or renamed file is not parsed again. The definitions of the other files are replayed from
+ * their encoded form, and the whole tree is linked again. If no file changed, the store is kept. The new store is built
+ * while the previous one is still used, and then published atomically, so the users of the store are never blocked.</p>
+ * <p>The modules directories can be watched, the reload is then done in a background thread.</p>
+ */
+public class ReloadableMibStore implements Closeable {
+
+    private static final LogAdapter logger = LogAdapter.getLogger(ReloadableMibStore.class);
+
+    /**
+     * The result of a reload
+     */
+    public static class Reload {
+        public final Set<String> added;
+        public final Set<String> removed;
+        public final Set<String> changed;
+        /**
+         * The number of files parsed
+         */
+        public final int parsed;
+        /**
+         * The duration of the reload, in ms
+         */
+        public final long duration;
+
+        private Reload(Set<String> added, Set<String> removed, Set<String> changed, int parsed, long duration) {
+            this.added = Collections.unmodifiableSet(added);
+            this.removed = Collections.unmodifiableSet(removed);
+            this.changed = Collections.unmodifiableSet(changed);
+            this.parsed = parsed;
+            this.duration = duration;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d ms, %d files parsed, added %s, removed %s, changed %s", duration, parsed, added, removed, changed);
+        }
+    }
+
+    private static class ParsedFile {
+        private final long size;
+        private final long lastModified;
+        private final String digest;
+        private final ModuleFragment fragment;
+
+        private ParsedFile(long size, long lastModified, String digest, ModuleFragment fragment) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+            this.fragment = fragment;
+        }
+
+        private List<String> getModules() {
+            return fragment != null ? fragment.getModules() : Collections.emptyList();
+        }
+
+        /**
+         * @return false if the fragment can't be replayed again, the file must then be parsed again
+         */
+        private boolean isReusable() {
+            return fragment == null || fragment.keepSteps();
+        }
+    }
+
+    private final String[] mibdirs;
+    // Only used while reloading
+    private Map<Path, ParsedFile> files = new LinkedHashMap<>();
+    private volatile MibStore store;
+    private final List<Consumer<Reload>> listeners = new CopyOnWriteArrayList<>();
+    private WatchService watcher = null;
+    private Thread watchThread = null;
+
+    /**
+     * Load the modules from the given paths.
+     * @param mibdirs a list of files or directories
+     */
+    public ReloadableMibStore(String... mibdirs) {
+        this.mibdirs = mibdirs.clone();
+        reload();
+    }
+
+    /**
+     * @return the current store
+     */
+    public MibStore getStore() {
+        return store;
+    }
+
+    /**
+     * Add a listener, called after each reload
+     * @param listener
+     */
+    public void addListener(Consumer<Reload> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Reload the modules, only the new or modified files are parsed
+     * @return the description of the changes
+     */
+    public synchronized Reload reload() {
+        long start = System.nanoTime();
+        Map<Path, ParsedFile> newFiles = new LinkedHashMap<>();
+        Map<String, ParsedFile> byDigest = new HashMap<>(files.size());
+        files.values().forEach(i -> byDigest.put(i.digest, i));
+        Set<String> changed = new HashSet<>();
+        int parsedCount = 0;
+        MibLoader loader = new MibLoader();
+        for (Path source: MibStore.sources(mibdirs)) {
+            Path file = source.toAbsolutePath().normalize();
+            ParsedFile parsed;
+            try {
+                long size = Files.size(file);
+                long lastModified = Files.getLastModifiedTime(file).toMillis();
+                ParsedFile previous = files.get(file);
+                if (previous != null && previous.size == size && previous.lastModified == lastModified && previous.isReusable()) {
+                    parsed = previous;
+                } else {
+                    String digest = new BigInteger(1, SnapshotFormat.SourceFile.of(file).getDigest()).toString(16);
+                    ParsedFile sameContent = byDigest.remove(digest);
+                    if (sameContent != null && sameContent.isReusable()) {
+                        parsed = new ParsedFile(size, lastModified, digest, sameContent.fragment);
+                    } else {
+                        ModuleFragment fragment = loader.parse(file);
+                        if (fragment != null) {
+                            // Encoded before the replay, to be replayed by the next reloads
+                            fragment.keepSteps();
+                        }
+                        parsed = new ParsedFile(size, lastModified, digest, fragment);
+                        parsedCount++;
+                        if (sameContent == null) {
+                            changed.addAll(parsed.getModules());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Unreadable module file %s: %s", file, e.getMessage());
+                continue;
+            }
+            newFiles.put(file, parsed);
+        }
+        MibStore newStore;
+        if (store != null && isUnchanged(newFiles)) {
+            newStore = store;
+        } else {
+            newFiles.values().stream().filter(i -> i.fragment != null).forEach(i -> loader.load(i.fragment));
+            newStore = loader.buildTree();
+        }
+
+        Set<String> oldModules = store != null ? store.modules : Collections.emptySet();
+        Set<String> added = new HashSet<>(newStore.modules);
+        added.removeAll(oldModules);
+        Set<String> removed = new HashSet<>(oldModules);
+        removed.removeAll(newStore.modules);
+        changed.retainAll(oldModules);
+        changed.retainAll(newStore.modules);
+
+        files = newFiles;
+        store = newStore;
+        Reload reload = new Reload(added, removed, changed, parsedCount, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logger.info("Modules reloaded: %s", reload);
+        listeners.forEach(i -> i.accept(reload));
+        return reload;
+    }
+
+    /**
+     * @return true if the same files were found, in the same order, with the same content
+     */
+    private boolean isUnchanged(Map<Path, ParsedFile> newFiles) {
+        if (newFiles.size() != files.size()) {
+            return false;
+        }
+        Iterator<Map.Entry<Path, ParsedFile>> previous = files.entrySet().iterator();
+        for (Map.Entry<Path, ParsedFile> e: newFiles.entrySet()) {
+            Map.Entry<Path, ParsedFile> p = previous.next();
+            if (! e.getKey().equals(p.getKey()) || e.getValue().fragment != p.getValue().fragment) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Watch the modules directories, and reload the store in a background thread when a file changes.
+     * @throws IOException if the directories can't be watched
+     */
+    public synchronized void watch() throws IOException {
+        if (watcher != null) {
+            return;
+        }
+        watcher = FileSystems.getDefault().newWatchService();
+        Set<Path> dirs = new HashSet<>();
+        for (String i: mibdirs) {
+            Path dir = Paths.get(i).toAbsolutePath().normalize();
+            if (! Files.isDirectory(dir)) {
+                dir = dir.getParent();
+            }
+            if (dir != null && Files.isDirectory(dir) && dirs.add(dir)) {
+                dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+        WatchService service = watcher;
+        watchThread = new Thread(() -> watchLoop(service), "MibStoreWatcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private void watchLoop(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                // Wait for the other events of a copy or an update
+                do {
+                    key.pollEvents();
+                    key.reset();
+                } while ((key = service.poll(200, TimeUnit.MILLISECONDS)) != null);
+                try {
+                    reload();
+                } catch (RuntimeException e) {
+                    logger.error(e, "Modules reload failed: %s", e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Closed, the thread ends
+        }
+    }
+
+    /**
+     * Stop watching the modules directories
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+            watchThread.interrupt();
+            watcher = null;
+            watchThread = null;
+        }
+    }
+
+}
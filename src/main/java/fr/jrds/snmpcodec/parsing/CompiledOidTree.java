@@ -0,0 +1,306 @@
+package fr.jrds.snmpcodec.parsing;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import fr.jrds.snmpcodec.MibStore;
+import fr.jrds.snmpcodec.OidTreeNode;
+import fr.jrds.snmpcodec.smi.Index;
+import fr.jrds.snmpcodec.smi.ObjectType;
+import fr.jrds.snmpcodec.smi.Syntax;
+import fr.jrds.snmpcodec.smi.Trap;
+
+/**
+ * <p>A frozen OID tree, stored in a few parallel primitive arrays.</p>
+ * <p>The nodes are numbered in breadth-first order, so the childs of a node are stored contiguously
+ * and sorted by arc; a node only needs the offset of its first child and its child count, the siblings are
+ * the following nodes. The symbols are stored once in a string table.</p>
+ * <p>The {@link OidTreeNode} instances are flyweight views over those arrays, created on demand and memoized.</p>
+ */
+class CompiledOidTree {
+
+    private final int[] arcs;
+    private final int[] parents;
+    private final int[] firstChilds;
+    private final int[] childCounts;
+    private final int[] symbols;
+    private final String[] symbolTable;
+    private final BitSet tableEntries;
+    private final ObjectType[] objectTypes;
+    private final Syntax[] syntaxes;
+    private final Map<Integer, Trap>[] traps;
+    // The table containing each node, -1 if none
+    private final int[] tables;
+    private final Index[] indexes;
+    // Views are immutable, so a racy memoization is safe, two threads might just create two equal views
+    private final Node[] views;
+
+    class Node extends OidTreeNode {
+        private final int id;
+
+        private Node(int id) {
+            super(CompiledOidTree.this.views[0]);
+            this.id = id;
+        }
+
+        private Node() {
+            super();
+            this.id = 0;
+        }
+
+        @Override
+        public String getSymbol() {
+            return symbols[id] >= 0 ? symbolTable[symbols[id]] : null;
+        }
+
+        @Override
+        public OidTreeNode getParent() {
+            return id == 0 ? null : view(parents[id]);
+        }
+
+        @Override
+        protected OidTreeNode getChild(int arc) {
+            int child = childIndex(id, arc);
+            return child >= 0 ? view(child) : null;
+        }
+
+        @Override
+        public Collection<OidTreeNode> childs() {
+            int first = firstChilds[id];
+            int count = childCounts[id];
+            return Collections.unmodifiableList(new AbstractList<OidTreeNode>() {
+                @Override
+                public OidTreeNode get(int index) {
+                    if (index < 0 || index >= count) {
+                        throw new IndexOutOfBoundsException(index);
+                    }
+                    return view(first + index);
+                }
+                @Override
+                public int size() {
+                    return count;
+                }
+            });
+        }
+
+        @Override
+        protected int getArc() {
+            return arcs[id];
+        }
+
+        @Override
+        protected int getDepth() {
+            int depth = 0;
+            for (int curs = id; curs != 0; curs = parents[curs]) {
+                depth++;
+            }
+            return depth;
+        }
+
+        @Override
+        protected boolean isTableEntry() {
+            return tableEntries.get(id);
+        }
+
+        @Override
+        public ObjectType getObjectType() {
+            return objectTypes[id];
+        }
+
+        @Override
+        public Syntax getSyntax() {
+            return syntaxes[id];
+        }
+
+        @Override
+        public Map<Integer, Trap> getTraps() {
+            return traps[id];
+        }
+
+        @Override
+        public OidTreeNode getTableEntry() {
+            return tables[id] >= 0 ? view(tables[id]) : null;
+        }
+
+        @Override
+        public Index getIndex() {
+            return indexes[id];
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (obj == null || obj.getClass() != Node.class) {
+                return false;
+            } else {
+                Node other = (Node) obj;
+                return other.id == id && other.getTree() == getTree();
+            }
+        }
+
+        private CompiledOidTree getTree() {
+            return CompiledOidTree.this;
+        }
+
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<Integer, Trap>[] newTraps(int size) {
+        return new Map[size];
+    }
+
+    /**
+     * @param order the nodes of the tree, in breadth-first order.
+     */
+    private CompiledOidTree(List<OidTreeNodeImpl> order) {
+        int size = order.size();
+        arcs = new int[size];
+        parents = new int[size];
+        firstChilds = new int[size];
+        childCounts = new int[size];
+        symbols = new int[size];
+        tableEntries = new BitSet(size);
+        objectTypes = new ObjectType[size];
+        syntaxes = new Syntax[size];
+        traps = newTraps(size);
+        tables = new int[size];
+        indexes = new Index[size];
+        views = new Node[size];
+        Map<String, Integer> symbolIds = new HashMap<>();
+        List<String> symbolList = new ArrayList<>();
+
+        parents[0] = -1;
+        tables[0] = -1;
+        int next = 1;
+        for (int id = 0; id < size; id++) {
+            OidTreeNodeImpl node = order.get(id);
+            arcs[id] = id == 0 ? 0 : node.getArc();
+            String symbol = node.getSymbol();
+            symbols[id] = symbol == null ? -1 : symbolIds.computeIfAbsent(symbol, k -> {
+                symbolList.add(k);
+                return symbolList.size() - 1;
+            });
+            tableEntries.set(id, node.isTableEntry());
+            // The object types are linked by compile, their index must use the views
+            syntaxes[id] = node.getSyntax();
+            traps[id] = node.getTraps();
+            if (id != 0) {
+                // The parent is always numbered before its childs
+                tables[id] = node.isTableEntry() ? parents[id] : tables[parents[id]];
+            }
+            firstChilds[id] = next;
+            childCounts[id] = node.getChildCount();
+            for (int i = 0; i < childCounts[id]; i++) {
+                parents[next++] = id;
+            }
+        }
+        symbolTable = symbolList.toArray(new String[0]);
+        views[0] = new Node();
+    }
+
+    private int childIndex(int id, int arc) {
+        int count = childCounts[id];
+        if (count == 0) {
+            return -1;
+        }
+        int first = firstChilds[id];
+        int last = first + count - 1;
+        if (((long) arcs[last] - arcs[first]) == count - 1) {
+            // Contiguous arcs, the position is directly computed
+            long pos = (long) arc - arcs[first];
+            return pos >= 0 && pos < count ? first + (int) pos : -1;
+        } else {
+            int pos = Arrays.binarySearch(arcs, first, last + 1, arc);
+            return pos >= 0 ? pos : -1;
+        }
+    }
+
+    private Node view(int id) {
+        Node node = views[id];
+        if (node == null) {
+            node = new Node(id);
+            views[id] = node;
+        }
+        return node;
+    }
+
+    OidTreeNode getTop() {
+        return views[0];
+    }
+
+    int size() {
+        return arcs.length;
+    }
+
+    /**
+     * Compile a store whose tree was built by a {@link MibLoader}, the maps are rekeyed with the views.
+     * @param store the store to compile
+     * @return a new store
+     */
+    static MibStore compile(MibStore store) {
+        List<OidTreeNodeImpl> order = new ArrayList<>();
+        order.add((OidTreeNodeImpl) store.top);
+        for (int i = 0; i < order.size(); i++) {
+            for (OidTreeNode child: order.get(i).childs()) {
+                order.add((OidTreeNodeImpl) child);
+            }
+        }
+        CompiledOidTree tree = new CompiledOidTree(order);
+        // Only the nodes referenced by the store's maps are given a view
+        Map<OidTreeNode, Integer> ids = new IdentityHashMap<>(order.size());
+        for (int i = 0; i < order.size(); i++) {
+            ids.put(order.get(i), i);
+        }
+        Function<OidTreeNode, OidTreeNode> mapping = i -> i != null ? tree.view(ids.get(i)) : null;
+
+        Map<String, List<OidTreeNode>> names = new HashMap<>(store.names.size());
+        store.names.forEach((k, v) -> {
+            List<OidTreeNode> nodes = new ArrayList<>(v.size());
+            v.forEach(i -> nodes.add(mapping.apply(i)));
+            names.put(k, nodes);
+        });
+        Map<Index, Index> indexes = new IdentityHashMap<>();
+        Map<OidTreeNode, ObjectType> objects = new HashMap<>(store.objects.size());
+        store.objects.forEach((k, v) -> {
+            Index index = v.getIndex();
+            if (index != null) {
+                index = indexes.computeIfAbsent(index, i -> {
+                    List<OidTreeNode> columns = new ArrayList<>(i.getIndexes().size());
+                    i.getIndexes().forEach(j -> columns.add(j != null ? mapping.apply(j) : null));
+                    return new Index(columns, i.isImplied());
+                });
+            }
+            ObjectType compiled = new ObjectType(v.getSyntax(), v.isIndexed(), index);
+            if (k != null) {
+                int id = ids.get(k);
+                tree.objectTypes[id] = compiled;
+                if (compiled.isIndexed()) {
+                    for (int c = tree.firstChilds[id]; c < tree.firstChilds[id] + tree.childCounts[id]; c++) {
+                        tree.indexes[c] = index;
+                    }
+                }
+            }
+            objects.put(mapping.apply(k), compiled);
+        });
+        Map<OidTreeNode, Map<Integer, Trap>> resolvedTraps = new HashMap<>(store.resolvedTraps.size());
+        store.resolvedTraps.forEach((k, v) -> resolvedTraps.put(mapping.apply(k), v));
+        return new MibStoreImpl(tree.getTop(), new HashSet<>(store.modules), names, new HashMap<>(store.syntaxes), objects, resolvedTraps);
+    }
+
+}
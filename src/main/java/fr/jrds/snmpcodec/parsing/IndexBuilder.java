@@ -10,16 +10,18 @@ import fr.jrds.snmpcodec.smi.Symbol;
 class IndexBuilder {
 
     private final List<Symbol> indexesSymbol;
+    private final boolean implied;
 
-    IndexBuilder(List<Symbol> indexes) {
+    IndexBuilder(List<Symbol> indexes, boolean implied) {
         this.indexesSymbol = indexes;
+        this.implied = implied;
     }
 
     Index resolve(MibLoader loader) {
         List<OidTreeNode> indexes = indexesSymbol.stream()
                 .map(loader::resolveNode)
                 .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        return new Index(indexes);
+        return new Index(indexes, implied);
     }
 
 }
@@ -0,0 +1,949 @@
+package fr.jrds.snmpcodec.parsing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.jrds.snmpcodec.MibStore;
+import fr.jrds.snmpcodec.OidTreeNode;
+import fr.jrds.snmpcodec.smi.Index;
+import fr.jrds.snmpcodec.smi.ObjectType;
+import fr.jrds.snmpcodec.smi.Syntax;
+import fr.jrds.snmpcodec.smi.Trap;
+
+/**
+ * <p>A frozen OID tree read directly from a memory mapped snapshot file, the pages are shared by all the processes using
+ * the same file.</p>
+ * <p>The layout follows {@link CompiledOidTree}: the nodes are fixed size records in breadth-first order, the names are sorted
+ * so they can be found with a binary search. The {@link OidTreeNode} are flyweight views, the object types, syntaxes, indexes
+ * and traps are only built when they are used, and then kept.</p>
+ */
+class MappedOidTree {
+
+    private static final int MAGIC = 0x534E4D4D;
+    // To be incremented for any change in the format
+    private static final int VERSION = 2;
+
+    // The node record
+    private static final int ARC = 0;
+    private static final int PARENT = 4;
+    private static final int FIRSTCHILD = 8;
+    private static final int CHILDCOUNT = 12;
+    private static final int DEPTH = 16;
+    private static final int SYMBOL = 20;
+    private static final int TABLEENTRY = 24;
+    private static final int TABLE = 28;
+    private static final int OBJECT = 32;
+    private static final int SYNTAX = 36;
+    private static final int INDEX = 40;
+    private static final int TRAPS = 44;
+    private static final int NODESIZE = 48;
+
+    // The sizes of the other records
+    private static final int NAMESIZE = 8;
+    private static final int SYNTAXNAMESIZE = 8;
+    private static final int OFFSETSIZE = 4;
+    private static final int OBJECTSIZE = 16;
+    private static final int TRAPSIZE = 8;
+    private static final int MODULESIZE = 4;
+    private static final int COUNTS = 9;
+
+    private final ByteBuffer buffer;
+    private final int nodeCount;
+    private final int namesCount;
+    private final int syntaxNamesCount;
+    private final int syntaxCount;
+    private final int objectsCount;
+    private final int indexCount;
+    private final int trapsCount;
+    private final int modulesCount;
+    private final int nodes;
+    private final int names;
+    private final int syntaxNames;
+    private final int syntaxTable;
+    private final int objects;
+    private final int indexTable;
+    private final int traps;
+    private final int modules;
+    private final int data;
+    private final int strings;
+    private final Node top;
+    private final SyntaxRecord.Builder syntaxes;
+    private final Map<Integer, ObjectType> objectTypes = new ConcurrentHashMap<>();
+    private final Map<Integer, Index> indexes = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<Integer, Trap>> resolvedTraps = new ConcurrentHashMap<>();
+
+    class Node extends OidTreeNode {
+        private final int id;
+        private final int record;
+
+        private Node(int id) {
+            super(top);
+            this.id = id;
+            this.record = nodes + id * NODESIZE;
+        }
+
+        private Node() {
+            super();
+            this.id = 0;
+            this.record = nodes;
+        }
+
+        private int field(int offset) {
+            return buffer.getInt(record + offset);
+        }
+
+        @Override
+        public String getSymbol() {
+            return string(field(SYMBOL));
+        }
+
+        @Override
+        public OidTreeNode getParent() {
+            return id == 0 ? null : node(field(PARENT));
+        }
+
+        @Override
+        protected OidTreeNode getChild(int arc) {
+            int count = field(CHILDCOUNT);
+            if (count == 0) {
+                return null;
+            }
+            int first = field(FIRSTCHILD);
+            int last = first + count - 1;
+            int firstArc = arc(first);
+            if (((long) arc(last) - firstArc) == count - 1) {
+                // Contiguous arcs, the position is directly computed
+                long pos = (long) arc - firstArc;
+                return pos >= 0 && pos < count ? node(first + (int) pos) : null;
+            }
+            int low = first;
+            int high = last;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midArc = arc(mid);
+                if (midArc < arc) {
+                    low = mid + 1;
+                } else if (midArc > arc) {
+                    high = mid - 1;
+                } else {
+                    return node(mid);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Collection<OidTreeNode> childs() {
+            int first = field(FIRSTCHILD);
+            int count = field(CHILDCOUNT);
+            return Collections.unmodifiableList(new AbstractList<OidTreeNode>() {
+                @Override
+                public OidTreeNode get(int index) {
+                    if (index < 0 || index >= count) {
+                        throw new IndexOutOfBoundsException(index);
+                    }
+                    return node(first + index);
+                }
+                @Override
+                public int size() {
+                    return count;
+                }
+            });
+        }
+
+        @Override
+        protected int getArc() {
+            return field(ARC);
+        }
+
+        @Override
+        protected int getDepth() {
+            return field(DEPTH);
+        }
+
+        @Override
+        protected boolean isTableEntry() {
+            return field(TABLEENTRY) != 0;
+        }
+
+        @Override
+        public ObjectType getObjectType() {
+            int object = field(OBJECT);
+            return object >= 0 ? objectType(object) : null;
+        }
+
+        @Override
+        public Syntax getSyntax() {
+            return syntax(field(SYNTAX));
+        }
+
+        @Override
+        public Map<Integer, Trap> getTraps() {
+            int trap = field(TRAPS);
+            return trap >= 0 ? traps(buffer.getInt(traps + trap * TRAPSIZE + 4)) : null;
+        }
+
+        @Override
+        public OidTreeNode getTableEntry() {
+            return node(field(TABLE));
+        }
+
+        @Override
+        public Index getIndex() {
+            int index = field(INDEX);
+            return index >= 0 ? index(index) : null;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (obj == null || obj.getClass() != Node.class) {
+                return false;
+            } else {
+                Node other = (Node) obj;
+                return other.id == id && other.getTree() == getTree();
+            }
+        }
+
+        private MappedOidTree getTree() {
+            return MappedOidTree.this;
+        }
+
+    }
+
+    /**
+     * A read only map, whose entries are records in the buffer
+     */
+    private abstract static class RecordMap<K, V> extends AbstractMap<K, V> {
+        private final int count;
+
+        private RecordMap(int count) {
+            this.count = count;
+        }
+
+        protected abstract K key(int rank);
+        protected abstract V value(int rank);
+        protected abstract int find(Object key);
+
+        @Override
+        public V get(Object key) {
+            int rank = find(key);
+            return rank >= 0 ? value(rank) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new AbstractSet<Map.Entry<K, V>>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new Iterator<Map.Entry<K, V>>() {
+                        private int rank = 0;
+                        @Override
+                        public boolean hasNext() {
+                            return rank < count;
+                        }
+                        @Override
+                        public Map.Entry<K, V> next() {
+                            if (rank >= count) {
+                                throw new NoSuchElementException();
+                            }
+                            Map.Entry<K, V> e = new AbstractMap.SimpleImmutableEntry<>(key(rank), value(rank));
+                            rank++;
+                            return e;
+                        }
+                    };
+                }
+                @Override
+                public int size() {
+                    return count;
+                }
+            };
+        }
+    }
+
+    /**
+     * Reads a record in the data section
+     */
+    private class Cursor implements SyntaxRecord.RecordInput {
+        private int position;
+
+        private Cursor(int ref) {
+            this.position = data + ref;
+        }
+
+        @Override
+        public byte readByte() {
+            return buffer.get(position++);
+        }
+
+        @Override
+        public short readShort() {
+            short v = buffer.getShort(position);
+            position += 2;
+            return v;
+        }
+
+        @Override
+        public int readInt() {
+            int v = buffer.getInt(position);
+            position += 4;
+            return v;
+        }
+
+        @Override
+        public long readLong() {
+            long v = buffer.getLong(position);
+            position += 8;
+            return v;
+        }
+
+        @Override
+        public boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        @Override
+        public String readString() {
+            return string(readInt());
+        }
+    }
+
+    private MappedOidTree(ByteBuffer buffer, int body) {
+        this.buffer = buffer;
+        int[] counts = new int[COUNTS];
+        for (int i = 0; i < COUNTS; i++) {
+            counts[i] = buffer.getInt(body + i * 4);
+        }
+        nodeCount = counts[0];
+        namesCount = counts[1];
+        syntaxNamesCount = counts[2];
+        syntaxCount = counts[3];
+        objectsCount = counts[4];
+        indexCount = counts[5];
+        trapsCount = counts[6];
+        modulesCount = counts[7];
+        int dataSize = counts[8];
+        nodes = body + COUNTS * 4;
+        names = nodes + nodeCount * NODESIZE;
+        syntaxNames = names + namesCount * NAMESIZE;
+        syntaxTable = syntaxNames + syntaxNamesCount * SYNTAXNAMESIZE;
+        objects = syntaxTable + syntaxCount * OFFSETSIZE;
+        indexTable = objects + objectsCount * OBJECTSIZE;
+        traps = indexTable + indexCount * OFFSETSIZE;
+        modules = traps + trapsCount * TRAPSIZE;
+        data = modules + modulesCount * MODULESIZE;
+        strings = data + dataSize;
+        top = new Node();
+        syntaxes = new SyntaxRecord.Builder(syntaxCount) {
+            @Override
+            protected SyntaxRecord record(int id) throws IOException {
+                return SyntaxRecord.read(new Cursor(buffer.getInt(syntaxTable + id * OFFSETSIZE)));
+            }
+        };
+    }
+
+    private int arc(int node) {
+        return buffer.getInt(nodes + node * NODESIZE + ARC);
+    }
+
+    private Node node(int id) {
+        if (id < 0) {
+            return null;
+        } else if (id == 0) {
+            return top;
+        } else {
+            return new Node(id);
+        }
+    }
+
+    private String string(int ref) {
+        if (ref < 0) {
+            return null;
+        }
+        int length = buffer.getInt(strings + ref);
+        byte[] content = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(strings + ref + 4);
+        view.get(content);
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compare a stored string with an UTF-8 encoded key, using the order of the bytes
+     */
+    private int compare(int ref, byte[] key) {
+        int length = buffer.getInt(strings + ref);
+        int start = strings + ref + 4;
+        for (int i = 0; i < Math.min(length, key.length); i++) {
+            int c = Integer.compare(buffer.get(start + i) & 0xff, key[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    /**
+     * Binary search in a section of records sorted by name
+     */
+    private int findName(int section, int recordSize, int count, Object key) {
+        if (! (key instanceof String)) {
+            return -1;
+        }
+        byte[] encoded = ((String) key).getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(buffer.getInt(section + mid * recordSize), encoded);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private Syntax syntax(int id) {
+        try {
+            return syntaxes.get(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Invalid syntax record " + id, e);
+        }
+    }
+
+    private ObjectType objectType(int rank) {
+        return objectTypes.computeIfAbsent(rank, k -> {
+            int record = objects + k * OBJECTSIZE;
+            int index = buffer.getInt(record + 12);
+            return new ObjectType(syntax(buffer.getInt(record + 4)), buffer.getInt(record + 8) != 0, index >= 0 ? index(index) : null);
+        });
+    }
+
+    private Index index(int id) {
+        return indexes.computeIfAbsent(id, k -> {
+            Cursor cursor = new Cursor(buffer.getInt(indexTable + k * OFFSETSIZE));
+            boolean implied = cursor.readBoolean();
+            int count = cursor.readInt();
+            List<OidTreeNode> columns = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                columns.add(node(cursor.readInt()));
+            }
+            return new Index(columns, implied);
+        });
+    }
+
+    private Map<Integer, Trap> traps(int ref) {
+        return resolvedTraps.computeIfAbsent(ref, k -> {
+            Cursor cursor = new Cursor(k);
+            int count = cursor.readInt();
+            Map<Integer, Trap> nodeTraps = new HashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                int specific = cursor.readInt();
+                String name = cursor.readString();
+                int variablesCount = cursor.readInt();
+                List<String> variables = new ArrayList<>(variablesCount);
+                for (int j = 0; j < variablesCount; j++) {
+                    variables.add(cursor.readString());
+                }
+                nodeTraps.put(specific, new Trap(name, variables));
+            }
+            return nodeTraps;
+        });
+    }
+
+    private List<OidTreeNode> nodeList(int ref) {
+        Cursor cursor = new Cursor(ref);
+        int count = cursor.readInt();
+        List<OidTreeNode> named = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            named.add(node(cursor.readInt()));
+        }
+        return named;
+    }
+
+    /**
+     * The rank of the node, or -1 if it's not a node of this tree. The null node is identified by -2.
+     */
+    private int nodeRank(Object key) {
+        if (key == null) {
+            return -2;
+        } else if (key instanceof Node && ((Node) key).getTree() == this) {
+            return ((Node) key).id;
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Search a entry in a section whose records start with a node rank
+     */
+    private int findNode(int section, int recordSize, int count, Object key, int nodeField) {
+        int rank = nodeRank(key);
+        if (rank == -1) {
+            return -1;
+        } else if (rank >= 0) {
+            // The node record knows the entry
+            return buffer.getInt(nodes + rank * NODESIZE + nodeField);
+        } else {
+            for (int i = 0; i < count; i++) {
+                if (buffer.getInt(section + i * recordSize) == -1) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private MibStore getStore() {
+        Set<String> modulesSet = new HashSet<>(modulesCount);
+        for (int i = 0; i < modulesCount; i++) {
+            modulesSet.add(string(buffer.getInt(modules + i * MODULESIZE)));
+        }
+        Map<String, List<OidTreeNode>> namesMap = new RecordMap<String, List<OidTreeNode>>(namesCount) {
+            @Override
+            protected String key(int rank) {
+                return string(buffer.getInt(names + rank * NAMESIZE));
+            }
+            @Override
+            protected List<OidTreeNode> value(int rank) {
+                return nodeList(buffer.getInt(names + rank * NAMESIZE + 4));
+            }
+            @Override
+            protected int find(Object key) {
+                return findName(names, NAMESIZE, namesCount, key);
+            }
+        };
+        Map<String, Syntax> syntaxesMap = new RecordMap<String, Syntax>(syntaxNamesCount) {
+            @Override
+            protected String key(int rank) {
+                return string(buffer.getInt(syntaxNames + rank * SYNTAXNAMESIZE));
+            }
+            @Override
+            protected Syntax value(int rank) {
+                return syntax(buffer.getInt(syntaxNames + rank * SYNTAXNAMESIZE + 4));
+            }
+            @Override
+            protected int find(Object key) {
+                return findName(syntaxNames, SYNTAXNAMESIZE, syntaxNamesCount, key);
+            }
+        };
+        Map<OidTreeNode, ObjectType> objectsMap = new RecordMap<OidTreeNode, ObjectType>(objectsCount) {
+            @Override
+            protected OidTreeNode key(int rank) {
+                return node(buffer.getInt(objects + rank * OBJECTSIZE));
+            }
+            @Override
+            protected ObjectType value(int rank) {
+                return objectType(rank);
+            }
+            @Override
+            protected int find(Object key) {
+                return findNode(objects, OBJECTSIZE, objectsCount, key, OBJECT);
+            }
+        };
+        Map<OidTreeNode, Map<Integer, Trap>> trapsMap = new RecordMap<OidTreeNode, Map<Integer, Trap>>(trapsCount) {
+            @Override
+            protected OidTreeNode key(int rank) {
+                return node(buffer.getInt(traps + rank * TRAPSIZE));
+            }
+            @Override
+            protected Map<Integer, Trap> value(int rank) {
+                return MappedOidTree.this.traps(buffer.getInt(traps + rank * TRAPSIZE + 4));
+            }
+            @Override
+            protected int find(Object key) {
+                return findNode(traps, TRAPSIZE, trapsCount, key, TRAPS);
+            }
+        };
+        return new MibStoreImpl(top, modulesSet, namesMap, syntaxesMap, objectsMap, trapsMap);
+    }
+
+    /**
+     * Map a snapshot file.
+     * @param file the snapshot file
+     * @param sources the modules files, in the loading order
+     * @return the store, or null if the snapshot is stale
+     * @throws IOException if the file can't be read
+     */
+    static MibStore open(Path file, Path[] sources) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid once the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unknown format");
+        }
+        int headerSize = buffer.getInt(8);
+        byte[] header = new byte[headerSize];
+        ByteBuffer view = buffer.duplicate();
+        view.position(12);
+        view.get(header);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+        SnapshotFormat.SourceFile[] saved = new SnapshotFormat.SourceFile[in.readInt()];
+        for (int i = 0; i < saved.length; i++) {
+            String path = in.readUTF();
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            byte[] digest = new byte[32];
+            in.readFully(digest);
+            saved[i] = new SnapshotFormat.SourceFile(path, size, lastModified, digest);
+        }
+        if (! SnapshotFormat.SourceFile.check(saved, sources)) {
+            return null;
+        }
+        return new MappedOidTree(buffer, 12 + headerSize).getStore();
+    }
+
+    /**
+     * Write a store in the mapped format.
+     * @param store the store to save
+     * @param sources the modules files used to build the store
+     * @return the content of the file
+     * @throws IOException
+     */
+    static byte[] write(MibStore store, Path[] sources) throws IOException {
+        return new Writer(store).write(sources);
+    }
+
+    private static class Writer implements SyntaxRecord.RecordOutput {
+        private final MibStore store;
+        private final Map<String, Integer> stringRefs = new HashMap<>();
+        private final ByteArrayOutputStream stringsBuffer = new ByteArrayOutputStream();
+        private final DataOutputStream stringsOut = new DataOutputStream(stringsBuffer);
+        private final ByteArrayOutputStream dataBuffer = new ByteArrayOutputStream();
+        private final DataOutputStream dataOut = new DataOutputStream(dataBuffer);
+        private final List<OidTreeNode> order = new ArrayList<>();
+        private final Map<OidTreeNode, Integer> nodeIds = new HashMap<>();
+        private final Map<Syntax, Integer> syntaxIds = new IdentityHashMap<>();
+        private final List<Syntax> syntaxList = new ArrayList<>();
+        private final Map<Index, Integer> indexIds = new IdentityHashMap<>();
+        private final List<Index> indexList = new ArrayList<>();
+
+        private Writer(MibStore store) {
+            this.store = store;
+        }
+
+        private byte[] write(Path[] sources) throws IOException {
+            order.add(store.top);
+            nodeIds.put(store.top, 0);
+            for (int i = 0; i < order.size(); i++) {
+                for (OidTreeNode child: order.get(i).childs()) {
+                    nodeIds.put(child, order.size());
+                    order.add(child);
+                }
+            }
+            store.syntaxes.values().forEach(this::syntaxId);
+            store.objects.values().forEach(i -> syntaxId(i.getSyntax()));
+            // The list grows while the dependencies are found
+            List<Integer> syntaxRefs = new ArrayList<>();
+            for (int i = 0; i < syntaxList.size(); i++) {
+                syntaxRefs.add(dataOut.size());
+                SyntaxRecord.write(syntaxList.get(i), this);
+            }
+
+            // The links of the nodes
+            int size = order.size();
+            int[] objectRanks = new int[size];
+            int[] syntaxRanks = new int[size];
+            int[] indexRanks = new int[size];
+            int[] trapsRanks = new int[size];
+            Arrays.fill(objectRanks, -1);
+            Arrays.fill(syntaxRanks, -1);
+            Arrays.fill(indexRanks, -1);
+            Arrays.fill(trapsRanks, -1);
+
+            ByteArrayOutputStream objectsBuffer = new ByteArrayOutputStream();
+            DataOutputStream objectsOut = new DataOutputStream(objectsBuffer);
+            List<Integer> indexRefs = new ArrayList<>();
+            for (Map.Entry<OidTreeNode, ObjectType> e: store.objects.entrySet()) {
+                ObjectType object = e.getValue();
+                int node = nodeId(e.getKey());
+                int index = -1;
+                if (object.getIndex() != null) {
+                    index = indexIds.computeIfAbsent(object.getIndex(), k -> {
+                        indexList.add(k);
+                        return indexList.size() - 1;
+                    });
+                    if (index == indexRefs.size()) {
+                        indexRefs.add(dataOut.size());
+                        dataOut.writeBoolean(object.getIndex().isImplied());
+                        dataOut.writeInt(object.getIndex().getIndexes().size());
+                        for (OidTreeNode column: object.getIndex().getIndexes()) {
+                            dataOut.writeInt(nodeId(column));
+                        }
+                    }
+                }
+                if (node >= 0) {
+                    objectRanks[node] = objectsOut.size() / OBJECTSIZE;
+                    if (object.isIndexed()) {
+                        for (OidTreeNode child: e.getKey().childs()) {
+                            indexRanks[nodeIds.get(child)] = index;
+                        }
+                    }
+                }
+                objectsOut.writeInt(node);
+                objectsOut.writeInt(syntaxId(object.getSyntax()));
+                objectsOut.writeInt(object.isIndexed() ? 1 : 0);
+                objectsOut.writeInt(index);
+            }
+
+            ByteArrayOutputStream trapsBuffer = new ByteArrayOutputStream();
+            DataOutputStream trapsOut = new DataOutputStream(trapsBuffer);
+            for (Map.Entry<OidTreeNode, Map<Integer, Trap>> e: store.resolvedTraps.entrySet()) {
+                int node = nodeId(e.getKey());
+                int ref = dataOut.size();
+                dataOut.writeInt(e.getValue().size());
+                for (Map.Entry<Integer, Trap> t: e.getValue().entrySet()) {
+                    dataOut.writeInt(t.getKey());
+                    writeString(t.getValue().name);
+                    dataOut.writeInt(t.getValue().variables.size());
+                    for (String v: t.getValue().variables) {
+                        writeString(v);
+                    }
+                }
+                if (node >= 0) {
+                    trapsRanks[node] = trapsOut.size() / TRAPSIZE;
+                }
+                trapsOut.writeInt(node);
+                trapsOut.writeInt(ref);
+            }
+
+            for (int i = 1; i < size; i++) {
+                String symbol = order.get(i).getSymbol();
+                if (symbol != null) {
+                    syntaxRanks[i] = knownSyntaxId(store.syntaxes.get(symbol));
+                }
+            }
+
+            ByteArrayOutputStream namesBuffer = new ByteArrayOutputStream();
+            DataOutputStream namesOut = new DataOutputStream(namesBuffer);
+            for (String name: sorted(store.names.keySet())) {
+                namesOut.writeInt(stringRef(name));
+                namesOut.writeInt(dataOut.size());
+                List<OidTreeNode> named = store.names.get(name);
+                dataOut.writeInt(named.size());
+                for (OidTreeNode n: named) {
+                    dataOut.writeInt(nodeId(n));
+                }
+            }
+            ByteArrayOutputStream syntaxNamesBuffer = new ByteArrayOutputStream();
+            DataOutputStream syntaxNamesOut = new DataOutputStream(syntaxNamesBuffer);
+            for (String name: sorted(store.syntaxes.keySet())) {
+                syntaxNamesOut.writeInt(stringRef(name));
+                syntaxNamesOut.writeInt(knownSyntaxId(store.syntaxes.get(name)));
+            }
+
+            ByteArrayOutputStream nodesBuffer = new ByteArrayOutputStream();
+            DataOutputStream nodesOut = new DataOutputStream(nodesBuffer);
+            int[] tables = new int[size];
+            int[] depths = new int[size];
+            int[] parents = new int[size];
+            tables[0] = -1;
+            parents[0] = -1;
+            int next = 1;
+            for (int i = 0; i < size; i++) {
+                OidTreeNode node = order.get(i);
+                boolean isTableEntry = i != 0 && SnapshotFormat.isTableEntry(node);
+                if (i != 0) {
+                    // The parent is always numbered before its childs
+                    tables[i] = isTableEntry ? parents[i] : tables[parents[i]];
+                    depths[i] = depths[parents[i]] + 1;
+                }
+                int childCount = node.childs().size();
+                for (int j = 0; j < childCount; j++) {
+                    parents[next + j] = i;
+                }
+                int[] elements = i != 0 ? node.getElements() : new int[] {0};
+                nodesOut.writeInt(elements[elements.length - 1]);
+                nodesOut.writeInt(parents[i]);
+                nodesOut.writeInt(next);
+                nodesOut.writeInt(childCount);
+                nodesOut.writeInt(depths[i]);
+                nodesOut.writeInt(stringRef(node.getSymbol()));
+                nodesOut.writeInt(isTableEntry ? 1 : 0);
+                nodesOut.writeInt(tables[i]);
+                nodesOut.writeInt(objectRanks[i]);
+                nodesOut.writeInt(syntaxRanks[i]);
+                nodesOut.writeInt(indexRanks[i]);
+                nodesOut.writeInt(trapsRanks[i]);
+                next += childCount;
+            }
+
+            ByteArrayOutputStream modulesBuffer = new ByteArrayOutputStream();
+            DataOutputStream modulesOut = new DataOutputStream(modulesBuffer);
+            for (String module: store.modules) {
+                modulesOut.writeInt(stringRef(module));
+            }
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream headerOut = new DataOutputStream(header);
+            headerOut.writeInt(sources.length);
+            for (Path i: sources) {
+                SnapshotFormat.SourceFile source = SnapshotFormat.SourceFile.of(i);
+                headerOut.writeUTF(source.path);
+                headerOut.writeLong(source.size);
+                headerOut.writeLong(source.lastModified);
+                headerOut.write(source.getDigest());
+            }
+
+            ByteArrayOutputStream file = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(file);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(header.size());
+            header.writeTo(out);
+            out.writeInt(size);
+            out.writeInt(store.names.size());
+            out.writeInt(store.syntaxes.size());
+            out.writeInt(syntaxList.size());
+            out.writeInt(store.objects.size());
+            out.writeInt(indexList.size());
+            out.writeInt(store.resolvedTraps.size());
+            out.writeInt(store.modules.size());
+            out.writeInt(dataOut.size());
+            nodesBuffer.writeTo(out);
+            namesBuffer.writeTo(out);
+            syntaxNamesBuffer.writeTo(out);
+            for (int ref: syntaxRefs) {
+                out.writeInt(ref);
+            }
+            objectsBuffer.writeTo(out);
+            for (int ref: indexRefs) {
+                out.writeInt(ref);
+            }
+            trapsBuffer.writeTo(out);
+            modulesBuffer.writeTo(out);
+            dataBuffer.writeTo(out);
+            stringsBuffer.writeTo(out);
+            out.flush();
+            return file.toByteArray();
+        }
+
+        private List<String> sorted(Set<String> keys) {
+            List<String> sorted = new ArrayList<>(keys);
+            Comparator<String> byBytes = (a, b) -> Arrays.compareUnsigned(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+            sorted.sort(byBytes);
+            return sorted;
+        }
+
+        private int nodeId(OidTreeNode node) {
+            return node != null ? nodeIds.get(node) : -1;
+        }
+
+        private int syntaxId(Syntax syntax) {
+            if (syntax == null) {
+                return -1;
+            }
+            return syntaxIds.computeIfAbsent(syntax, k -> {
+                syntaxList.add(k);
+                return syntaxList.size() - 1;
+            });
+        }
+
+        private int knownSyntaxId(Syntax syntax) {
+            if (syntax != null && ! syntaxIds.containsKey(syntax)) {
+                throw new IllegalStateException("Syntax not numbered: " + syntax);
+            }
+            return syntaxId(syntax);
+        }
+
+        private int stringRef(String s) throws IOException {
+            if (s == null) {
+                return -1;
+            }
+            Integer ref = stringRefs.get(s);
+            if (ref == null) {
+                ref = stringsOut.size();
+                byte[] content = s.getBytes(StandardCharsets.UTF_8);
+                stringsOut.writeInt(content.length);
+                stringsOut.write(content);
+                stringRefs.put(s, ref);
+            }
+            return ref;
+        }
+
+        @Override
+        public void writeByte(int v) throws IOException {
+            dataOut.writeByte(v);
+        }
+
+        @Override
+        public void writeShort(int v) throws IOException {
+            dataOut.writeShort(v);
+        }
+
+        @Override
+        public void writeInt(int v) throws IOException {
+            dataOut.writeInt(v);
+        }
+
+        @Override
+        public void writeLong(long v) throws IOException {
+            dataOut.writeLong(v);
+        }
+
+        @Override
+        public void writeBoolean(boolean v) throws IOException {
+            dataOut.writeBoolean(v);
+        }
+
+        @Override
+        public void writeString(String s) throws IOException {
+            dataOut.writeInt(stringRef(s));
+        }
+
+        @Override
+        public void writeSyntax(Syntax s) throws IOException {
+            dataOut.writeInt(syntaxId(s));
+        }
+    }
+
+}
@@ -10,28 +10,32 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import org.antlr.v4.runtime.ANTLRErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
 import fr.jrds.snmpcodec.MibException;
-import fr.jrds.snmpcodec.MibException.NonCheckedMibException;
 import fr.jrds.snmpcodec.MibStore;
 import fr.jrds.snmpcodec.OidTreeNode;
 import fr.jrds.snmpcodec.log.LogAdapter;
 import fr.jrds.snmpcodec.smi.AnnotedSyntax;
+import fr.jrds.snmpcodec.smi.Index;
 import fr.jrds.snmpcodec.smi.ObjectType;
 import fr.jrds.snmpcodec.smi.Oid;
 import fr.jrds.snmpcodec.smi.Referenced;
@@ -46,9 +50,12 @@ public class MibLoader {
     public static final LogAdapter MIBPARSINGLOGGER = LogAdapter.getLogger(MibLoader.class);
     public static final LogAdapter MIBPARSINGLOGGERERROR = LogAdapter.getLogger(MibStore.class.getPackage().getName() + ".MibParsingError");
 
-    private final ModuleListener modulelistener;
-    private final ANTLRErrorListener errorListener;
+    private final Executor executor;
     private final Properties encodings;
+    private ParseCache cache = null;
+    private boolean keepDescriptions = true;
+    private final AtomicInteger parsedFiles = new AtomicInteger();
+    private final AtomicInteger fallbackFiles = new AtomicInteger();
 
     // Those two sets will contains many instance of the same OID
     // The first versions of Oid will depends of the module where it's defined
@@ -57,7 +64,7 @@ public class MibLoader {
     private final Set<Oid> tableEntryOid = new HashSet<>();
     private final Set<Symbol> badsymbols = new HashSet<>();
     private final Map<Symbol, Oid> buildOids = new HashMap<>();
-    private final Map<List<Integer>, OidTreeNode> nodes = new HashMap<>();
+    private final Map<PathKey, OidTreeNode> nodes = new HashMap<>();
     private final Map<Symbol, Syntax> types = new HashMap<>();
     private final Map<Object, Map<Integer, Map<String, Object>>> buildTraps = new HashMap<>();
     private final Map<Symbol, Map<String, Object>> textualConventions = new HashMap<>();
@@ -71,6 +78,15 @@ public class MibLoader {
     private final Map<OidTreeNode, Map<Integer,Trap>> resolvedTraps = new HashMap<>();
 
     public MibLoader() {
+        this(null);
+    }
+
+    /**
+     * Create a loader that parse the modules concurrently.
+     * @param executor the executor used to parse the modules, or null for a sequential parsing
+     */
+    public MibLoader(Executor executor) {
+        this.executor = executor;
         try {
             addRoot("ccitt", 0);
             addRoot("iso", 1);
@@ -80,9 +96,6 @@ public class MibLoader {
             // Can't be thrown at startup
         }
 
-        modulelistener = new ModuleListener(this);
-        errorListener = new ModuleErrorListener(modulelistener);
-
         encodings = new Properties();
         try {
             Collections.list(ClassLoader.getSystemResources("modulesencoding.txt")).forEach( i-> {
@@ -105,53 +118,78 @@ public class MibLoader {
         addOid(s, path, false);
     }
 
-    private void load(Stream<CharStream> source) {
-        source
-        .filter(i -> {modulelistener.firstError = true; return true;} )
-        .map(i -> {
-            ASNLexer lexer = new ASNLexer(i);
-            lexer.removeErrorListeners();
-            lexer.addErrorListener(errorListener);
-            return lexer;
-        })
-        .map(CommonTokenStream::new)
-        .map(i -> {
-            ASNParser parser = new ASNParser(i);
-            parser.removeErrorListeners();
-            parser.addErrorListener(errorListener);
-            modulelistener.parser = parser;
-            return parser;
-        })
-        .map(i -> {
-            try {
-                return i.fileContent();
-            } catch (WrappedException e) {
-                MIBPARSINGLOGGERERROR.warn("Not a valid module: " + e.getMessage() + " "+ e.getLocation());
-                return null;
+    /**
+     * Use a cache of the parsed files, for the files loaded using their path
+     * @param cache the cache, or null to parse all the files
+     */
+    public void setCache(ParseCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * The descriptive texts (DESCRIPTION, REFERENCE, CONTACT-INFO and ORGANIZATION) are never used by a {@link MibStore}.
+     * If they are not kept, they are not extracted from the parsed files, reducing the loading time and the memory used.
+     * They are kept by default.
+     * @param keepDescriptions false to skip the descriptive texts
+     */
+    public void setKeepDescriptions(boolean keepDescriptions) {
+        this.keepDescriptions = keepDescriptions;
+    }
+
+    /**
+     * @return the number of files parsed by this loader, the files read from the cache are not counted
+     */
+    public int getParsedFiles() {
+        return parsedFiles.get();
+    }
+
+    /**
+     * @return the number of files whose fast SLL parsing failed, and that were parsed again with the full LL prediction
+     */
+    public int getFallbackFiles() {
+        return fallbackFiles.get();
+    }
+
+    private ModuleFragment count(ModuleFragment fragment) {
+        if (fragment != null && fragment.isParsed()) {
+            parsedFiles.incrementAndGet();
+            if (fragment.isFallback()) {
+                fallbackFiles.incrementAndGet();
             }
-        })
-        .filter(Objects::nonNull)
-        .forEach(i -> {
-            try {
-                ParseTreeWalker.DEFAULT.walk(modulelistener, i);
-            } catch (IllegalStateException e) {
-                // The stack was inconsistend during parsing, already handled
-            } catch (NonCheckedMibException e) {
+        }
+        return fragment;
+    }
+
+    private void load(Stream<CharStream> source) {
+        loadFragments(source.map(i -> () -> ModuleFragment.parse(i, keepDescriptions)));
+    }
+
+    private void loadFragments(Stream<Supplier<ModuleFragment>> source) {
+        if (executor == null) {
+            source.map(Supplier::get).map(this::count).filter(Objects::nonNull).forEach(i -> i.replay(this));
+        } else {
+            List<CompletableFuture<ModuleFragment>> fragments = source
+                    .map(i -> CompletableFuture.supplyAsync(i, executor))
+                    .collect(Collectors.toList());
+            // Replayed in the sources order, so the result is the same than a sequential load
+            fragments.forEach(i -> {
                 try {
-                    throw e.getWrapper();
-                } catch (MibException.DuplicatedModuleException e2) {
-                    MIBPARSINGLOGGERERROR.info(e2.getMessage());
-                } catch (MibException.DuplicatedSymbolException e2) {
-                    LogAdapter miblogger = LogAdapter.getLogger(MibStore.class.getName() + ".mib." + e2.getSymbol().module);
-                    if (miblogger.isInfoEnabled()) {
-                        miblogger.info(miblogger.getName() + e2.getMessage());
+                    ModuleFragment fragment = count(i.join());
+                    if (fragment != null) {
+                        fragment.replay(this);
+                    }
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    } else if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    } else {
+                        throw e;
                     }
-                } catch (MibException e2) {
-                    MIBPARSINGLOGGERERROR.error(e2, e2.getMessage());
                 }
-            }
-        });
-
+            });
+        }
+        MIBPARSINGLOGGER.debug("%d files parsed, %d needed the full LL prediction", parsedFiles.get(), fallbackFiles.get());
     }
 
     public void load(InputStream... sources) throws IOException {
@@ -187,34 +225,122 @@ public class MibLoader {
     }
 
     public void load(String encoding, Path... sources) {
-        Stream<CharStream> antltrstream = Arrays.stream(sources)
-                .map(i -> {
-                    String moduleencoding = encoding;
-                    if (moduleencoding == null) {
-                        String filename = i.getFileName().toString();
-                        moduleencoding = encodings.getProperty(filename, "ASCII");
-                    }
-                    if ("skip".equals(moduleencoding)) {
-                        return null;
-                    }
-                    try {
-                        return CharStreams.fromPath(i, Charset.forName(moduleencoding));
-                    } catch (IllegalCharsetNameException e) {
-                        MIBPARSINGLOGGER.error("Invalid charset for %s: %s", i, moduleencoding);
-                        return null;
-                    } catch (IOException e) {
-                        MIBPARSINGLOGGER.error("Invalid MIB source %s: %s", i, e.getMessage());
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull);
-        load(antltrstream);
+        loadFragments(Arrays.stream(sources).map(i -> () -> parse(encoding, i)));
+        if (cache != null) {
+            MIBPARSINGLOGGER.debug("Parse cache %s", cache);
+        }
+    }
+
+    private Charset charset(String encoding, Path source) {
+        String moduleencoding = encoding;
+        if (moduleencoding == null) {
+            String filename = source.getFileName().toString();
+            moduleencoding = encodings.getProperty(filename, "ASCII");
+        }
+        if ("skip".equals(moduleencoding)) {
+            return null;
+        }
+        try {
+            return Charset.forName(moduleencoding);
+        } catch (IllegalCharsetNameException e) {
+            MIBPARSINGLOGGER.error("Invalid charset for %s: %s", source, moduleencoding);
+            return null;
+        }
+    }
+
+    private ModuleFragment parse(String encoding, Path source) {
+        Charset charset = charset(encoding, source);
+        if (charset == null) {
+            return null;
+        }
+        try {
+            if (cache != null) {
+                return cache.parse(source, charset, keepDescriptions);
+            } else {
+                return ModuleFragment.parse(CharStreams.fromPath(source, charset), keepDescriptions);
+            }
+        } catch (IOException e) {
+            MIBPARSINGLOGGER.error("Invalid MIB source %s: %s", source, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Parse a file without loading it
+     * @param source the modules file
+     * @return the parsed file, or null if it's skipped or can't be read
+     */
+    public ModuleFragment parse(Path source) {
+        return count(parse(null, source));
+    }
+
+    /**
+     * Load a file already parsed
+     * @param fragment the parsed file
+     */
+    public void load(ModuleFragment fragment) {
+        fragment.replay(this);
     }
 
     public void load(Path... sources) {
         load(null, sources);
     }
 
+    /**
+     * Build the store, and optionally compile its OID tree in a frozen, array based, form.
+     * @param compile true to compile the tree
+     * @return a new {@link MibStore}
+     */
+    public MibStore buildTree(boolean compile) {
+        MibStore store = buildTree();
+        return compile ? compile(store) : store;
+    }
+
+    /**
+     * Build the store, save a snapshot of it, and optionally compile its OID tree. A failure to write the snapshot is only logged.
+     * @param compile true to compile the tree
+     * @param snapshot the snapshot file
+     * @param sources the modules files that were loaded
+     * @return a new {@link MibStore}
+     * @see SnapshotFormat
+     */
+    public MibStore buildTree(boolean compile, Path snapshot, Path[] sources) {
+        MibStore store = buildTree();
+        try {
+            MIBPARSINGLOGGER.debug("Writing the snapshot %s", snapshot);
+            SnapshotFormat.write(store, snapshot, sources);
+        } catch (IOException | RuntimeException e) {
+            MIBPARSINGLOGGER.warn("Can't write snapshot %s: %s", snapshot, e.getMessage());
+        }
+        return compile ? compile(store) : store;
+    }
+
+    /**
+     * Build the store, save a mappable snapshot of it, and return the store mapped from this snapshot. If the snapshot
+     * can't be written or mapped, the built store is returned.
+     * @param snapshot the snapshot file
+     * @param sources the modules files that were loaded
+     * @return a new {@link MibStore}
+     * @see SnapshotFormat#map(Path, Path[])
+     */
+    public MibStore buildMapped(Path snapshot, Path[] sources) {
+        MibStore store = buildTree();
+        try {
+            MIBPARSINGLOGGER.debug("Writing the mapped snapshot %s", snapshot);
+            SnapshotFormat.writeMapped(store, snapshot, sources);
+        } catch (IOException | RuntimeException e) {
+            MIBPARSINGLOGGER.warn("Can't write snapshot %s: %s", snapshot, e.getMessage());
+            return store;
+        }
+        MibStore mapped = SnapshotFormat.map(snapshot, sources);
+        return mapped != null ? mapped : store;
+    }
+
+    private MibStore compile(MibStore store) {
+        MIBPARSINGLOGGER.debug("Compiling the OID tree");
+        return CompiledOidTree.compile(store);
+    }
+
     public MibStore buildTree() {
         MIBPARSINGLOGGER.debug("Starting to build the MIB");
         MibStore newStore = new MibStoreImpl(top, modules, names, syntaxes, objects, resolvedTraps);
@@ -257,13 +383,13 @@ public class MibLoader {
         MIBPARSINGLOGGER.debug("Building the OID tree");
         sortedOid.forEach(oid -> {
             try {
-                int[] content = oid.getPath(buildOids).stream().mapToInt(Integer::intValue).toArray();
+                int[] content = oid.getPath(buildOids);
                 OidTreeNode node = top.add(content, oid.getName(), tableEntryOid.contains(oid));
-                nodes.put(oid.getPath(buildOids), node);
+                nodes.put(new PathKey(content), node);
                 names.computeIfAbsent(oid.getName(), i -> new ArrayList<>()).add(node);
             } catch (MibException e) {
                 try {
-                    int[] content = oid.getPath(buildOids).stream().mapToInt(Integer::intValue).toArray();
+                    int[] content = oid.getPath(buildOids);
                     top.add(content, oid.getName(), tableEntryOid.contains(oid));
                 } catch (MibException e1) {
                     MIBPARSINGLOGGERERROR.error(e1, e1.getMessage());
@@ -272,18 +398,8 @@ public class MibLoader {
             }
         });
 
-        MIBPARSINGLOGGERERROR.debug("Resolving the types");
-        types.entrySet().stream()
-        .filter(i -> i.getValue() != null)
-        .forEach( i-> {
-            try {
-                i.getValue().resolve(types);
-            } catch (MibException e) {
-                MIBPARSINGLOGGERERROR.warn("Can't resolve type %s: %s", i.getKey(), e.getMessage());
-            }
-        });
-        MIBPARSINGLOGGERERROR.debug("Resolving the textual conventions");
-        resolveTextualConventions();
+        MIBPARSINGLOGGERERROR.debug("Resolving the types and the textual conventions");
+        resolveTypes();
         types.forEach((i,j) -> syntaxes.put(i.name, j));
         MIBPARSINGLOGGERERROR.debug("Building the objects");
         Map<OidTreeNode, ObjectTypeBuilder> augmenters = new HashMap<>();
@@ -291,7 +407,7 @@ public class MibLoader {
             int[] components = null;
             OidTreeNode node = null;
             try {
-                components = k.getPath(buildOids).stream().mapToInt(Integer::intValue).toArray();
+                components = k.getPath(buildOids);
                 node = top.find(components);
                 if (v.isAugmenter()) {
                     augmenters.put(node, v);
@@ -340,12 +456,10 @@ public class MibLoader {
                 } else {
                     throw new MibException("Wrong enterprise type " + i.getClass().getName());
                 }
-                int[] oidPath;
-                List<Integer> path = oid.getPath(buildOids);
-                if (path == null) {
+                int[] oidPath = oid.getPath(buildOids);
+                if (oidPath == null) {
                     throw new MibException("Can't resolve path " + oid);
                 }
-                oidPath = path.stream().mapToInt(Integer::intValue).toArray();
                 OidTreeNode node = top.find(oidPath);
                 Map<Integer, Trap> traps = new HashMap<>(j.size());
                 j.forEach((k,l) -> {
@@ -360,53 +474,97 @@ public class MibLoader {
                 MIBPARSINGLOGGERERROR.warn("Invalid trap: %s", e1.getMessage());
             }
         });
+        MIBPARSINGLOGGER.debug("Linking the nodes");
+        linkNodes(names, syntaxes, objects, resolvedTraps);
         return newStore;
     }
 
-    private void resolveTextualConventions() {
-        int resolvCount = 0;
-        int oldResolvCount = -1;
-        Set<Symbol> notDone = new HashSet<>(textualConventions.keySet());
-        while (textualConventions.size() != resolvCount && resolvCount != oldResolvCount) {
-            oldResolvCount = resolvCount;
-            for (Map.Entry<Symbol, Map<String, Object>> e: textualConventions.entrySet()) {
-                Symbol s = e.getKey();
-                if (notDone.contains(s)){
-                    Map<String, Object> attributes = e.getValue();
-                    Syntax type = (Syntax) attributes.get("SYNTAX");
-                    String hint = (String) attributes.get("DISPLAY-HINT");
-                    try {
-                        type.resolve(types);
-                        TextualConvention tc = type.getTextualConvention(hint, type);
-                        types.put(s, tc);
-                    } catch (MibException.MissingSymbol ex) {
-                        Syntax invalidType = type;
-                        if (invalidType instanceof AnnotedSyntax) {
-                            invalidType = ((AnnotedSyntax)invalidType).getSyntax();
-                        }
-                        if (invalidType instanceof Referenced) {
-                            Symbol ref = ((Referenced)invalidType).getSymbol();
-                            if (textualConventions.containsKey(ref)) {
-                                // Not a real error, just a non processed textual convention
-                                // To be tried again
-                                continue;
-                            }
-                        }
-                        MIBPARSINGLOGGERERROR.warn("Invalid textual convention %s: %s", s, ex.getMessage());
-                    } catch (MibException | MibException.NonCheckedMibException ex) {
-                        MIBPARSINGLOGGERERROR.warn("Invalid textual convention %s: %s", s, ex.getMessage());
-                    }
-                    notDone.remove(s);
-                    resolvCount++;
-                    if (resolvCount == textualConventions.size()) {
-                        break;
-                    }
+    /**
+     * Attach the resolved objects, syntaxes, traps and the rows index to the tree nodes, so formatting don't need to probe the maps
+     */
+    static void linkNodes(Map<String, List<OidTreeNode>> names, Map<String, Syntax> syntaxes,
+            Map<OidTreeNode, ObjectType> objects, Map<OidTreeNode, Map<Integer,Trap>> resolvedTraps) {
+        objects.forEach((k, v) -> {
+            if (k != null) {
+                ((OidTreeNodeImpl) k).setObjectType(v);
+                // Not all the nodes are in the names, if the tree building failed for some of them
+                if (k.getSymbol() != null) {
+                    ((OidTreeNodeImpl) k).setSyntax(syntaxes.get(k.getSymbol()));
                 }
+                if (v.isIndexed()) {
+                    k.childs().forEach(c -> ((OidTreeNodeImpl) c).setIndex(v.getIndex()));
+                }
+            }
+        });
+        resolvedTraps.forEach((k, v) -> {
+            if (k != null) {
+                ((OidTreeNodeImpl) k).setTraps(v);
+            }
+        });
+        names.values().forEach(l -> l.forEach(n -> {
+            if (n.getSymbol() != null) {
+                ((OidTreeNodeImpl) n).setSyntax(syntaxes.get(n.getSymbol()));
             }
+        }));
+        // The index plans need all the columns linked
+        objects.values().stream()
+               .map(ObjectType::getIndex)
+               .filter(Objects::nonNull)
+               .distinct()
+               .forEach(Index::compile);
+    }
+
+    /**
+     * The symbol a syntax directly refers to, if not resolved yet
+     */
+    private static Symbol reference(Syntax syntax) {
+        while (syntax instanceof AnnotedSyntax) {
+            syntax = ((AnnotedSyntax) syntax).getSyntax();
         }
-        if (notDone.isEmpty()) {
-            MIBPARSINGLOGGERERROR.debug("missing textual convention %d", notDone.size());
+        return syntax instanceof Referenced ? ((Referenced) syntax).getSymbol() : null;
+    }
+
+    /**
+     * Resolve the types and the textual conventions. Each one refers to at most one other symbol, so they are
+     * resolved by following the chains of references, the referred symbol first. A missing reference or a cycle is
+     * reported once.
+     */
+    private void resolveTypes() {
+        Set<Symbol> definitions = new HashSet<>(types.keySet());
+        definitions.addAll(textualConventions.keySet());
+        Set<Symbol> done = new HashSet<>(definitions.size());
+        Set<Symbol> visiting = new HashSet<>();
+        List<Symbol> chain = new ArrayList<>();
+        int unresolved = 0;
+        for (Symbol start: definitions) {
+            // Find the symbols to resolve, the deepest reference last
+            chain.clear();
+            visiting.clear();
+            Symbol current = start;
+            while (current != null && definitions.contains(current) && ! done.contains(current)) {
+                if (! visiting.add(current)) {
+                    // A cycle, its members can't be resolved
+                    List<Symbol> cycle = chain.subList(chain.indexOf(current), chain.size());
+                    for (Symbol i: cycle) {
+                        MIBPARSINGLOGGERERROR.warn("Can't resolve type %s: cyclic definition %s", i, cycle);
+                        done.add(i);
+                        unresolved++;
+                    }
+                    cycle.clear();
+                    break;
+                }
+                chain.add(current);
+                current = reference(definition(current));
+            }
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                Symbol s = chain.get(i);
+                if (! resolveType(s)) {
+                    unresolved++;
+                }
+                done.add(s);
+            }
         }
+        MIBPARSINGLOGGERERROR.debug("%d types or textual conventions not resolved", unresolved);
         // Replace some eventually defined TextualConvention with the smarter version
         Symbol dateAndTime = new Symbol("SNMPv2-TC", "DateAndTime");
         types.computeIfPresent(dateAndTime, (k, v) -> new TextualConvention.DateAndTime());
@@ -414,41 +572,114 @@ public class MibLoader {
         types.computeIfPresent(displayString, (k, v) -> new TextualConvention.DisplayString());
     }
 
-    private Set<Oid> sortdOids() {
-        Set<Oid> sortedoid = new TreeSet<>((o1, o2) -> {
-            try {
-                int sorted = Integer.compare(o1.getPath(buildOids).size(), o2.getPath(buildOids).size());
-                if (sorted == 0) {
-                    List<Integer> l1 = o1.getPath(buildOids);
-                    List<Integer> l2 = o2.getPath(buildOids);
-                    int length = l1.size();
-                    for (int i = 0 ; i < length ; i++) {
-                        int v1 = l1.get(i);
-                        int v2 = l2.get(i);
-                        sorted = Integer.compare(v1, v2);
-                        if (sorted != 0) {
-                            break;
-                        }
-                    }
-                }
-                if (sorted == 0) {
-                    sorted = String.CASE_INSENSITIVE_ORDER.compare(o1.getName(), o2.getName());
-                }
-                return sorted;
-            } catch (MibException e) {
-                throw e.getNonChecked();
+    /**
+     * @return the syntax of a textual convention, or the type
+     */
+    private Syntax definition(Symbol s) {
+        Map<String, Object> attributes = textualConventions.get(s);
+        return attributes != null ? (Syntax) attributes.get("SYNTAX") : types.get(s);
+    }
+
+    /**
+     * Resolve a type or a textual convention, its reference is already resolved if possible
+     * @return true if it was resolved
+     */
+    private boolean resolveType(Symbol s) {
+        Map<String, Object> attributes = textualConventions.get(s);
+        Syntax type = definition(s);
+        if (type == null) {
+            if (attributes != null) {
+                MIBPARSINGLOGGERERROR.warn("Invalid textual convention %s: no syntax", s);
             }
-        });
+            return false;
+        }
+        Symbol ref = reference(type);
+        if (ref != null && ! types.containsKey(ref)) {
+            if (attributes != null) {
+                MIBPARSINGLOGGERERROR.warn("Invalid textual convention %s: Missing %s from MIB", s, ref);
+            } else {
+                MIBPARSINGLOGGERERROR.warn("Can't resolve type %s: Missing %s from MIB", s, ref);
+            }
+            return false;
+        }
+        try {
+            type.resolve(types);
+            if (attributes != null) {
+                String hint = (String) attributes.get("DISPLAY-HINT");
+                types.put(s, type.getTextualConvention(hint, type));
+            }
+            return true;
+        } catch (MibException | MibException.NonCheckedMibException ex) {
+            if (attributes != null) {
+                MIBPARSINGLOGGERERROR.warn("Invalid textual convention %s: %s", s, ex.getMessage());
+            } else {
+                MIBPARSINGLOGGERERROR.warn("Can't resolve type %s: %s", s, ex.getMessage());
+            }
+            return false;
+        }
+    }
 
+    /**
+     * An OID with its path, computed once for the sort
+     */
+    private static class SortedOid {
+        private final Oid oid;
+        private final int[] path;
+        SortedOid(Oid oid, int[] path) {
+            this.oid = oid;
+            this.path = path;
+        }
+    }
+
+    /**
+     * A path used as a key, the hash is computed once
+     */
+    private static final class PathKey {
+        private final int[] path;
+        private final int hash;
+        PathKey(int[] path) {
+            this.path = path;
+            this.hash = Arrays.hashCode(path);
+        }
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (! (obj instanceof PathKey)) {
+                return false;
+            } else {
+                PathKey other = (PathKey) obj;
+                return hash == other.hash && Arrays.equals(path, other.path);
+            }
+        }
+    }
+
+    private static final Comparator<SortedOid> OIDORDER = (o1, o2) -> {
+        int sorted = Integer.compare(o1.path.length, o2.path.length);
+        if (sorted == 0) {
+            sorted = Arrays.compare(o1.path, o2.path);
+        }
+        if (sorted == 0) {
+            sorted = String.CASE_INSENSITIVE_ORDER.compare(o1.oid.getName(), o2.oid.getName());
+        }
+        return sorted;
+    };
+
+    private Set<Oid> sortdOids() {
+        List<SortedOid> toSort = new ArrayList<>(allOids.size());
         allOids.forEach( i-> {
             // the table entry status needs to be memoried, the oid hash and equality is changed after getPath
             // So it needs to be put again in tableEntryOid
             boolean isTableEntry = MibLoader.this.tableEntryOid.contains(i);
             try {
-                List<Integer> path = i.getPath(buildOids);
-                if (! path.isEmpty()) {
-                    Oid newi = new Oid(i.getPath(buildOids), i.getName());
-                    sortedoid.add(newi);
+                int[] path = i.getPath(buildOids);
+                if (path.length > 0) {
+                    Oid newi = new Oid(path, i.getName());
+                    toSort.add(new SortedOid(newi, path));
                     if (isTableEntry) {
                         MibLoader.this.tableEntryOid.add(newi);
                     }
@@ -458,8 +689,9 @@ public class MibLoader {
             } catch (MibException | MibException.NonCheckedMibException e) {
                 MIBPARSINGLOGGERERROR.warn("Can't add new OID %s: %s", i, e.getMessage());
                 try {
-                    if (! i.getPath(buildOids).isEmpty()) {
-                        sortedoid.add(i);
+                    int[] path = i.getPath(buildOids);
+                    if (path.length > 0) {
+                        toSort.add(new SortedOid(i, path));
                     }
                 } catch (MibException e1) {
                     MIBPARSINGLOGGERERROR.warn("Second failure: can't add new OID %s: %s", i, e.getMessage());
@@ -469,6 +701,16 @@ public class MibLoader {
                 MibLoader.this.tableEntryOid.add(i);
             }
         });
+        // The sort is stable, so the first of the equals OID is kept, like when adding to a sorted set
+        toSort.sort(OIDORDER);
+        Set<Oid> sortedoid = new LinkedHashSet<>(toSort.size());
+        SortedOid previous = null;
+        for (SortedOid i: toSort) {
+            if (previous == null || OIDORDER.compare(previous, i) != 0) {
+                sortedoid.add(i.oid);
+                previous = i;
+            }
+        }
         return sortedoid;
     }
 
@@ -480,7 +722,7 @@ public class MibLoader {
         try {
             if (buildOids.containsKey(s)) {
                 Oid o = buildOids.get(s);
-                return nodes.get(o.getPath(buildOids));
+                return nodes.get(new PathKey(o.getPath(buildOids)));
             } else {
                 return null;
             }
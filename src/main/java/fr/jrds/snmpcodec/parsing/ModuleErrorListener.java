@@ -9,17 +9,16 @@ import fr.jrds.snmpcodec.MibException;
 
 public class ModuleErrorListener extends BaseErrorListener {
 
-    private final ModuleListener modulelistener;
+    private final ModuleFragment fragment;
 
-    public ModuleErrorListener(ModuleListener modulelistener) {
-        this.modulelistener = modulelistener;
+    ModuleErrorListener(ModuleFragment fragment) {
+        this.fragment = fragment;
     }
 
     @Override
     public void syntaxError(Recognizer<?, ?> recognizer,
             Object offendingSymbol, int line, int charPositionInLine,
             String msg, RecognitionException e) {
-        LogLevel loggerLevel = MibLoader.MIBPARSINGLOGGERERROR.getEffectiveLogLevel();
         LogLevel usedLevel = LogLevel.INFO;
 
         if (e instanceof WrappedException) {
@@ -31,16 +30,8 @@ public class ModuleErrorListener extends BaseErrorListener {
                 usedLevel = LogLevel.ERROR;
             }
         }
-        if (modulelistener.firstError && usedLevel.getLevel() >= loggerLevel.getLevel()) {
-            MibLoader.MIBPARSINGLOGGERERROR.info(recognizer.getInputStream().getSourceName());
-            modulelistener.firstError = false;
-        }
-
-        if (usedLevel.getLevel() == LogLevel.LEVEL_DEBUG) {
-            MibLoader.MIBPARSINGLOGGERERROR.debug("    line %s:%s: %s", line, charPositionInLine, msg);
-        } else if (usedLevel.getLevel() == LogLevel.LEVEL_INFO) {
-            MibLoader.MIBPARSINGLOGGERERROR.info("    line %s:%s: %s", line, charPositionInLine, msg);
-        }
+        // Reported when the fragment is replayed, to keep the files order
+        fragment.error(usedLevel, line, charPositionInLine, msg);
     }
 
 }
@@ -0,0 +1,373 @@
+package fr.jrds.snmpcodec.parsing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.snmp4j.log.LogLevel;
+
+import fr.jrds.snmpcodec.MibException;
+import fr.jrds.snmpcodec.MibException.NonCheckedMibException;
+import fr.jrds.snmpcodec.MibStore;
+import fr.jrds.snmpcodec.log.LogAdapter;
+import fr.jrds.snmpcodec.parsing.ASNParser.FileContentContext;
+import fr.jrds.snmpcodec.smi.Symbol;
+import fr.jrds.snmpcodec.smi.Syntax;
+
+/**
+ * <p>The content of a parsed file, as the ordered list of the definitions found and the errors detected.</p>
+ * <p>The parsing of a file don't need the {@link MibLoader}, so many files can be parsed concurrently. The fragments are
+ * then replayed in the loader in the files order, giving the same result than a sequential loading. The duplicated
+ * modules or symbols are detected during the replay.</p>
+ */
+public class ModuleFragment {
+
+    /**
+     * A definition or an error found in the file, kept as data so it can be stored in a {@link ParseCache}.
+     */
+    static final class Step {
+        static final byte NEWMODULE = 0;
+        static final byte MACROVALUE = 1;
+        static final byte TRAPTYPE = 2;
+        static final byte OBJECTTYPE = 3;
+        static final byte TEXTUALCONVENTION = 4;
+        static final byte MODULEIDENTITY = 5;
+        static final byte TYPE = 6;
+        static final byte VALUE = 7;
+        static final byte ERROR = 8;
+        static final byte INVALID = 9;
+
+        final byte kind;
+        final int line;
+        final int charPositionInLine;
+        final Object[] args;
+
+        Step(byte kind, int line, int charPositionInLine, Object... args) {
+            this.kind = kind;
+            this.line = line;
+            this.charPositionInLine = charPositionInLine;
+            this.args = args;
+        }
+    }
+
+    private final String sourceName;
+    private final boolean keepDescriptions;
+    private final List<Step> steps = new ArrayList<>();
+    private final List<String> modules = new ArrayList<>();
+    private NonCheckedMibException failure = null;
+    private boolean firstError = true;
+    // The encoded steps, decoded again for each replay because the objects created by the listener are modified when loaded
+    private byte[] cached = null;
+    private boolean encoded = false;
+    private long parsingTime = 0;
+    private boolean replayed = false;
+    private boolean parsed = false;
+    private boolean fallback = false;
+
+    private ModuleFragment(String sourceName, boolean keepDescriptions) {
+        this.sourceName = sourceName;
+        this.keepDescriptions = keepDescriptions;
+    }
+
+    /**
+     * Parse a file, it can be run concurrently with other parsing.
+     * <p>The file is first parsed with the faster SLL prediction, that stops at the first error. Only if it fails, the
+     * file is parsed again with the full LL prediction and the error reporting. The DFA built by the predictions are
+     * static in {@link ASNParser}, so they are shared by all the parsers.</p>
+     * @param source the file content
+     * @param keepDescriptions if false, the descriptive texts (DESCRIPTION, REFERENCE, CONTACT-INFO and ORGANIZATION)
+     *        are not kept
+     * @return the fragment of the file
+     */
+    static ModuleFragment parse(CharStream source, boolean keepDescriptions) {
+        long start = System.nanoTime();
+        ModuleFragment fragment = new ModuleFragment(source.getSourceName(), keepDescriptions);
+        fragment.parsed = true;
+        ModuleErrorListener errorListener = new ModuleErrorListener(fragment);
+
+        ASNLexer lexer = new ASNLexer(source);
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(errorListener);
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        ASNParser parser = new ASNParser(tokens);
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        FileContentContext content = null;
+        try {
+            try {
+                content = parser.fileContent();
+            } catch (ParseCancellationException e) {
+                if (! (e.getCause() instanceof RecognitionException)) {
+                    throw e;
+                }
+                fragment.fallback = true;
+                tokens.seek(0);
+                parser.reset();
+                parser.addErrorListener(errorListener);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                content = parser.fileContent();
+            }
+        } catch (WrappedException e) {
+            fragment.steps.add(new Step(Step.INVALID, 0, 0, e.getMessage(), e.getLocation()));
+        }
+        if (content != null) {
+            if (! fragment.fallback) {
+                // The errors found by the listener are reported through the parser
+                parser.addErrorListener(errorListener);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+            }
+            fragment.walk(parser, content);
+        }
+        // Only the steps are kept, not the parser and its tree
+        fragment.parsingTime = System.nanoTime() - start;
+        return fragment;
+    }
+
+    /**
+     * Build a fragment from a cache entry
+     * @param sourceName the name of the file
+     * @param entry the content of the entry
+     * @param keepDescriptions true if the entry was built with the descriptive texts
+     * @return the fragment of the file
+     * @throws IOException if the entry is invalid
+     */
+    static ModuleFragment read(String sourceName, byte[] entry, boolean keepDescriptions) throws IOException {
+        ModuleFragment fragment = new ModuleFragment(sourceName, keepDescriptions);
+        fragment.cached = entry;
+        fragment.encoded = true;
+        fragment.steps.addAll(ParseCache.decode(entry));
+        fragment.newModules();
+        return fragment;
+    }
+
+    private void walk(ASNParser parser, FileContentContext content) {
+        try {
+            ParseTreeWalker.DEFAULT.walk(new ModuleListener(this, parser, keepDescriptions), content);
+        } catch (IllegalStateException e) {
+            // The stack was inconsistend during parsing, already handled
+        } catch (NonCheckedMibException e) {
+            failure = e;
+        }
+    }
+
+    private void newModules() {
+        steps.stream().filter(i -> i.kind == Step.NEWMODULE).forEach(i -> modules.add((String) i.args[0]));
+    }
+
+    /**
+     * Replay the definitions of the file in the loader, and log the errors. It can be replayed in many loaders, but
+     * not concurrently, if {@link #keepSteps()} succeeded before the first replay.
+     * @param loader
+     */
+    void replay(MibLoader loader) {
+        if (replayed) {
+            if (cached == null) {
+                MibLoader.MIBPARSINGLOGGERERROR.warn("%s can't be loaded again, it must be parsed again", sourceName);
+                return;
+            }
+            try {
+                // The syntaxes and attributes are resolved in place by the loader, new ones are needed
+                steps.addAll(ParseCache.decode(cached));
+            } catch (IOException e) {
+                // Already decoded once, can't happen
+                throw new UncheckedIOException(e);
+            }
+        }
+        replayed = true;
+        firstError = true;
+        steps.forEach(i -> replay(loader, i));
+        if (failure != null) {
+            logFailure(failure);
+        }
+        steps.clear();
+    }
+
+    private void replay(MibLoader loader, Step step) {
+        Object[] args = step.args;
+        try {
+            switch (step.kind) {
+            case Step.NEWMODULE:
+                loader.newModule((String) args[0]);
+                break;
+            case Step.MACROVALUE:
+                loader.addMacroValue((Symbol) args[0], (OidPath) args[1]);
+                break;
+            case Step.TRAPTYPE:
+                loader.addTrapType((Symbol) args[0], args[1], attributes(args[2]), (Number) args[3]);
+                break;
+            case Step.OBJECTTYPE:
+                loader.addObjectType((Symbol) args[0], attributes(args[1]), (OidPath) args[2]);
+                break;
+            case Step.TEXTUALCONVENTION:
+                loader.addTextualConvention((Symbol) args[0], attributes(args[1]));
+                break;
+            case Step.MODULEIDENTITY:
+                loader.addModuleIdentity((Symbol) args[0], (OidPath) args[1]);
+                break;
+            case Step.TYPE:
+                loader.addType((Symbol) args[0], (Syntax) args[1]);
+                break;
+            case Step.VALUE:
+                loader.addValue((Symbol) args[0], (OidPath) args[1]);
+                break;
+            case Step.ERROR:
+                report((LogLevel) args[0], step.line, step.charPositionInLine, (String) args[1]);
+                break;
+            case Step.INVALID:
+                MibLoader.MIBPARSINGLOGGERERROR.warn("Not a valid module: %s %s", args[0], args[1]);
+                break;
+            default:
+                throw new IllegalStateException("Unknown step " + step.kind);
+            }
+        } catch (MibException.DuplicatedModuleException | MibException.DuplicatedSymbolException e) {
+            report(LogLevel.DEBUG, step.line, step.charPositionInLine, e.getMessage());
+        } catch (MibException e) {
+            report(LogLevel.INFO, step.line, step.charPositionInLine, e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> attributes(Object attributes) {
+        return (Map<String, Object>) attributes;
+    }
+
+    /**
+     * @return the modules defined in the file
+     */
+    public List<String> getModules() {
+        return Collections.unmodifiableList(modules);
+    }
+
+    /**
+     * @return true if the file was parsed, false if it was read from a cache
+     */
+    boolean isParsed() {
+        return parsed;
+    }
+
+    /**
+     * @return true if the SLL parsing failed, and the file was parsed again with the full LL prediction
+     */
+    boolean isFallback() {
+        return fallback;
+    }
+
+    /**
+     * @return the steps found in the file, until it's replayed
+     */
+    List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Encode the steps, so the fragment can be replayed many times. It must be done before the first replay, and it's
+     * only needed if the fragment is kept.
+     * @return true if the fragment can be replayed many times
+     */
+    public boolean keepSteps() {
+        if (! encoded && ! replayed) {
+            encoded = true;
+            try {
+                cached = ParseCache.encode(this, parsingTime);
+            } catch (IOException | RuntimeException e) {
+                MibLoader.MIBPARSINGLOGGER.debug("%s can't be encoded: %s", sourceName, e.getMessage());
+            }
+        }
+        return cached != null;
+    }
+
+    /**
+     * @return the encoded steps, to be stored in a cache, or null if the fragment can't be stored. A fragment whose walk
+     *         failed can't.
+     */
+    byte[] getEntry() {
+        return keepSteps() && failure == null ? cached : null;
+    }
+
+    private static void logFailure(NonCheckedMibException e) {
+        try {
+            throw e.getWrapper();
+        } catch (MibException.DuplicatedModuleException e2) {
+            MibLoader.MIBPARSINGLOGGERERROR.info(e2.getMessage());
+        } catch (MibException.DuplicatedSymbolException e2) {
+            LogAdapter miblogger = LogAdapter.getLogger(MibStore.class.getName() + ".mib." + e2.getSymbol().module);
+            if (miblogger.isInfoEnabled()) {
+                miblogger.info(miblogger.getName() + e2.getMessage());
+            }
+        } catch (MibException e2) {
+            MibLoader.MIBPARSINGLOGGERERROR.error(e2, e2.getMessage());
+        }
+    }
+
+    /**
+     * Record an error detected while parsing the file
+     */
+    void error(LogLevel usedLevel, int line, int charPositionInLine, String msg) {
+        steps.add(new Step(Step.ERROR, line, charPositionInLine, usedLevel, msg));
+    }
+
+    private void report(LogLevel usedLevel, int line, int charPositionInLine, String msg) {
+        LogLevel loggerLevel = MibLoader.MIBPARSINGLOGGERERROR.getEffectiveLogLevel();
+        if (firstError && usedLevel.getLevel() >= loggerLevel.getLevel()) {
+            MibLoader.MIBPARSINGLOGGERERROR.info(sourceName);
+            firstError = false;
+        }
+        if (usedLevel.getLevel() == LogLevel.LEVEL_DEBUG) {
+            MibLoader.MIBPARSINGLOGGERERROR.debug("    line %s:%s: %s", line, charPositionInLine, msg);
+        } else if (usedLevel.getLevel() == LogLevel.LEVEL_INFO) {
+            MibLoader.MIBPARSINGLOGGERERROR.info("    line %s:%s: %s", line, charPositionInLine, msg);
+        }
+    }
+
+    private void add(Token position, byte kind, Object... args) {
+        steps.add(new Step(kind, position.getLine(), position.getCharPositionInLine(), args));
+    }
+
+    void newModule(Token position, String currentModule) {
+        modules.add(currentModule);
+        add(position, Step.NEWMODULE, currentModule);
+    }
+
+    void addMacroValue(Token position, Symbol s, OidPath value) {
+        add(position, Step.MACROVALUE, s, value);
+    }
+
+    void addTrapType(Token position, Symbol s, Object enterprise, Map<String, Object> attributes, Number trapIndex) {
+        add(position, Step.TRAPTYPE, s, enterprise, attributes, trapIndex);
+    }
+
+    void addObjectType(Token position, Symbol s, Map<String, Object> attributes, OidPath value) {
+        add(position, Step.OBJECTTYPE, s, attributes, value);
+    }
+
+    void addTextualConvention(Token position, Symbol s, Map<String, Object> attributes) {
+        add(position, Step.TEXTUALCONVENTION, s, attributes);
+    }
+
+    void addModuleIdentity(Token position, Symbol s, OidPath value) {
+        add(position, Step.MODULEIDENTITY, s, value);
+    }
+
+    void addType(Token position, Symbol s, Syntax type) {
+        add(position, Step.TYPE, s, type);
+    }
+
+    void addValue(Token position, Symbol s, OidPath value) {
+        add(position, Step.VALUE, s, value);
+    }
+
+}
@@ -10,6 +10,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
@@ -33,6 +34,7 @@ import fr.jrds.snmpcodec.parsing.ASNParser.ConstraintContext;
 import fr.jrds.snmpcodec.parsing.ASNParser.ElementsContext;
 import fr.jrds.snmpcodec.parsing.ASNParser.EnterpriseAttributeContext;
 import fr.jrds.snmpcodec.parsing.ASNParser.FromConstraintContext;
+import fr.jrds.snmpcodec.parsing.ASNParser.IndexTypesContext;
 import fr.jrds.snmpcodec.parsing.ASNParser.IntegerTypeContext;
 import fr.jrds.snmpcodec.parsing.ASNParser.IntegerValueContext;
 import fr.jrds.snmpcodec.parsing.ASNParser.ModuleComplianceAssignementContext;
@@ -74,8 +76,13 @@ import fr.jrds.snmpcodec.smi.Syntax;
 
 public class ModuleListener extends ASNBaseListener {
 
-    Parser parser;
-    boolean firstError = true;
+    // The free texts, never used by a MibStore
+    private static final Set<String> DESCRIPTIVE = Set.of("DESCRIPTION", "REFERENCE", "CONTACT-INFO", "ORGANIZATION");
+    // Pushed instead of a skipped text
+    private static final StringValue SKIPPED = new StringValue("");
+
+    private final Parser parser;
+    private final boolean keepDescriptions;
 
     private final Deque<Object> stack = new ArrayDeque<>();
     private final Map<String, Symbol> symbols = new HashMap<>();
@@ -83,10 +90,17 @@ public class ModuleListener extends ASNBaseListener {
 
     private String currentModule = null;
 
-    final MibLoader store;
+    private final ModuleFragment store;
 
-    ModuleListener(MibLoader store) {
+    /**
+     * @param store the fragment receiving the definitions
+     * @param parser the parser used
+     * @param keepDescriptions if false, the descriptive texts are not extracted from the tokens
+     */
+    ModuleListener(ModuleFragment store, Parser parser, boolean keepDescriptions) {
         this.store = store;
+        this.parser = parser;
+        this.keepDescriptions = keepDescriptions;
     }
 
     Symbol resolveSymbol(String name) {
@@ -156,11 +170,7 @@ public class ModuleListener extends ASNBaseListener {
         symbols.put(joint.name, joint);
 
         importedFrom.clear();
-        try {
-            store.newModule(currentModule);
-        } catch (MibException e) {
-            parser.notifyErrorListeners(ctx.start, e.getMessage(), new WrappedException(e, parser, parser.getInputStream(), ctx));
-        }
+        store.newModule(ctx.start, currentModule);
     }
 
     @Override
@@ -205,11 +215,7 @@ public class ModuleListener extends ASNBaseListener {
             return;
         }
         macro.value = value;
-        try {
-            store.addMacroValue(s, macro.value.value);
-        } catch (MibException e) {
-            parser.notifyErrorListeners(ctx.start, e.getMessage(), new WrappedException(e, parser, parser.getInputStream(), ctx));
-        }
+        store.addMacroValue(ctx.start, s, macro.value.value);
     }
 
     @Override
@@ -225,12 +231,8 @@ public class ModuleListener extends ASNBaseListener {
         if (value == null || macro == null || s == null) {
             return;
         }
-        try {
-            if (macro.enterprise != null) {
-                store.addTrapType(s, macro.enterprise, macro.values, value.value);
-            }
-        } catch (MibException e) {
-            parser.notifyErrorListeners(ctx.start, e.getMessage(), new WrappedException(e, parser, parser.getInputStream(), ctx));
+        if (macro.enterprise != null) {
+            store.addTrapType(ctx.start, s, macro.enterprise, macro.values, value.value);
         }
     }
 
@@ -247,11 +249,7 @@ public class ModuleListener extends ASNBaseListener {
         if (vt == null || macro == null || s == null) {
             return;
         }
-        try {
-            store.addObjectType(s, macro.values, vt.value);
-        } catch (MibException e) {
-            parser.notifyErrorListeners(ctx.start, e.getMessage(), new WrappedException(e, parser, parser.getInputStream(), ctx));
-        }
+        store.addObjectType(ctx.start, s, macro.values, vt.value);
     }
 
     @Override
@@ -266,11 +264,7 @@ public class ModuleListener extends ASNBaseListener {
         if (tc == null || s == null) {
             return;
         }
-        try {
-            store.addTextualConvention(s, tc.values);
-        } catch (MibException e) {
-            parser.notifyErrorListeners(ctx.start, e.getMessage(), new WrappedException(e, parser, parser.getInputStream(), ctx));
-        }
+        store.addTextualConvention(ctx.start, s, tc.values);
     }
 
     @Override
@@ -291,11 +285,7 @@ public class ModuleListener extends ASNBaseListener {
         ModuleIdentityObject mi = checkedPop(ctx, ModuleIdentityObject.class);
         Symbol s = checkedPop(ctx, Symbol.class);
         mi.values.put("revisions", revisions);
-        try {
-            store.addModuleIdentity(s, vt.value);
-        } catch (MibException e) {
-            parser.notifyErrorListeners(ctx.start, e.getMessage(), new WrappedException(e, parser, parser.getInputStream(), ctx));
-        }
+        store.addModuleIdentity(ctx.start, s, vt.value);
     }
 
     @Override
@@ -305,41 +295,37 @@ public class ModuleListener extends ASNBaseListener {
         if (td == null || s == null) {
             return;
         }
-        try {
-            Syntax sy;
-            if ("SNMPv2-SMI".equals(s.module)) {
-                switch (s.name) {
-                case "IpAddress":
-                    sy = SmiType.IpAddr;
-                    break;
-                case "Counter32":
-                    sy = SmiType.Counter32;
-                    break;
-                case "Gauge32":
-                    sy = SmiType.Gauge32;
-                    break;
-                case "Unsigned32":
-                    sy = SmiType.Unsigned32;
-                    break;
-                case "TimeTicks":
-                    sy = SmiType.TimeTicks;
-                    break;
-                case "Opaque":
-                    sy = SmiType.Opaque;
-                    break;
-                case "Counter64":
-                    sy = SmiType.Counter64;
-                    break;
-                default:
-                    sy = td.getSyntax(this);
-                }
-            } else {
+        Syntax sy;
+        if ("SNMPv2-SMI".equals(s.module)) {
+            switch (s.name) {
+            case "IpAddress":
+                sy = SmiType.IpAddr;
+                break;
+            case "Counter32":
+                sy = SmiType.Counter32;
+                break;
+            case "Gauge32":
+                sy = SmiType.Gauge32;
+                break;
+            case "Unsigned32":
+                sy = SmiType.Unsigned32;
+                break;
+            case "TimeTicks":
+                sy = SmiType.TimeTicks;
+                break;
+            case "Opaque":
+                sy = SmiType.Opaque;
+                break;
+            case "Counter64":
+                sy = SmiType.Counter64;
+                break;
+            default:
                 sy = td.getSyntax(this);
             }
-            store.addType(s, sy);
-        } catch (MibException e) {
-            parser.notifyErrorListeners(ctx.start, e.getMessage(), new WrappedException(e, parser, parser.getInputStream(), ctx));
+        } else {
+            sy = td.getSyntax(this);
         }
+        store.addType(ctx.start, s, sy);
     }
 
     @Override
@@ -351,13 +337,9 @@ public class ModuleListener extends ASNBaseListener {
         if (vt == null || s == null) {
             return;
         }
-        try {
-            if (vt.value instanceof OidPath) {
-                OidPath path = (OidPath) vt.value;
-                store.addValue(s, path);
-            }
-        } catch (MibException e) {
-            parser.notifyErrorListeners(ctx.start, e.getMessage(), new WrappedException(e, parser, parser.getInputStream(), ctx));
+        if (vt.value instanceof OidPath) {
+            OidPath path = (OidPath) vt.value;
+            store.addValue(ctx.start, s, path);
         }
     }
 
@@ -441,6 +423,10 @@ public class ModuleListener extends ASNBaseListener {
 
     @Override
     public void enterStringValue(StringValueContext ctx) {
+        if (! keepDescriptions && isDescriptive(ctx)) {
+            stack.push(SKIPPED);
+            return;
+        }
         try {
             if (ctx.CSTRING() == null || ctx.CSTRING().getText() == null) {
                 Exception e = new NullPointerException();
@@ -455,6 +441,14 @@ public class ModuleListener extends ASNBaseListener {
         }
     }
 
+    /**
+     * A string is descriptive if it follows one of the descriptive keywords
+     */
+    private boolean isDescriptive(StringValueContext ctx) {
+        int keyword = ctx.start.getTokenIndex() - 1;
+        return keyword >= 0 && DESCRIPTIVE.contains(parser.getTokenStream().get(keyword).getText());
+    }
+
     /****************************************
      * Manage complex attributes and push them on stack
      ***************************************/
@@ -496,6 +490,14 @@ public class ModuleListener extends ASNBaseListener {
                 }
             }
             value = new ArrayList<>(types);
+            // Only the last index can be IMPLIED
+            List<IndexTypesContext> indexTypes = ctx.index().indexTypes();
+            if ("IMPLIED".equals(indexTypes.get(indexTypes.size() - 1).getChild(0).getText())) {
+                checkedPeek(ctx, MappedObject.class).values.put("IMPLIED", Boolean.TRUE);
+            }
+        } else if (stack.peek() == SKIPPED) {
+            stack.pop();
+            return;
         } else if (stack.peek() instanceof ValueType) {
             ValueType<?> vt = checkedPop(ctx, ValueType.class);
             value = vt.value;
@@ -575,11 +577,7 @@ public class ModuleListener extends ASNBaseListener {
         if (s == null) {
             return;
         }
-        try {
-            store.addMacroValue(s, value.value);
-        } catch (MibException e) {
-            parser.notifyErrorListeners(ctx.start, e.getMessage(), new WrappedException(e, parser, parser.getInputStream(), ctx));
-        }
+        store.addMacroValue(ctx.start, s, value.value);
     }
 
     /****************************************
@@ -24,7 +24,7 @@ public class ObjectTypeBuilder {
         if (indexed) {
             @SuppressWarnings("unchecked")
             List<Symbol> indexSymbols = (List<Symbol>)attributes.remove("INDEX");
-            index = new IndexBuilder(indexSymbols);
+            index = new IndexBuilder(indexSymbols, attributes.remove("IMPLIED") != null);
         } else {
             index = null;
         }
@@ -1,23 +1,176 @@
 package fr.jrds.snmpcodec.parsing;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 
 import fr.jrds.snmpcodec.OidTreeNode;
+import fr.jrds.snmpcodec.smi.Index;
+import fr.jrds.snmpcodec.smi.ObjectType;
+import fr.jrds.snmpcodec.smi.Syntax;
+import fr.jrds.snmpcodec.smi.Trap;
 
 public class OidTreeNodeImpl extends OidTreeNode {
 
+    private static final int[] EMPTY_ARCS = new int[0];
+    private static final OidTreeNodeImpl[] EMPTY_NODES = new OidTreeNodeImpl[0];
+
+    private final String name;
+    // Only the last arc is stored, the full OID is rebuilt from the parent chain
+    private final int arc;
+    private final int depth;
+    // The childs are stored sorted by arc, in two parallel arrays
+    // If the arcs are contiguous, the index is directly computed from the arc
+    private int[] childArcs = EMPTY_ARCS;
+    private OidTreeNodeImpl[] childNodes = EMPTY_NODES;
+    private int childCount = 0;
+    private boolean denseChilds = true;
+    private final boolean isTableEntry;
+    private final OidTreeNodeImpl parent;
+    private final OidTreeNodeImpl table;
+    // Linked when the store is built
+    private ObjectType objectType = null;
+    private Syntax syntax = null;
+    private Map<Integer, Trap> traps = null;
+    private Index index = null;
+
     OidTreeNodeImpl() {
         super();
+        name = null;
+        arc = 0;
+        depth = 0;
+        isTableEntry = false;
+        parent = null;
+        table = null;
+    }
+
+    OidTreeNodeImpl(OidTreeNodeImpl parent, int id, String symbol, boolean isTableEntry) {
+        super(parent.root);
+        this.parent = parent;
+        this.name = symbol;
+        parent.addChild(id, this);
+        this.arc = id;
+        this.depth = parent.depth + 1;
+        this.isTableEntry = isTableEntry;
+        this.table = isTableEntry ? parent : parent.table;
+    }
+
+    private void addChild(int arc, OidTreeNodeImpl child) {
+        int pos = Arrays.binarySearch(childArcs, 0, childCount, arc);
+        if (pos >= 0) {
+            childNodes[pos] = child;
+            return;
+        }
+        pos = -pos - 1;
+        if (childCount == childArcs.length) {
+            int newSize = Math.max(2, childCount + (childCount >> 1) + 1);
+            childArcs = Arrays.copyOf(childArcs, newSize);
+            childNodes = Arrays.copyOf(childNodes, newSize);
+        }
+        System.arraycopy(childArcs, pos, childArcs, pos + 1, childCount - pos);
+        System.arraycopy(childNodes, pos, childNodes, pos + 1, childCount - pos);
+        childArcs[pos] = arc;
+        childNodes[pos] = child;
+        childCount++;
+        denseChilds = ((long) childArcs[childCount - 1] - childArcs[0]) == childCount - 1;
+    }
+
+    @Override
+    public String getSymbol() {
+        return name;
+    }
+
+    @Override
+    public OidTreeNodeImpl getParent() {
+        return parent;
+    }
+
+    @Override
+    protected OidTreeNodeImpl getChild(int arc) {
+        if (childCount == 0) {
+            return null;
+        } else if (denseChilds) {
+            long pos = (long) arc - childArcs[0];
+            return pos >= 0 && pos < childCount ? childNodes[(int) pos] : null;
+        } else {
+            int pos = Arrays.binarySearch(childArcs, 0, childCount, arc);
+            return pos >= 0 ? childNodes[pos] : null;
+        }
+    }
+
+    @Override
+    public Collection<OidTreeNode> childs() {
+        return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(childNodes, childCount, OidTreeNode[].class)));
+    }
+
+    /**
+     * @return the childs count
+     */
+    int getChildCount() {
+        return childCount;
+    }
+
+    @Override
+    protected int getArc() {
+        return arc;
+    }
+
+    @Override
+    protected int getDepth() {
+        return depth;
+    }
+
+    @Override
+    protected boolean isTableEntry() {
+        return isTableEntry;
+    }
+
+    @Override
+    public ObjectType getObjectType() {
+        return objectType;
+    }
+
+    void setObjectType(ObjectType objectType) {
+        this.objectType = objectType;
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return syntax;
+    }
+
+    void setSyntax(Syntax syntax) {
+        this.syntax = syntax;
+    }
+
+    @Override
+    public Map<Integer, Trap> getTraps() {
+        return traps;
+    }
+
+    void setTraps(Map<Integer, Trap> traps) {
+        this.traps = traps;
+    }
+
+    @Override
+    public OidTreeNodeImpl getTableEntry() {
+        return table;
+    }
+
+    @Override
+    public Index getIndex() {
+        return index;
     }
 
-    OidTreeNodeImpl(OidTreeNode parent, int i, String symbol, boolean isTableEntry) {
-        super(parent, i, symbol, isTableEntry);
+    void setIndex(Index index) {
+        this.index = index;
     }
 
     /**
      * Added a new node at the right place in the tree
      * @param symbol
-     * @param isTableEntry 
+     * @param isTableEntry
      */
     OidTreeNode add(int[] oidElements, String symbol, boolean isTableEntry) {
         OidTreeNode found = find(oidElements);
@@ -28,18 +181,18 @@ public class OidTreeNodeImpl extends OidTreeNode {
         int[] oidParent = Arrays.copyOf(oidElements, oidElements.length - 1);
         //Adding a first level child
         if(oidParent.length == 0) {
-            return new OidTreeNodeImpl(root, oidElements[0], symbol, isTableEntry);
+            return new OidTreeNodeImpl((OidTreeNodeImpl) root, oidElements[0], symbol, isTableEntry);
         } else {
-            OidTreeNode parent = root.find(oidParent);
+            OidTreeNodeImpl parent = (OidTreeNodeImpl) root.find(oidParent);
             if(parent != null) {
                 return new OidTreeNodeImpl(parent, oidElements[oidElements.length - 1], symbol, isTableEntry);
             } else {
                 // Missing intermediary steps, add them
                 // The type cast is needed because search can be called from a OidTreeNode
-                int[] closer = ((OidTreeNodeImpl)search(oidElements)).getElementsPrivate();
-                for (int i=closer.length; i < oidElements.length -1 ; i++) {
+                int closer = ((OidTreeNodeImpl) search(oidElements)).getDepth();
+                for (int i=closer; i < oidElements.length -1 ; i++) {
                     int[] missing = Arrays.copyOf(oidElements, i);
-                    OidTreeNode missingParent = root.find(missing);
+                    OidTreeNodeImpl missingParent = (OidTreeNodeImpl) root.find(missing);
                     parent = new OidTreeNodeImpl(missingParent, oidElements[i], null, false);
                 }
                 return new OidTreeNodeImpl(parent, oidElements[oidElements.length - 1], symbol, isTableEntry);
@@ -0,0 +1,522 @@
+package fr.jrds.snmpcodec.parsing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.snmp4j.log.LogLevel;
+
+import fr.jrds.snmpcodec.log.LogAdapter;
+import fr.jrds.snmpcodec.parsing.MibObject.Revision;
+import fr.jrds.snmpcodec.parsing.ModuleFragment.Step;
+import fr.jrds.snmpcodec.smi.Symbol;
+import fr.jrds.snmpcodec.smi.Syntax;
+
+/**
+ * <p>A directory of parsed modules files, so a file already seen is not parsed again, even if the set of files changed.</p>
+ * <p>There is one entry for each file content, named from the SHA-256 of the file, the charset used to read it, a
+ * digest of the grammar, so a new grammar don't use the old entries, and if the descriptive texts are kept. An entry
+ * contains the definitions found in the file, as generated by {@link ModuleListener}, and the errors detected. A file
+ * whose parsing failed is not stored.</p>
+ * <p>The entries are never removed, it can be shared by many loaders and processes.</p>
+ */
+public class ParseCache {
+
+    private static final LogAdapter logger = LogAdapter.getLogger(ParseCache.class);
+
+    private static final int MAGIC = 0x534E4D50;
+    // To be incremented for any change in the format
+    private static final int VERSION = 2;
+    private static final String GRAMMAR = Integer.toHexString(Objects.hash(ASNLexer._serializedATN, ASNParser._serializedATN));
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte SYMBOL = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte BYTE = 4;
+    private static final byte SHORT = 5;
+    private static final byte INTEGER = 6;
+    private static final byte LONG = 7;
+    private static final byte BIGINTEGER = 8;
+    private static final byte LIST = 9;
+    private static final byte MAP = 10;
+    private static final byte OIDPATH = 11;
+    private static final byte SYNTAX = 12;
+    private static final byte STRINGVALUE = 13;
+    private static final byte INTEGERVALUE = 14;
+    private static final byte OIDVALUE = 15;
+    private static final byte BOOLEANVALUE = 16;
+    private static final byte REVISION = 17;
+    private static final byte LOGLEVEL = 18;
+
+    private final Path directory;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicLong saved = new AtomicLong();
+
+    /**
+     * @param directory the cache directory, created if needed
+     * @throws IOException if the directory can't be created
+     */
+    public ParseCache(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * @return the number of files read from the cache
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of files parsed
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The time saved is the parsing time of the files found in the cache, less the time needed to read them.
+     * @return the time saved, in ms
+     */
+    public long getSaved() {
+        return TimeUnit.NANOSECONDS.toMillis(saved.get());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d hits, %d misses, %d ms saved", directory, getHits(), getMisses(), getSaved());
+    }
+
+    /**
+     * Read a file from the cache, or parse it and store it.
+     * @param source the modules file
+     * @param charset the charset of the file
+     * @param keepDescriptions if false, the descriptive texts are not kept
+     * @return the fragment of the file
+     * @throws IOException if the file can't be read
+     */
+    ModuleFragment parse(Path source, Charset charset, boolean keepDescriptions) throws IOException {
+        byte[] content = Files.readAllBytes(source);
+        Path entry = directory.resolve(key(content, charset, keepDescriptions));
+        long start = System.nanoTime();
+        try {
+            byte[] cached = Files.readAllBytes(entry);
+            ModuleFragment fragment = ModuleFragment.read(source.toString(), cached, keepDescriptions);
+            hits.incrementAndGet();
+            long parsingTime = ByteBuffer.wrap(cached).getLong(8);
+            saved.addAndGet(Math.max(0, parsingTime - (System.nanoTime() - start)));
+            return fragment;
+        } catch (NoSuchFileException e) {
+            // Not seen yet
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unusable cache entry %s for %s: %s", entry, source, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+        }
+        misses.incrementAndGet();
+        CharStream stream = CharStreams.fromChannel(Channels.newChannel(new ByteArrayInputStream(content)), charset, 4096,
+                                                    CodingErrorAction.REPLACE, source.toString(), content.length);
+        ModuleFragment fragment = ModuleFragment.parse(stream, keepDescriptions);
+        if (fragment.getEntry() != null) {
+            try {
+                write(entry, fragment.getEntry());
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Can't cache %s: %s", source, e.getMessage());
+            }
+        }
+        return fragment;
+    }
+
+    private String key(byte[] content, Charset charset, boolean keepDescriptions) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return String.format("%064x-%s-%s-%s", new BigInteger(1, digest), charset.name(), GRAMMAR, keepDescriptions ? "full" : "light");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void write(Path entry, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static byte[] encode(ModuleFragment fragment, long parsingTime) throws IOException {
+        Writer writer = new Writer();
+        ByteArrayOutputStream steps = new ByteArrayOutputStream();
+        writer.out = new DataOutputStream(steps);
+        writer.writeSteps(fragment.getSteps());
+        writer.out.flush();
+
+        // The syntaxes used by the steps, and the syntaxes they depend on, are added while written
+        ByteArrayOutputStream syntaxes = new ByteArrayOutputStream();
+        writer.out = new DataOutputStream(syntaxes);
+        for (int i = 0; i < writer.syntaxes.size(); i++) {
+            SyntaxRecord.write(writer.syntaxes.get(i), writer);
+        }
+        writer.out.flush();
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 + syntaxes.size() + steps.size());
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(parsingTime);
+        out.writeInt(writer.syntaxes.size());
+        syntaxes.writeTo(out);
+        steps.writeTo(out);
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    static List<Step> decode(byte[] entry) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unknown cache entry format");
+        }
+        // The parsing time
+        in.readLong();
+        Reader reader = new Reader(in);
+        reader.readSyntaxes();
+        return reader.readSteps();
+    }
+
+    private static class Writer implements SyntaxRecord.RecordOutput {
+        private DataOutputStream out;
+        private final Map<Syntax, Integer> syntaxIds = new IdentityHashMap<>();
+        private final List<Syntax> syntaxes = new ArrayList<>();
+
+        private void writeSteps(List<Step> steps) throws IOException {
+            out.writeInt(steps.size());
+            for (Step step: steps) {
+                out.writeByte(step.kind);
+                out.writeInt(step.line);
+                out.writeInt(step.charPositionInLine);
+                out.writeInt(step.args.length);
+                for (Object arg: step.args) {
+                    writeValue(arg);
+                }
+            }
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                writeText((String) value);
+            } else if (value instanceof Symbol) {
+                out.writeByte(SYMBOL);
+                writeSymbol((Symbol) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Byte) {
+                out.writeByte(BYTE);
+                out.writeByte((Byte) value);
+            } else if (value instanceof Short) {
+                out.writeByte(SHORT);
+                out.writeShort((Short) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(INTEGER);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof BigInteger) {
+                out.writeByte(BIGINTEGER);
+                writeText(value.toString());
+            } else if (value instanceof OidPath) {
+                // Before List, an OidPath is a list
+                OidPath path = (OidPath) value;
+                out.writeByte(OIDPATH);
+                out.writeBoolean(path.root != null);
+                if (path.root != null) {
+                    writeSymbol(path.root);
+                }
+                out.writeInt(path.size());
+                for (OidPath.OidComponent c: path) {
+                    writeString(c.name);
+                    out.writeInt(c.number);
+                }
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                out.writeByte(LIST);
+                out.writeInt(list.size());
+                for (Object i: list) {
+                    writeValue(i);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(MAP);
+                out.writeInt(map.size());
+                for (Map.Entry<?, ?> e: map.entrySet()) {
+                    writeValue(e.getKey());
+                    writeValue(e.getValue());
+                }
+            } else if (value instanceof Syntax) {
+                out.writeByte(SYNTAX);
+                writeSyntax((Syntax) value);
+            } else if (value instanceof ValueType.StringValue) {
+                out.writeByte(STRINGVALUE);
+                writeValue(((ValueType<?>) value).value);
+            } else if (value instanceof ValueType.IntegerValue) {
+                out.writeByte(INTEGERVALUE);
+                writeValue(((ValueType<?>) value).value);
+            } else if (value instanceof ValueType.OidValue) {
+                out.writeByte(OIDVALUE);
+                writeValue(((ValueType<?>) value).value);
+            } else if (value instanceof ValueType.BooleanValue) {
+                out.writeByte(BOOLEANVALUE);
+                writeValue(((ValueType<?>) value).value);
+            } else if (value instanceof Revision) {
+                Revision revision = (Revision) value;
+                out.writeByte(REVISION);
+                writeString(revision.description);
+                writeString(revision.revision);
+            } else if (value instanceof LogLevel) {
+                out.writeByte(LOGLEVEL);
+                out.writeInt(((LogLevel) value).getLevel());
+            } else {
+                throw new IOException("Can't store " + value.getClass().getName());
+            }
+        }
+
+        private void writeSymbol(Symbol s) throws IOException {
+            writeString(s.module);
+            writeString(s.name);
+        }
+
+        @Override
+        public void writeByte(int v) throws IOException {
+            out.writeByte(v);
+        }
+
+        @Override
+        public void writeShort(int v) throws IOException {
+            out.writeShort(v);
+        }
+
+        @Override
+        public void writeInt(int v) throws IOException {
+            out.writeInt(v);
+        }
+
+        @Override
+        public void writeLong(long v) throws IOException {
+            out.writeLong(v);
+        }
+
+        @Override
+        public void writeBoolean(boolean v) throws IOException {
+            out.writeBoolean(v);
+        }
+
+        @Override
+        public void writeString(String s) throws IOException {
+            out.writeBoolean(s != null);
+            if (s != null) {
+                writeText(s);
+            }
+        }
+
+        /**
+         * Not writeUTF, that fails for the strings larger than 64 KB, like some descriptions
+         */
+        private void writeText(String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public void writeSyntax(Syntax s) throws IOException {
+            if (s == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(syntaxIds.computeIfAbsent(s, k -> {
+                    syntaxes.add(k);
+                    return syntaxes.size() - 1;
+                }));
+            }
+        }
+    }
+
+    private static class Reader implements SyntaxRecord.RecordInput {
+        private final DataInputStream in;
+        private SyntaxRecord.Builder syntaxes;
+
+        private Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        private void readSyntaxes() throws IOException {
+            int count = in.readInt();
+            SyntaxRecord[] records = new SyntaxRecord[count];
+            for (int i = 0; i < count; i++) {
+                records[i] = SyntaxRecord.read(this);
+            }
+            syntaxes = new SyntaxRecord.Builder(count) {
+                @Override
+                protected SyntaxRecord record(int id) {
+                    return records[id];
+                }
+            };
+        }
+
+        private List<Step> readSteps() throws IOException {
+            int count = in.readInt();
+            List<Step> steps = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte kind = in.readByte();
+                int line = in.readInt();
+                int charPositionInLine = in.readInt();
+                Object[] args = new Object[in.readInt()];
+                for (int j = 0; j < args.length; j++) {
+                    args[j] = readValue();
+                }
+                steps.add(new Step(kind, line, charPositionInLine, args));
+            }
+            return steps;
+        }
+
+        private Object readValue() throws IOException {
+            byte tag = in.readByte();
+            switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readText().intern();
+            case SYMBOL:
+                return readSymbol();
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return in.readShort();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case BIGINTEGER:
+                return new BigInteger(readText());
+            case OIDPATH:
+                OidPath path = new OidPath();
+                if (in.readBoolean()) {
+                    path.root = readSymbol();
+                }
+                int componentsCount = in.readInt();
+                for (int i = 0; i < componentsCount; i++) {
+                    String name = readString();
+                    path.add(new OidPath.OidComponent(name, in.readInt()));
+                }
+                return path;
+            case LIST:
+                int listSize = in.readInt();
+                List<Object> list = new ArrayList<>(listSize);
+                for (int i = 0; i < listSize; i++) {
+                    list.add(readValue());
+                }
+                return list;
+            case MAP:
+                int mapSize = in.readInt();
+                Map<Object, Object> map = new HashMap<>(mapSize);
+                for (int i = 0; i < mapSize; i++) {
+                    Object key = readValue();
+                    map.put(key, readValue());
+                }
+                return map;
+            case SYNTAX:
+                return syntaxes.get(in.readInt());
+            case STRINGVALUE:
+                return new ValueType.StringValue((String) readValue());
+            case INTEGERVALUE:
+                return new ValueType.IntegerValue((Number) readValue());
+            case OIDVALUE:
+                return new ValueType.OidValue((OidPath) readValue());
+            case BOOLEANVALUE:
+                return new ValueType.BooleanValue((Boolean) readValue());
+            case REVISION:
+                String description = readString();
+                return new Revision(description, readString());
+            case LOGLEVEL:
+                return new LogLevel(in.readInt());
+            default:
+                throw new IOException("Unknown value kind " + tag);
+            }
+        }
+
+        private Symbol readSymbol() throws IOException {
+            String module = readString();
+            String name = readString();
+            return module != null ? new Symbol(module, name) : new Symbol(name);
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            return in.readByte();
+        }
+
+        @Override
+        public short readShort() throws IOException {
+            return in.readShort();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            return in.readInt();
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            return in.readLong();
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return in.readBoolean();
+        }
+
+        @Override
+        public String readString() throws IOException {
+            return in.readBoolean() ? readText() : null;
+        }
+
+        private String readText() throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+}
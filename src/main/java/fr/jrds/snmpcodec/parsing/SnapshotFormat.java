@@ -0,0 +1,575 @@
+package fr.jrds.snmpcodec.parsing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fr.jrds.snmpcodec.MibStore;
+import fr.jrds.snmpcodec.OidTreeNode;
+import fr.jrds.snmpcodec.log.LogAdapter;
+import fr.jrds.snmpcodec.smi.Index;
+import fr.jrds.snmpcodec.smi.ObjectType;
+import fr.jrds.snmpcodec.smi.Syntax;
+import fr.jrds.snmpcodec.smi.Trap;
+
+/**
+ * <p>The format of a {@link fr.jrds.snmpcodec.MibSnapshot}, the binary snapshot of a built {@link MibStore}.</p>
+ * <p>The snapshot starts with the list of the modules files used to build the store, with their size,
+ * modification time and SHA-256 digest. It's considered stale if the list of files changed, or if a file
+ * changed in size or in content. A file with only a new modification time is hashed again.</p>
+ * <p>The syntaxes are stored as a graph of {@link SyntaxRecord}, so the shared instances are kept shared.</p>
+ */
+public class SnapshotFormat {
+
+    private static final LogAdapter logger = LogAdapter.getLogger(SnapshotFormat.class);
+
+    private static final int MAGIC = 0x534E4D53;
+    // To be incremented for any change in the format
+    private static final int VERSION = 1;
+
+    /**
+     * A modules file used to build a snapshot
+     */
+    public static class SourceFile {
+        final String path;
+        final long size;
+        final long lastModified;
+        private byte[] digest;
+
+        SourceFile(String path, long size, long lastModified, byte[] digest) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+
+        public static SourceFile of(Path source) throws IOException {
+            Path file = source.toAbsolutePath().normalize();
+            return new SourceFile(file.toString(), Files.size(file), Files.getLastModifiedTime(file).toMillis(), null);
+        }
+
+        public byte[] getDigest() throws IOException {
+            if (digest == null) {
+                try (InputStream is = new DigestInputStream(Files.newInputStream(Path.of(path)), MessageDigest.getInstance("SHA-256"))) {
+                    byte[] buffer = new byte[8192];
+                    while (is.read(buffer) >= 0) {
+                        // Only the digest is needed
+                    }
+                    digest = ((DigestInputStream) is).getMessageDigest().digest();
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException("SHA-256 not available", e);
+                }
+            }
+            return digest;
+        }
+
+        private boolean isSame(SourceFile current) throws IOException {
+            if (! path.equals(current.path) || size != current.size) {
+                return false;
+            } else if (lastModified == current.lastModified) {
+                return true;
+            } else {
+                // Just touched files are still valid
+                return Arrays.equals(digest, current.getDigest());
+            }
+        }
+
+        /**
+         * @param saved the files saved in a snapshot
+         * @param sources the current modules files
+         * @return true if the modules files are unchanged
+         */
+        static boolean check(SourceFile[] saved, Path[] sources) throws IOException {
+            if (saved.length != sources.length) {
+                return false;
+            }
+            for (int i = 0; i < saved.length; i++) {
+                if (! saved[i].isSame(SourceFile.of(sources[i]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * Only the public API is used, so it works with any tree: a table entry is the only node whose table is its parent
+     */
+    static boolean isTableEntry(OidTreeNode node) {
+        OidTreeNode parent = node.getParent();
+        return parent != null && parent.equals(node.getTableEntry());
+    }
+
+    /**
+     * Read a snapshot, if it's still valid for the given modules files.
+     * @param snapshot the snapshot file
+     * @param sources the modules files, in the loading order
+     * @param compile if true, the OID tree is compiled
+     * @return the store, or null if the snapshot is missing, stale or unreadable
+     */
+    public static MibStore read(Path snapshot, Path[] sources, boolean compile) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.info("Snapshot %s has an unknown format", snapshot);
+                return null;
+            }
+            Reader reader = new Reader(in);
+            if (! reader.checkSources(sources)) {
+                logger.info("Snapshot %s is stale", snapshot);
+                return null;
+            }
+            MibStore store = reader.readStore();
+            return compile ? CompiledOidTree.compile(store) : store;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unusable snapshot %s: %s", snapshot, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+            return null;
+        }
+    }
+
+    /**
+     * Write a snapshot of a store. The file is replaced atomically.
+     * @param store the store to save
+     * @param snapshot the snapshot file
+     * @param sources the modules files used to build the store, in the loading order
+     * @throws IOException if the snapshot can't be written
+     */
+    public static void write(MibStore store, Path snapshot, Path[] sources) throws IOException {
+        Path parent = snapshot.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                Writer writer = new Writer(out);
+                writer.writeSources(sources);
+                writer.writeStore(store);
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Map a snapshot written by {@link #writeMapped(MibStore, Path, Path[])}, if it's still valid for the given modules files.
+     * The syntaxes, object types and indexes are only built when used.
+     * @param snapshot the snapshot file
+     * @param sources the modules files, in the loading order
+     * @return the store, or null if the snapshot is missing, stale or unreadable
+     */
+    public static MibStore map(Path snapshot, Path[] sources) {
+        try {
+            MibStore store = MappedOidTree.open(snapshot, sources);
+            if (store == null) {
+                logger.info("Snapshot %s is stale", snapshot);
+            }
+            return store;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unusable snapshot %s: %s", snapshot, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+            return null;
+        }
+    }
+
+    /**
+     * Write a snapshot of a store that can be mapped in memory. The file is replaced atomically, so the stores
+     * already mapping the previous version are still valid.
+     * @param store the store to save
+     * @param snapshot the snapshot file
+     * @param sources the modules files used to build the store, in the loading order
+     * @throws IOException if the snapshot can't be written
+     */
+    public static void writeMapped(MibStore store, Path snapshot, Path[] sources) throws IOException {
+        byte[] content = MappedOidTree.write(store, sources);
+        Path parent = snapshot.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, snapshot.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static class Writer implements SyntaxRecord.RecordOutput {
+        private DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<OidTreeNode, Integer> nodes = new HashMap<>();
+        private final Map<Syntax, Integer> syntaxIds = new IdentityHashMap<>();
+        private final List<Syntax> syntaxes = new ArrayList<>();
+        private final Map<Index, Integer> indexIds = new IdentityHashMap<>();
+
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        private void writeSources(Path[] sources) throws IOException {
+            out.writeInt(sources.length);
+            for (Path i: sources) {
+                SourceFile source = SourceFile.of(i);
+                writeString(source.path);
+                out.writeLong(source.size);
+                out.writeLong(source.lastModified);
+                out.write(source.getDigest());
+            }
+        }
+
+        private void writeStore(MibStore store) throws IOException {
+            out.writeInt(store.modules.size());
+            for (String i: store.modules) {
+                writeString(i);
+            }
+            writeTree(store.top);
+
+            // All the syntaxes are numbered before their records are written
+            store.syntaxes.values().forEach(this::syntaxId);
+            store.objects.values().forEach(i -> syntaxId(i.getSyntax()));
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream main = out;
+            out = new DataOutputStream(buffer);
+            // The list grows while the dependencies are found
+            for (int i = 0; i < syntaxes.size(); i++) {
+                SyntaxRecord.write(syntaxes.get(i), this);
+            }
+            out.flush();
+            out = main;
+            out.writeInt(syntaxes.size());
+            buffer.writeTo(out);
+
+            out.writeInt(store.names.size());
+            for (Map.Entry<String, List<OidTreeNode>> e: store.names.entrySet()) {
+                writeString(e.getKey());
+                out.writeInt(e.getValue().size());
+                for (OidTreeNode i: e.getValue()) {
+                    out.writeInt(nodeId(i));
+                }
+            }
+            out.writeInt(store.syntaxes.size());
+            for (Map.Entry<String, Syntax> e: store.syntaxes.entrySet()) {
+                writeString(e.getKey());
+                out.writeInt(knownSyntaxId(e.getValue()));
+            }
+
+            List<Index> indexes = new ArrayList<>();
+            store.objects.values().stream().map(ObjectType::getIndex).filter(i -> i != null).forEach(i -> {
+                if (! indexIds.containsKey(i)) {
+                    indexIds.put(i, indexes.size());
+                    indexes.add(i);
+                }
+            });
+            out.writeInt(indexes.size());
+            for (Index i: indexes) {
+                out.writeBoolean(i.isImplied());
+                out.writeInt(i.getIndexes().size());
+                for (OidTreeNode j: i.getIndexes()) {
+                    out.writeInt(nodeId(j));
+                }
+            }
+            out.writeInt(store.objects.size());
+            for (Map.Entry<OidTreeNode, ObjectType> e: store.objects.entrySet()) {
+                ObjectType object = e.getValue();
+                out.writeInt(nodeId(e.getKey()));
+                out.writeInt(knownSyntaxId(object.getSyntax()));
+                out.writeBoolean(object.isIndexed());
+                out.writeInt(object.getIndex() != null ? indexIds.get(object.getIndex()) : -1);
+            }
+
+            out.writeInt(store.resolvedTraps.size());
+            for (Map.Entry<OidTreeNode, Map<Integer, Trap>> e: store.resolvedTraps.entrySet()) {
+                out.writeInt(nodeId(e.getKey()));
+                out.writeInt(e.getValue().size());
+                for (Map.Entry<Integer, Trap> t: e.getValue().entrySet()) {
+                    out.writeInt(t.getKey());
+                    writeString(t.getValue().name);
+                    out.writeInt(t.getValue().variables.size());
+                    for (String v: t.getValue().variables) {
+                        writeString(v);
+                    }
+                }
+            }
+        }
+
+        /**
+         * The tree is written in breadth-first order, a node is identified by its rank
+         */
+        private void writeTree(OidTreeNode top) throws IOException {
+            List<OidTreeNode> order = new ArrayList<>();
+            order.add(top);
+            nodes.put(top, 0);
+            for (int i = 0; i < order.size(); i++) {
+                OidTreeNode node = order.get(i);
+                if (i != 0) {
+                    int[] elements = node.getElements();
+                    out.writeInt(elements[elements.length - 1]);
+                    writeString(node.getSymbol());
+                    out.writeBoolean(isTableEntry(node));
+                }
+                Collection<OidTreeNode> childs = node.childs();
+                out.writeInt(childs.size());
+                for (OidTreeNode child: childs) {
+                    nodes.put(child, order.size());
+                    order.add(child);
+                }
+            }
+        }
+
+        private int nodeId(OidTreeNode node) {
+            return node != null ? nodes.get(node) : -1;
+        }
+
+        private int syntaxId(Syntax syntax) {
+            if (syntax == null) {
+                return -1;
+            }
+            return syntaxIds.computeIfAbsent(syntax, k -> {
+                syntaxes.add(k);
+                return syntaxes.size() - 1;
+            });
+        }
+
+        private int knownSyntaxId(Syntax syntax) {
+            if (syntax != null && ! syntaxIds.containsKey(syntax)) {
+                throw new IllegalStateException("Syntax not numbered: " + syntax);
+            }
+            return syntaxId(syntax);
+        }
+
+        @Override
+        public void writeByte(int v) throws IOException {
+            out.writeByte(v);
+        }
+
+        @Override
+        public void writeShort(int v) throws IOException {
+            out.writeShort(v);
+        }
+
+        @Override
+        public void writeInt(int v) throws IOException {
+            out.writeInt(v);
+        }
+
+        @Override
+        public void writeLong(long v) throws IOException {
+            out.writeLong(v);
+        }
+
+        @Override
+        public void writeBoolean(boolean v) throws IOException {
+            out.writeBoolean(v);
+        }
+
+        @Override
+        public void writeSyntax(Syntax s) throws IOException {
+            out.writeInt(syntaxId(s));
+        }
+
+        /**
+         * Each string is written once, the following occurrences only use its rank
+         */
+        @Override
+        public void writeString(String s) throws IOException {
+            if (s == null) {
+                out.writeInt(-1);
+            } else if (strings.containsKey(s)) {
+                out.writeInt(strings.get(s));
+            } else {
+                out.writeInt(strings.size());
+                out.writeUTF(s);
+                strings.put(s, strings.size());
+            }
+        }
+    }
+
+    private static class Reader implements SyntaxRecord.RecordInput {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        private OidTreeNodeImpl[] nodes;
+        private SyntaxRecord.Builder syntaxes;
+
+        private Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        private boolean checkSources(Path[] sources) throws IOException {
+            int count = in.readInt();
+            SourceFile[] saved = new SourceFile[count];
+            for (int i = 0; i < count; i++) {
+                String path = readString();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                byte[] digest = new byte[32];
+                in.readFully(digest);
+                saved[i] = new SourceFile(path, size, lastModified, digest);
+            }
+            return SourceFile.check(saved, sources);
+        }
+
+        private MibStore readStore() throws IOException {
+            int modulesCount = in.readInt();
+            Set<String> modules = new HashSet<>(modulesCount);
+            for (int i = 0; i < modulesCount; i++) {
+                modules.add(readString());
+            }
+            OidTreeNodeImpl top = readTree();
+
+            int syntaxesCount = in.readInt();
+            SyntaxRecord[] records = new SyntaxRecord[syntaxesCount];
+            for (int i = 0; i < syntaxesCount; i++) {
+                records[i] = SyntaxRecord.read(this);
+            }
+            syntaxes = new SyntaxRecord.Builder(syntaxesCount) {
+                @Override
+                protected SyntaxRecord record(int id) {
+                    return records[id];
+                }
+            };
+
+            int namesCount = in.readInt();
+            Map<String, List<OidTreeNode>> names = new HashMap<>(namesCount);
+            for (int i = 0; i < namesCount; i++) {
+                String name = readString();
+                int count = in.readInt();
+                List<OidTreeNode> named = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    named.add(node(in.readInt()));
+                }
+                names.put(name, named);
+            }
+            int syntaxesMapCount = in.readInt();
+            Map<String, Syntax> namedSyntaxes = new HashMap<>(syntaxesMapCount);
+            for (int i = 0; i < syntaxesMapCount; i++) {
+                String name = readString();
+                namedSyntaxes.put(name, syntaxes.get(in.readInt()));
+            }
+
+            Index[] indexes = new Index[in.readInt()];
+            for (int i = 0; i < indexes.length; i++) {
+                boolean implied = in.readBoolean();
+                int count = in.readInt();
+                List<OidTreeNode> columns = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    columns.add(node(in.readInt()));
+                }
+                indexes[i] = new Index(columns, implied);
+            }
+            int objectsCount = in.readInt();
+            Map<OidTreeNode, ObjectType> objects = new HashMap<>(objectsCount);
+            for (int i = 0; i < objectsCount; i++) {
+                OidTreeNode node = node(in.readInt());
+                Syntax syntax = syntaxes.get(in.readInt());
+                boolean indexed = in.readBoolean();
+                int index = in.readInt();
+                objects.put(node, new ObjectType(syntax, indexed, index >= 0 ? indexes[index] : null));
+            }
+
+            int trapsCount = in.readInt();
+            Map<OidTreeNode, Map<Integer, Trap>> resolvedTraps = new HashMap<>(trapsCount);
+            for (int i = 0; i < trapsCount; i++) {
+                OidTreeNode node = node(in.readInt());
+                int count = in.readInt();
+                Map<Integer, Trap> traps = new HashMap<>(count);
+                for (int j = 0; j < count; j++) {
+                    int specific = in.readInt();
+                    String name = readString();
+                    int variablesCount = in.readInt();
+                    List<String> variables = new ArrayList<>(variablesCount);
+                    for (int k = 0; k < variablesCount; k++) {
+                        variables.add(readString());
+                    }
+                    traps.put(specific, new Trap(name, variables));
+                }
+                resolvedTraps.put(node, traps);
+            }
+            MibLoader.linkNodes(names, namedSyntaxes, objects, resolvedTraps);
+            return new MibStoreImpl(top, modules, names, namedSyntaxes, objects, resolvedTraps);
+        }
+
+        private OidTreeNodeImpl readTree() throws IOException {
+            List<OidTreeNodeImpl> order = new ArrayList<>();
+            List<Integer> childCounts = new ArrayList<>();
+            OidTreeNodeImpl top = new OidTreeNodeImpl();
+            order.add(top);
+            childCounts.add(in.readInt());
+            for (int i = 0; i < order.size(); i++) {
+                OidTreeNodeImpl parent = order.get(i);
+                for (int j = childCounts.get(i); j > 0; j--) {
+                    int arc = in.readInt();
+                    String symbol = readString();
+                    boolean isTableEntry = in.readBoolean();
+                    order.add(new OidTreeNodeImpl(parent, arc, symbol, isTableEntry));
+                    childCounts.add(in.readInt());
+                }
+            }
+            nodes = order.toArray(new OidTreeNodeImpl[0]);
+            return top;
+        }
+
+        private OidTreeNode node(int id) {
+            return id >= 0 ? nodes[id] : null;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            return in.readByte();
+        }
+
+        @Override
+        public short readShort() throws IOException {
+            return in.readShort();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            return in.readInt();
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            return in.readLong();
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return in.readBoolean();
+        }
+
+        @Override
+        public String readString() throws IOException {
+            int id = in.readInt();
+            if (id < 0) {
+                return null;
+            } else if (id == strings.size()) {
+                strings.add(in.readUTF());
+            }
+            return strings.get(id);
+        }
+    }
+
+}
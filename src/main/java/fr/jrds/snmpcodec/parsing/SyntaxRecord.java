@@ -0,0 +1,414 @@
+package fr.jrds.snmpcodec.parsing;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import fr.jrds.snmpcodec.MibException;
+import fr.jrds.snmpcodec.smi.AnnotedSyntax;
+import fr.jrds.snmpcodec.smi.Bits;
+import fr.jrds.snmpcodec.smi.Constraint;
+import fr.jrds.snmpcodec.smi.Constraint.ConstraintElement;
+import fr.jrds.snmpcodec.smi.Referenced;
+import fr.jrds.snmpcodec.smi.SmiType;
+import fr.jrds.snmpcodec.smi.Symbol;
+import fr.jrds.snmpcodec.smi.Syntax;
+import fr.jrds.snmpcodec.smi.Table;
+import fr.jrds.snmpcodec.smi.TableEntry;
+import fr.jrds.snmpcodec.smi.TextualConvention;
+
+/**
+ * <p>The serialized form of a {@link Syntax}, used by the snapshots. The syntaxes it depends on are identified by their rank.</p>
+ * <p>The textual conventions are rebuilt from their syntax and display hint, as {@link MibLoader} does.</p>
+ */
+class SyntaxRecord {
+
+    interface RecordOutput {
+        void writeByte(int v) throws IOException;
+        void writeShort(int v) throws IOException;
+        void writeInt(int v) throws IOException;
+        void writeLong(long v) throws IOException;
+        void writeBoolean(boolean v) throws IOException;
+        void writeString(String s) throws IOException;
+        /**
+         * Write the rank of a syntax, -1 for null
+         */
+        void writeSyntax(Syntax s) throws IOException;
+    }
+
+    interface RecordInput {
+        byte readByte() throws IOException;
+        short readShort() throws IOException;
+        int readInt() throws IOException;
+        long readLong() throws IOException;
+        boolean readBoolean() throws IOException;
+        String readString() throws IOException;
+    }
+
+    /**
+     * Build the syntaxes from their records on demand, and keep them.
+     */
+    abstract static class Builder {
+        private final Syntax[] syntaxes;
+        private final BitSet built;
+        private final BitSet building;
+        private final Map<Referenced, Integer> unresolved = new HashMap<>();
+        private int depth = 0;
+
+        Builder(int count) {
+            syntaxes = new Syntax[count];
+            built = new BitSet(count);
+            building = new BitSet(count);
+        }
+
+        protected abstract SyntaxRecord record(int id) throws IOException;
+
+        /**
+         * @param id the rank of the syntax
+         * @return the syntax, or null for a negative rank
+         * @throws IOException if the record is invalid
+         */
+        synchronized Syntax get(int id) throws IOException {
+            depth++;
+            try {
+                return syntax(id);
+            } finally {
+                depth--;
+                if (depth == 0) {
+                    // The references inside a cycle
+                    for (Map.Entry<Referenced, Integer> e: unresolved.entrySet()) {
+                        resolve(e.getKey(), syntaxes[e.getValue()]);
+                    }
+                    unresolved.clear();
+                }
+            }
+        }
+
+        /**
+         * Build a syntax, the dependencies are built first. A reference is registered before its target is built,
+         * so a cycle of references can be closed.
+         */
+        private Syntax syntax(int id) throws IOException {
+            if (id < 0 || built.get(id)) {
+                return id < 0 ? null : syntaxes[id];
+            } else if (building.get(id)) {
+                throw new IOException("Cyclic syntax");
+            }
+            building.set(id);
+            SyntaxRecord r = record(id);
+            Syntax syntax;
+            switch (r.kind) {
+            case SMITYPE:
+                syntax = SMITYPES[r.refs[0]];
+                break;
+            case ANNOTED:
+                syntax = new AnnotedSyntax(syntax(r.refs[0]), r.names, r.constraint);
+                break;
+            case REFERENCED:
+                Referenced ref = new Referenced(PLACEHOLDER);
+                syntaxes[id] = ref;
+                built.set(id);
+                building.clear(id);
+                if (r.refs[0] >= 0 && building.get(r.refs[0])) {
+                    unresolved.put(ref, r.refs[0]);
+                } else {
+                    resolve(ref, syntax(r.refs[0]));
+                }
+                return ref;
+            case UNRESOLVED:
+                syntax = new Referenced(r.symbol);
+                break;
+            case TEXTUALCONVENTION:
+                Syntax type = syntax(r.refs[0]);
+                if (type == null) {
+                    throw new IOException("Textual convention without syntax");
+                }
+                try {
+                    syntax = type.getTextualConvention(r.hint, type);
+                } catch (MibException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+                break;
+            case DATEANDTIME:
+                syntax = new TextualConvention.DateAndTime();
+                break;
+            case DISPLAYSTRING:
+                syntax = new TextualConvention.DisplayString();
+                break;
+            case BITSTC:
+                syntax = new Bits(null, null).getTextualConvention(null, null);
+                break;
+            case BITS:
+                syntax = new Bits(null, r.constraint);
+                break;
+            case TABLE:
+                syntax = new Table(r.symbol);
+                break;
+            case TABLEENTRY:
+                Map<String, Syntax> rows = new LinkedHashMap<>(r.columns.length);
+                for (int i = 0; i < r.columns.length; i++) {
+                    rows.put(r.columns[i], syntax(r.refs[i]));
+                }
+                syntax = new TableEntry(rows);
+                break;
+            case NULLSYNTAX:
+                syntax = new NullSyntax();
+                break;
+            default:
+                throw new IOException("Unknown syntax kind " + r.kind);
+            }
+            syntaxes[id] = syntax;
+            built.set(id);
+            building.clear(id);
+            return syntax;
+        }
+
+        private void resolve(Referenced ref, Syntax target) throws IOException {
+            try {
+                ref.resolve(Collections.singletonMap(PLACEHOLDER, target));
+            } catch (MibException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+    }
+
+    // BitString is kept, the snapshots store the rank of the type
+    @SuppressWarnings("deprecation")
+    private static final SmiType[] SMITYPES = new SmiType[] {
+            SmiType.Opaque, SmiType.OctetString, SmiType.Unsigned32, SmiType.BitString, SmiType.IpAddr, SmiType.ObjID,
+            SmiType.INTEGER, SmiType.Counter32, SmiType.Counter64, SmiType.Gauge32, SmiType.TimeTicks, SmiType.Null,
+    };
+
+    // Used to resolve a reference to an already built syntax
+    private static final Symbol PLACEHOLDER = new Symbol("", "snapshot");
+
+    private static final byte SMITYPE = 0;
+    private static final byte ANNOTED = 1;
+    private static final byte REFERENCED = 2;
+    private static final byte UNRESOLVED = 3;
+    private static final byte TEXTUALCONVENTION = 4;
+    private static final byte DATEANDTIME = 5;
+    private static final byte DISPLAYSTRING = 6;
+    private static final byte BITSTC = 7;
+    private static final byte BITS = 8;
+    private static final byte TABLE = 9;
+    private static final byte TABLEENTRY = 10;
+    private static final byte NULLSYNTAX = 11;
+
+    private byte kind;
+    private int[] refs;
+    private Symbol symbol;
+    private String hint;
+    private Map<Number, String> names;
+    private Constraint constraint;
+    private String[] columns;
+
+    private SyntaxRecord() {
+    }
+
+    static void write(Syntax syntax, RecordOutput out) throws IOException {
+        if (syntax instanceof SmiType) {
+            int rank = Arrays.asList(SMITYPES).indexOf(syntax);
+            if (rank < 0) {
+                throw new IOException("Unknown SMI type " + syntax);
+            }
+            out.writeByte(SMITYPE);
+            out.writeByte(rank);
+        } else if (syntax instanceof TextualConvention.DateAndTime) {
+            out.writeByte(DATEANDTIME);
+        } else if (syntax instanceof TextualConvention.DisplayString) {
+            out.writeByte(DISPLAYSTRING);
+        } else if (syntax instanceof TextualConvention.Bits) {
+            out.writeByte(BITSTC);
+        } else if (syntax instanceof TextualConvention) {
+            TextualConvention tc = (TextualConvention) syntax;
+            out.writeByte(TEXTUALCONVENTION);
+            out.writeSyntax(tc.getSyntax());
+            out.writeString(tc instanceof TextualConvention.AbstractPatternDisplayHint ? ((TextualConvention.AbstractPatternDisplayHint<?>) tc).getHint() : null);
+        } else if (syntax instanceof AnnotedSyntax) {
+            AnnotedSyntax annoted = (AnnotedSyntax) syntax;
+            out.writeByte(ANNOTED);
+            out.writeSyntax(annoted.getSyntax());
+            Map<Integer, String> names = annoted.getNames();
+            out.writeInt(names.size());
+            for (Map.Entry<Integer, String> e: names.entrySet()) {
+                out.writeInt(e.getKey());
+                out.writeString(e.getValue());
+            }
+            writeConstraint(annoted.getConstrains(), out);
+        } else if (syntax instanceof Referenced) {
+            Referenced ref = (Referenced) syntax;
+            if (ref.getSymbol() != null) {
+                out.writeByte(UNRESOLVED);
+                writeSymbol(ref.getSymbol(), out);
+            } else {
+                out.writeByte(REFERENCED);
+                out.writeSyntax(ref.getSyntax());
+            }
+        } else if (syntax instanceof Bits) {
+            out.writeByte(BITS);
+            writeConstraint(syntax.getConstrains(), out);
+        } else if (syntax instanceof Table) {
+            out.writeByte(TABLE);
+            writeSymbol(((Table) syntax).getRow(), out);
+        } else if (syntax instanceof TableEntry) {
+            Map<String, Syntax> rows = ((TableEntry) syntax).getRows();
+            out.writeByte(TABLEENTRY);
+            out.writeInt(rows.size());
+            for (Map.Entry<String, Syntax> e: rows.entrySet()) {
+                out.writeString(e.getKey());
+                out.writeSyntax(e.getValue());
+            }
+        } else if (syntax instanceof NullSyntax) {
+            out.writeByte(NULLSYNTAX);
+        } else {
+            throw new IOException("Can't store syntax " + syntax.getClass().getName());
+        }
+    }
+
+    private static void writeConstraint(Constraint constraint, RecordOutput out) throws IOException {
+        out.writeBoolean(constraint != null);
+        if (constraint != null) {
+            out.writeByte(constraint.getType().ordinal());
+            out.writeInt(constraint.getRanges().size());
+            for (ConstraintElement e: constraint.getRanges()) {
+                out.writeBoolean(e.value != null);
+                if (e.value != null) {
+                    writeValue(e.value, out);
+                } else {
+                    writeValue(e.from, out);
+                    writeValue(e.to, out);
+                }
+            }
+        }
+    }
+
+    private static void writeValue(Object value, RecordOutput out) throws IOException {
+        if (value instanceof Byte) {
+            out.writeByte(0);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            out.writeByte(1);
+            out.writeShort((Short) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(2);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(3);
+            out.writeLong((Long) value);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(4);
+            out.writeString(value.toString());
+        } else {
+            // Only the text is used for the other values
+            out.writeByte(5);
+            out.writeString(String.valueOf(value));
+        }
+    }
+
+    private static void writeSymbol(Symbol s, RecordOutput out) throws IOException {
+        out.writeString(s.module);
+        out.writeString(s.name);
+    }
+
+    static SyntaxRecord read(RecordInput in) throws IOException {
+        SyntaxRecord r = new SyntaxRecord();
+        r.kind = in.readByte();
+        switch (r.kind) {
+        case SMITYPE:
+            r.refs = new int[] {in.readByte()};
+            break;
+        case ANNOTED:
+            r.refs = new int[] {in.readInt()};
+            int namesCount = in.readInt();
+            r.names = new LinkedHashMap<>(namesCount);
+            for (int i = 0; i < namesCount; i++) {
+                int value = in.readInt();
+                r.names.put(value, in.readString());
+            }
+            r.constraint = readConstraint(in);
+            break;
+        case REFERENCED:
+            r.refs = new int[] {in.readInt()};
+            break;
+        case UNRESOLVED:
+        case TABLE:
+            r.symbol = readSymbol(in);
+            break;
+        case TEXTUALCONVENTION:
+            r.refs = new int[] {in.readInt()};
+            r.hint = in.readString();
+            break;
+        case BITS:
+            r.constraint = readConstraint(in);
+            break;
+        case TABLEENTRY:
+            int rowsCount = in.readInt();
+            r.columns = new String[rowsCount];
+            r.refs = new int[rowsCount];
+            for (int i = 0; i < rowsCount; i++) {
+                r.columns[i] = in.readString();
+                r.refs[i] = in.readInt();
+            }
+            break;
+        case DATEANDTIME:
+        case DISPLAYSTRING:
+        case BITSTC:
+        case NULLSYNTAX:
+            break;
+        default:
+            throw new IOException("Unknown syntax kind " + r.kind);
+        }
+        return r;
+    }
+
+    private static Constraint readConstraint(RecordInput in) throws IOException {
+        if (! in.readBoolean()) {
+            return null;
+        }
+        Constraint.Builder builder = Constraint.getBuilder(Constraint.Type.values()[in.readByte()]);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            if (in.readBoolean()) {
+                builder.add(new ConstraintElement(readValue(in)));
+            } else {
+                Object from = readValue(in);
+                Object to = readValue(in);
+                builder.add(new ConstraintElement(from, to));
+            }
+        }
+        return builder.build();
+    }
+
+    private static Object readValue(RecordInput in) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+        case 0:
+            return in.readByte();
+        case 1:
+            return in.readShort();
+        case 2:
+            return in.readInt();
+        case 3:
+            return in.readLong();
+        case 4:
+            return new BigInteger(in.readString());
+        case 5:
+            return in.readString();
+        default:
+            throw new IOException("Unknown value kind " + kind);
+        }
+    }
+
+    private static Symbol readSymbol(RecordInput in) throws IOException {
+        String module = in.readString();
+        String name = in.readString();
+        return module != null ? new Symbol(module, name) : new Symbol(name);
+    }
+
+}
@@ -4,6 +4,7 @@ import java.util.Map;
 
 import org.snmp4j.smi.Variable;
 
+import fr.jrds.snmpcodec.IpAddressResolver;
 import fr.jrds.snmpcodec.MibException;
 
 public class AnnotedSyntax extends Syntax implements SyntaxContainer {
@@ -25,6 +26,15 @@ public class AnnotedSyntax extends Syntax implements SyntaxContainer {
         }
     }
 
+    @Override
+    public String format(Variable v, IpAddressResolver resolver) {
+        if (isNamed()) {
+            return format(v);
+        } else {
+            return syntax.format(v, resolver);
+        }
+    }
+
     @Override
     public Object convert(Variable v) {
         if (isNamed()) {
@@ -34,6 +44,16 @@ public class AnnotedSyntax extends Syntax implements SyntaxContainer {
         }
     }
 
+    @Override
+    public NumericKind getNumericKind() {
+        return syntax != null ? syntax.getNumericKind() : null;
+    }
+
+    @Override
+    public long convertToLong(Variable v) {
+        return syntax.convertToLong(v);
+    }
+
     @Override
     public Variable parse(String text) {
         if (isNamed()) {
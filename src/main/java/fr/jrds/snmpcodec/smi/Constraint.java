@@ -1,11 +1,9 @@
 package fr.jrds.snmpcodec.smi;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
-import fr.jrds.snmpcodec.smi.Index.Parsed;
-
 public class Constraint {
 
     public static class ConstraintElement {
@@ -82,45 +80,29 @@ public class Constraint {
         return type;
     }
 
-    Parsed extract(int[] oidElements) {
-        Parsed tryExtract = new Parsed();
-        if (type != Type.SIZE) {
-            tryExtract.content = Arrays.copyOf(oidElements, 1);
-            if (oidElements.length > 1) {
-                tryExtract.next = Arrays.copyOfRange(oidElements, 1, oidElements.length);
-            }
+    /**
+     * @return the ranges and values of the constraint
+     */
+    public List<ConstraintElement> getRanges() {
+        return Collections.unmodifiableList(ranges);
+    }
+
+    /**
+     * @return true if a SIZE constraint allows many sizes
+     */
+    boolean isVariableSize() {
+        return variableSize;
+    }
+
+    /**
+     * @return the size allowed by a SIZE constraint with a single value, or -1
+     */
+    int getFixedSize() {
+        if (! variableSize && ranges.size() == 1 && ranges.get(0).value instanceof Number) {
+            return ((Number) ranges.get(0).value).intValue();
         } else {
-            for(ConstraintElement i: ranges) {
-                if (variableSize) {
-                    int elementSize = oidElements[0];
-                    if (elementSize == 0) {
-                        tryExtract.content = new int[0];
-                        tryExtract.next = oidElements;
-                    }
-                    if (oidElements.length >= elementSize) {
-                        tryExtract.content = Arrays.copyOfRange(oidElements, 1, elementSize + 1);
-                        if (elementSize + 1 <= oidElements.length) {
-                            tryExtract.next = Arrays.copyOfRange(oidElements, elementSize + 1, oidElements.length);
-                        } else {
-                            tryExtract.next = null;
-                        }
-                    }
-                } else if (i.value instanceof Number && oidElements.length == ((Number) i.value).intValue()) {
-                    tryExtract.content = oidElements;
-                    tryExtract.next = null;
-                    return tryExtract;
-                } else if (i.value instanceof Number && oidElements.length > ((Number) i.value).intValue()) {
-                    int val = ((Number) i.value).intValue();
-                    tryExtract.content = Arrays.copyOf(oidElements, val);
-                    if(val + 1 <= oidElements.length) {
-                        tryExtract.next = Arrays.copyOfRange(oidElements, val, oidElements.length);
-                    } else {
-                        tryExtract.next = null;
-                    }
-                }
-            }
+            return -1;
         }
-        return tryExtract;
     }
 
     @Override
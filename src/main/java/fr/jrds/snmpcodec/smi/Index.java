@@ -1,37 +1,164 @@
 package fr.jrds.snmpcodec.smi;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
 import org.snmp4j.smi.Variable;
 import org.snmp4j.smi.IpAddress;
 
 import fr.jrds.snmpcodec.MibStore;
 import fr.jrds.snmpcodec.OidTreeNode;
-import fr.jrds.snmpcodec.Utils;
 import fr.jrds.snmpcodec.log.LogAdapter;
 
 public class Index {
 
-    static class Parsed {
-        public int[] content = null;
-        public int[] next = null;
+    /**
+     * Receive the decoded index values
+     */
+    @FunctionalInterface
+    public interface IndexConsumer {
+        /**
+         * @param column the index column
+         * @param offset the offset of the index sub-identifiers in the OID
+         * @param length the number of sub-identifiers used by the index
+         * @param value the decoded value
+         */
+        void accept(OidTreeNode column, int offset, int length, Object value);
+    }
+
+    private enum Kind {
+        // A single sub-identifier
+        SINGLE,
+        // An IpAddress, 4 sub-identifiers
+        IPADDRESS,
+        // A fixed size string
+        FIXED,
+        // A variable size string or OID, prefixed by its length
+        LENGTH_PREFIXED,
+        // A variable size string or OID, as the IMPLIED last index, it uses all the remaining sub-identifiers
+        IMPLIED,
+        // The definition of the column is incomplete
+        UNDECODABLE,
+    }
+
+    /**
+     * How to decode an index column, computed once
+     */
+    private static class Column {
+        private final OidTreeNode node;
+        private final Syntax codec;
+        private final Kind kind;
+        private final int size;
+        private final boolean named;
+
+        private Column(OidTreeNode node, Syntax codec, Kind kind, int size) {
+            this.node = node;
+            this.codec = codec;
+            this.kind = kind;
+            this.size = size;
+            this.named = codec != null && codec.isNamed();
+        }
+
+        /**
+         * @return the number of sub-identifiers used, or -1 if it can't be decoded
+         */
+        private int decode(int[] oid, int cursor, int end, IndexConsumer consumer) {
+            int remaining = end - cursor;
+            int used;
+            OID subIndex;
+            switch (kind) {
+            case SINGLE:
+                if (named) {
+                    // Enumerated values are directly resolved, no need for an intermediate variable
+                    consumer.accept(node, cursor, 1, codec.getNameFromNumer(oid[cursor]));
+                    return 1;
+                }
+                used = 1;
+                subIndex = new OID(oid, cursor, 1);
+                break;
+            case IPADDRESS:
+                if (remaining < 4) {
+                    return -1;
+                }
+                used = 4;
+                subIndex = new OID(oid, cursor, 4);
+                break;
+            case FIXED:
+                if (remaining < size) {
+                    return -1;
+                }
+                used = size;
+                subIndex = new OID(oid, cursor, size);
+                break;
+            case LENGTH_PREFIXED:
+                int length = oid[cursor];
+                if (length < 0 || remaining < length + 1) {
+                    return -1;
+                }
+                used = length + 1;
+                subIndex = new OID(oid, cursor + 1, length);
+                break;
+            case IMPLIED:
+                used = remaining;
+                subIndex = new OID(oid, cursor, remaining);
+                break;
+            default:
+                return -1;
+            }
+            Variable v = codec.getVariable();
+            v.fromSubIndex(subIndex, true);
+            Object o = codec.convert(v);
+            if (named) {
+                o = codec.getNameFromNumer(v.toInt());
+            }
+            consumer.accept(node, cursor, used, o);
+            return used;
+        }
+
         @Override
         public String toString() {
-            return (content != null ? Utils.dottedNotation(content) : "_") + "/" + (next != null ? Utils.dottedNotation(next) : "_");
+            return node + "/" + kind;
         }
     }
 
     private static final LogAdapter logger = LogAdapter.getLogger(Index.class);
 
     private final List<OidTreeNode> indexes;
+    private final boolean implied;
+    // Built once the columns are linked to their object type, volatile because it can be built lazily by any thread
+    private volatile Column[] plan = null;
 
     public Index(List<OidTreeNode> indexes) {
+        this(indexes, false);
+    }
+
+    /**
+     * @param indexes the index columns
+     * @param implied true if the last index is IMPLIED
+     */
+    public Index(List<OidTreeNode> indexes, boolean implied) {
         this.indexes = indexes;
+        this.implied = implied;
+    }
+
+    /**
+     * @return the index columns
+     */
+    public List<OidTreeNode> getIndexes() {
+        return Collections.unmodifiableList(indexes);
+    }
+
+    /**
+     * @return true if the last index is IMPLIED
+     */
+    public boolean isImplied() {
+        return implied;
     }
 
     @Override
@@ -40,59 +167,111 @@ public class Index {
     }
 
     public Map<String, Object> resolve(int[] oid, MibStore store) {
+        return resolve(oid, 0, oid.length, store);
+    }
+
+    /**
+     * Resolve the index values stored in a part of an OID. The OID is not copied.
+     * @param oid the OID
+     * @param offset the start of the index part
+     * @param length the length of the index part
+     * @param store the store used to resolve the columns
+     * @return the index values, by column name
+     */
+    public Map<String, Object> resolve(int[] oid, int offset, int length, MibStore store) {
         Map<String, Object> indexesValues = new LinkedHashMap<>(indexes.size());
-        int[] oidParsed = Arrays.copyOf(oid, oid.length);
-        for (OidTreeNode i: indexes) {
-            ObjectType column = store.objects.get(i);
-            if(column == null) {
-                logger.error("index not found: %s", i);
-                break;
-            }
-            Syntax codec = column.getSyntax();
-            Variable v =  codec.getVariable();
-            logger.debug("given %s, found %s %s", i, codec, column);
-            Parsed parsed;
-            if (codec.getConstrains() != null) {
-                parsed = codec.getConstrains().extract(oidParsed);
-            } else if (v instanceof IpAddress) {
-                parsed = new Parsed();
-                parsed.content = Arrays.copyOf(oidParsed, 4);
-                if (oidParsed.length > 1) {
-                    parsed.next = Arrays.copyOfRange(oidParsed, 4, oidParsed.length);
-                }
-            } else {
-                parsed = new Parsed();
-                parsed.content = Arrays.copyOf(oidParsed, 1);
-                if (oidParsed.length > 1) {
-                    parsed.next = Arrays.copyOfRange(oidParsed, 1, oidParsed.length);
-                }
-            }
-            if (parsed == null) {
+        resolve(oid, offset, length, (c, o, l, v) -> indexesValues.put(c.getSymbol(), v));
+        if (logger.isDebugEnabled()) {
+            logger.debug("will resolve %s to %s", Arrays.toString(Arrays.copyOfRange(oid, offset, offset + length)), indexesValues);
+        }
+        return indexesValues;
+    }
+
+    /**
+     * Decode the index values stored in a part of an OID. The OID is not copied.
+     * @param oid the OID
+     * @param offset the start of the index part
+     * @param length the length of the index part
+     * @param consumer receive the index values, in the index order
+     * @throws IllegalArgumentException if some sub-identifiers can't be decoded
+     */
+    public void resolve(int[] oid, int offset, int length, IndexConsumer consumer) {
+        Column[] columns = getPlan();
+        int end = offset + length;
+        int cursor = offset;
+        for (Column c: columns) {
+            if (cursor >= end) {
                 break;
             }
-            logger.debug("parsed %s from %s with %s/%s", parsed, oidParsed, i, codec);
-            if (v == null) {
-                // The definition was incomplete, null variable returned, stop now
+            if (c == null) {
                 break;
             }
-            OID subIndex = new OID(parsed.content);
-            v.fromSubIndex(subIndex, true);
-            Object o = codec.convert(v);
-            if (codec.isNamed()) {
-                o = codec.getNameFromNumer(v.toInt());
-            }
-            indexesValues.put(i.getSymbol(), o);
-            oidParsed = parsed.next;
-            if (oidParsed == null) {
+            int used = c.decode(oid, cursor, end, consumer);
+            if (used < 0) {
                 break;
             }
+            cursor += used;
         }
-        if (oidParsed != null) {
-            String traillings = Arrays.stream(oidParsed).mapToObj(Integer::toString).collect(Collectors.joining("."));
+        if (cursor < end) {
+            String traillings = Arrays.stream(oid, cursor, end).mapToObj(Integer::toString).collect(Collectors.joining("."));
             throw new IllegalArgumentException("Trailing elements in index: " + traillings);
         }
-        logger.debug("will resolve %s to %s", oid, indexesValues);
-        return indexesValues;
+    }
+
+    private Column[] getPlan() {
+        Column[] columns = plan;
+        if (columns == null) {
+            columns = buildPlan();
+            plan = columns;
+        }
+        return columns;
+    }
+
+    /**
+     * Compile the decoding plan, the columns must be linked to their object type. If not called, it's done on first use.
+     */
+    public void compile() {
+        plan = buildPlan();
+    }
+
+    /**
+     * Build the decoding plan. A null column stops the decoding.
+     */
+    private Column[] buildPlan() {
+        Column[] columns = new Column[indexes.size()];
+        for (int i = 0; i < columns.length; i++) {
+            OidTreeNode node = indexes.get(i);
+            ObjectType column = node != null ? node.getObjectType() : null;
+            if (column == null) {
+                logger.error("index not found: %s", node);
+                break;
+            }
+            boolean last = i == columns.length - 1;
+            Syntax codec = column.getSyntax();
+            Variable v = codec.getVariable();
+            Constraint constraint = codec.getConstrains();
+            if (v == null) {
+                columns[i] = new Column(node, codec, Kind.UNDECODABLE, 0);
+            } else if (constraint != null && constraint.getType() == Constraint.Type.SIZE) {
+                if (constraint.isVariableSize()) {
+                    columns[i] = new Column(node, codec, last && implied ? Kind.IMPLIED : Kind.LENGTH_PREFIXED, 0);
+                } else if (constraint.getFixedSize() >= 0) {
+                    columns[i] = new Column(node, codec, Kind.FIXED, constraint.getFixedSize());
+                } else {
+                    columns[i] = new Column(node, codec, Kind.UNDECODABLE, 0);
+                }
+            } else if (constraint != null) {
+                columns[i] = new Column(node, codec, Kind.SINGLE, 1);
+            } else if (v instanceof IpAddress) {
+                columns[i] = new Column(node, codec, Kind.IPADDRESS, 4);
+            } else if (v instanceof OctetString || v instanceof OID) {
+                columns[i] = new Column(node, codec, last && implied ? Kind.IMPLIED : Kind.LENGTH_PREFIXED, 0);
+            } else {
+                columns[i] = new Column(node, codec, Kind.SINGLE, 1);
+            }
+            logger.debug("index column %s decoded as %s", node, columns[i].kind);
+        }
+        return columns;
     }
 
 }
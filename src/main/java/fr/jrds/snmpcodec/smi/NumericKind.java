@@ -0,0 +1,99 @@
+package fr.jrds.snmpcodec.smi;
+
+/**
+ * Describe the numeric value of a syntax, as returned by {@link Syntax#convertToLong(org.snmp4j.smi.Variable)}.
+ */
+public final class NumericKind {
+
+    public enum Type {
+        /**
+         * A signed 32 bits integer
+         */
+        SIGNED,
+        /**
+         * An unsigned 32 bits integer
+         */
+        UNSIGNED,
+        /**
+         * A monotonically increasing counter, that wraps
+         */
+        COUNTER,
+        /**
+         * An unsigned 32 bits value, that can increase or decrease
+         */
+        GAUGE,
+        /**
+         * A duration, the value is in milliseconds
+         */
+        TICKS,
+    }
+
+    static final NumericKind INTEGER = new NumericKind(Type.SIGNED, false, 0);
+    static final NumericKind UNSIGNED32 = new NumericKind(Type.UNSIGNED, false, 0);
+    static final NumericKind COUNTER32 = new NumericKind(Type.COUNTER, false, 0);
+    static final NumericKind COUNTER64 = new NumericKind(Type.COUNTER, true, 0);
+    static final NumericKind GAUGE32 = new NumericKind(Type.GAUGE, false, 0);
+    static final NumericKind TIMETICKS = new NumericKind(Type.TICKS, false, 0);
+
+    private static final double[] POWERS = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+
+    private final Type type;
+    private final boolean unsigned64;
+    private final int scale;
+
+    private NumericKind(Type type, boolean unsigned64, int scale) {
+        this.type = type;
+        this.unsigned64 = unsigned64;
+        this.scale = scale;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return true if the value is an unsigned 64 bits value, stored in a long
+     */
+    public boolean isUnsigned64() {
+        return unsigned64;
+    }
+
+    /**
+     * @return the number of decimal digits of a fixed point value, from a display hint like "d-2"
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    NumericKind withScale(int newScale) {
+        return newScale == scale ? this : new NumericKind(type, unsigned64, newScale);
+    }
+
+    /**
+     * Convert a value returned by {@link Syntax#convertToLong(org.snmp4j.smi.Variable)}, the scale is applied
+     * @param value the value
+     * @return the value as a double
+     */
+    public double toDouble(long value) {
+        double converted;
+        if (unsigned64 && value < 0) {
+            // The unsigned value, with the low bit kept for the rounding
+            converted = (double) ((value >>> 1) | (value & 1)) * 2.0;
+        } else {
+            converted = value;
+        }
+        if (scale == 0) {
+            return converted;
+        } else if (scale < POWERS.length) {
+            return converted / POWERS[scale];
+        } else {
+            return converted / Math.pow(10, scale);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + (unsigned64 ? "64" : "") + (scale != 0 ? "-" + scale : "");
+    }
+
+}
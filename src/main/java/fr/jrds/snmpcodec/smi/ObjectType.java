@@ -3,6 +3,8 @@ package fr.jrds.snmpcodec.smi;
 import org.snmp4j.smi.Null;
 import org.snmp4j.smi.Variable;
 
+import fr.jrds.snmpcodec.IpAddressResolver;
+
 public class ObjectType {
 
     private final Syntax syntax;
@@ -23,6 +25,20 @@ public class ObjectType {
         }
     }
 
+    /**
+     * Format a variable, using the given policy for the IpAddress values.
+     * @param v the variable to format
+     * @param resolver the IpAddress formatting policy
+     * @return the formatted value
+     */
+    public String format(Variable v, IpAddressResolver resolver) {
+        if (v instanceof Null) {
+            return null;
+        } else {
+            return syntax.format(v, resolver);
+        }
+    }
+
     public Variable parse(String text) {
         if (syntax.isNamed()) {
             return null;
@@ -43,6 +59,27 @@ public class ObjectType {
         return null;
     }
 
+    /**
+     * @return the description of the numeric values, or null if the object is not numeric
+     */
+    public NumericKind getNumericKind() {
+        return syntax.getNumericKind();
+    }
+
+    /**
+     * @see Syntax#convertToLong(Variable)
+     */
+    public long convertToLong(Variable v) {
+        return syntax.convertToLong(v);
+    }
+
+    /**
+     * @see Syntax#convertToDouble(Variable)
+     */
+    public double convertToDouble(Variable v) {
+        return syntax.convertToDouble(v);
+    }
+
     /**
      * @return the index
      */
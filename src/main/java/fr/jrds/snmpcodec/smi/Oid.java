@@ -1,8 +1,14 @@
 package fr.jrds.snmpcodec.smi;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import fr.jrds.snmpcodec.MibException;
@@ -12,7 +18,8 @@ public class Oid {
 
     private final Symbol root;
     private final List<OidComponent> components;
-    private List<Integer> path = null;
+    private int[] path = null;
+    private int pathHash = 0;
     private final String name;
     private final boolean pathfirst;
 
@@ -26,11 +33,12 @@ public class Oid {
         this.pathfirst = false;
     }
 
-    public Oid(List<Integer> path, String name) throws MibException {
-        if (path == null || path.isEmpty()) {
+    public Oid(int[] path, String name) throws MibException {
+        if (path == null || path.length == 0) {
             throw new MibException("Creating empty OID " + name);
         }
         this.path = path;
+        this.pathHash = Arrays.hashCode(path);
         this.root = null;
         this.components = null;
         this.name = name;
@@ -41,43 +49,72 @@ public class Oid {
         return components == null ? 0 : components.size();
     }
 
-    public List<Integer> getPath(Map<Symbol, Oid> oids) throws MibException {
-        if (path == null) {
-            if (root != null) {
-                Oid parent = oids.get(root);
+    /**
+     * Resolve the numerical path of this OID, and of all the OIDs it depends on, without recursion. The returned array
+     * is shared and must not be modified.
+     * @param oids the known OIDs
+     * @return the path, starting with -1 if a root was missing in a previous resolution
+     * @throws MibException if a root is missing, or if the roots are cyclic
+     */
+    public int[] getPath(Map<Symbol, Oid> oids) throws MibException {
+        if (path != null) {
+            return path;
+        }
+        // Walk up to the first resolved OID, then resolve down
+        Deque<Oid> unresolved = new ArrayDeque<>();
+        Set<Oid> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Oid current = this;
+        int[] parentPath = new int[0];
+        while (current != null) {
+            if (current.path != null) {
+                parentPath = current.path;
+                break;
+            } else if (! seen.add(current)) {
+                current.failedPath();
+                throw new MibException(String.format("cyclic definition of %s", current));
+            }
+            unresolved.push(current);
+            if (current.root == null) {
+                current = null;
+            } else {
+                Oid parent = oids.get(current.root);
                 if (parent == null) {
-                    failedPath();
-                    throw new MibException(String.format("missing root symbol from %s", this));
+                    current.failedPath();
+                    throw new MibException(String.format("missing root symbol from %s", current));
                 }
-                List<Integer> parentpath = parent.getPath(oids);
-                if (parentpath.isEmpty()) {
-                    failedPath();
-                    throw new MibException("Invalid OID path for symbol " + root);
-                }
-                path = new ArrayList<>();
-                path.addAll(parentpath);
+                current = parent;
             }
-            // The path was null, not root given
-            if (path == null) {
-                path = new ArrayList<>();
+        }
+        Oid first = unresolved.peek();
+        if (first.root != null && parentPath.length == 0) {
+            first.failedPath();
+            throw new MibException("Invalid OID path for symbol " + first.root);
+        }
+        for (Oid i: unresolved) {
+            int[] newPath = Arrays.copyOf(parentPath, parentPath.length + i.components.size());
+            for (int j = 0; j < i.components.size(); j++) {
+                newPath[parentPath.length + j] = i.components.get(j).number;
             }
-            components.forEach(i-> path.add(i.number));
+            i.path = newPath;
+            parentPath = newPath;
         }
         return path;
     }
 
     private void failedPath() {
-        path = new ArrayList<>(components.size() + 1);
-        path.add(-1);
-        components.stream().map( i -> i.number).forEach(i-> path.add(i));
+        path = new int[components.size() + 1];
+        path[0] = -1;
+        for (int i = 0; i < components.size(); i++) {
+            path[i + 1] = components.get(i).number;
+        }
     }
 
     @Override
     public String toString() {
-        if (path == null || path.isEmpty() || path.get(0) == -1) {
+        if (path == null || path.length == 0 || path[0] == -1) {
             return (root != null ? root  + "." : "") + components.stream().map(OidComponent::toString).collect(Collectors.joining("."));
         } else {
-            return path.stream().map(Object::toString).collect(Collectors.joining("."));
+            return Arrays.stream(path).mapToObj(Integer::toString).collect(Collectors.joining("."));
         }
     }
 
@@ -93,7 +130,7 @@ public class Oid {
         final int prime = 31;
         int result = 1;
         if (pathfirst) {
-            result = prime * result + ((path == null) ? 0 : path.hashCode());
+            result = prime * result + pathHash;
             result = prime * result + ((name == null) ? 0 : name.hashCode());
         } else {
             result = prime * result + ((root == null) ? 0 : root.hashCode());
@@ -113,7 +150,7 @@ public class Oid {
         }
         Oid other = (Oid) obj;
         if (pathfirst) {
-            return path.equals(other.path) && name.equals(other.name);
+            return pathHash == other.pathHash && Arrays.equals(path, other.path) && Objects.equals(name, other.name);
         } else {
             if (root == null) {
                 if(other.root != null)
@@ -4,6 +4,7 @@ import java.util.Map;
 
 import org.snmp4j.smi.Variable;
 
+import fr.jrds.snmpcodec.IpAddressResolver;
 import fr.jrds.snmpcodec.MibException;
 
 public class Referenced extends Syntax implements SyntaxContainer {
@@ -25,6 +26,15 @@ public class Referenced extends Syntax implements SyntaxContainer {
         }
     }
 
+    @Override
+    public String format(Variable v, IpAddressResolver resolver) {
+        if (isNamed()) {
+            return format(v);
+        } else {
+            return ref.format(v, resolver);
+        }
+    }
+
     @Override
     public Variable parse(String text) {
         if (isNamed()) {
@@ -39,6 +49,16 @@ public class Referenced extends Syntax implements SyntaxContainer {
         return ref.convert(v);
     }
 
+    @Override
+    public NumericKind getNumericKind() {
+        return ref != null ? ref.getNumericKind() : null;
+    }
+
+    @Override
+    public long convertToLong(Variable v) {
+        return ref.convertToLong(v);
+    }
+
     @Override
     public Variable getVariable(Object source) {
         return ref !=null ? ref.getVariable(source) : null;
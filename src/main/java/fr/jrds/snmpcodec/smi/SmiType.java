@@ -17,6 +17,7 @@ import org.snmp4j.smi.TimeTicks;
 import org.snmp4j.smi.UnsignedInteger32;
 import org.snmp4j.smi.Variable;
 
+import fr.jrds.snmpcodec.IpAddressResolver;
 import fr.jrds.snmpcodec.MibException;
 import fr.jrds.snmpcodec.Utils;
 import fr.jrds.snmpcodec.log.LogAdapter;
@@ -151,6 +152,14 @@ public abstract class SmiType extends Syntax {
             return v.toLong();
         }
         @Override
+        public NumericKind getNumericKind() {
+            return NumericKind.UNSIGNED32;
+        }
+        @Override
+        public long convertToLong(Variable v) {
+            return v.toLong();
+        }
+        @Override
         public TextualConvention getTextualConvention(String hint, Syntax type) throws MibException {
             return new TextualConvention.Unsigned32DisplayHint<>(type, hint);
         }
@@ -198,6 +207,7 @@ public abstract class SmiType extends Syntax {
      * <li>{@link #getVariable()} return an empty {@link org.snmp4j.smi.IpAddress} variable.</li>
      * <li>{@link #convert(Variable)} return a {@link java.net.InetAddress}.</li>
      * <li>{@link #format(Variable)} try to resolve the hostname associated with the IP address.</li>
+     * <li>{@link #format(Variable, IpAddressResolver)} use the given policy to format the IP address.</li>
      * <li>{@link #parse(String)} parse the string as an hostname or a IP address.</li>
      * </ul>
      * @author Fabrice Bacchella
@@ -225,8 +235,12 @@ public abstract class SmiType extends Syntax {
         }
         @Override
         public String format(Variable v) {
+            return format(v, IpAddressResolver.SYSTEM);
+        }
+        @Override
+        public String format(Variable v, IpAddressResolver resolver) {
             IpAddress ip = (IpAddress) v;
-            return ip.getInetAddress().getHostName();
+            return resolver.resolve(ip.getInetAddress());
         }
         @Override
         public Variable parse(String text) {
@@ -294,6 +308,14 @@ public abstract class SmiType extends Syntax {
             return v.toInt();
         }
         @Override
+        public NumericKind getNumericKind() {
+            return NumericKind.INTEGER;
+        }
+        @Override
+        public long convertToLong(Variable v) {
+            return v.toInt();
+        }
+        @Override
         public String format(Variable v) {
             return java.lang.String.valueOf(v.toInt());
         }
@@ -343,6 +365,14 @@ public abstract class SmiType extends Syntax {
             return v.toLong();
         }
         @Override
+        public NumericKind getNumericKind() {
+            return NumericKind.COUNTER32;
+        }
+        @Override
+        public long convertToLong(Variable v) {
+            return v.toLong();
+        }
+        @Override
         public String format(Variable v) {
             return java.lang.String.valueOf(v.toLong());
         }
@@ -393,6 +423,14 @@ public abstract class SmiType extends Syntax {
             return Utils.getUnsigned(v.toLong());
         }
         @Override
+        public NumericKind getNumericKind() {
+            return NumericKind.COUNTER64;
+        }
+        @Override
+        public long convertToLong(Variable v) {
+            return v.toLong();
+        }
+        @Override
         public String format(Variable v) {
             return Long.toUnsignedString(v.toLong());
         }
@@ -439,6 +477,14 @@ public abstract class SmiType extends Syntax {
             return v.toLong();
         }
         @Override
+        public NumericKind getNumericKind() {
+            return NumericKind.GAUGE32;
+        }
+        @Override
+        public long convertToLong(Variable v) {
+            return v.toLong();
+        }
+        @Override
         public String format(Variable v) {
             return java.lang.String.valueOf(v.toLong());
         }
@@ -489,6 +535,14 @@ public abstract class SmiType extends Syntax {
         public Object convert(Variable v) {
             return ((TimeTicks)v).toMilliseconds();
         }
+        @Override
+        public NumericKind getNumericKind() {
+            return NumericKind.TIMETICKS;
+        }
+        @Override
+        public long convertToLong(Variable v) {
+            return ((TimeTicks)v).toMilliseconds();
+        }
 
         @Override
         public Variable parse(String text) {
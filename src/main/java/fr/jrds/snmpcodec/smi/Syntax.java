@@ -8,6 +8,7 @@ import java.util.regex.Pattern;
 
 import org.snmp4j.smi.Variable;
 
+import fr.jrds.snmpcodec.IpAddressResolver;
 import fr.jrds.snmpcodec.MibException;
 
 public abstract class Syntax {
@@ -35,7 +36,50 @@ public abstract class Syntax {
     }
 
     public abstract String format(Variable v);
+
+    /**
+     * Format a variable, using the given policy for the IpAddress values.
+     * @param v the variable to format
+     * @param resolver the IpAddress formatting policy
+     * @return the formatted value
+     */
+    public String format(Variable v, IpAddressResolver resolver) {
+        return format(v);
+    }
     public abstract Object convert(Variable v);
+
+    /**
+     * @return the description of the numeric values, or null if the syntax is not numeric
+     */
+    public NumericKind getNumericKind() {
+        return null;
+    }
+
+    /**
+     * Convert a numeric variable without boxing. The scale from the display hint is not applied, and a Counter64 is
+     * returned as an unsigned value stored in a long.
+     * @param v the variable
+     * @return the value
+     * @throws UnsupportedOperationException if the syntax is not numeric
+     */
+    public long convertToLong(Variable v) {
+        throw new UnsupportedOperationException("Not a numeric syntax: " + this);
+    }
+
+    /**
+     * Convert a numeric variable without boxing, the scale from the display hint is applied.
+     * @param v the variable
+     * @return the value
+     * @throws UnsupportedOperationException if the syntax is not numeric
+     */
+    public double convertToDouble(Variable v) {
+        NumericKind kind = getNumericKind();
+        if (kind == null) {
+            throw new UnsupportedOperationException("Not a numeric syntax: " + this);
+        }
+        return kind.toDouble(convertToLong(v));
+    }
+
     public abstract Variable parse(String text);
     public abstract Variable getVariable();
     public abstract Variable getVariable(Object source);
@@ -48,6 +92,13 @@ public abstract class Syntax {
         return !toname.isEmpty();
     }
 
+    /**
+     * @return the named numbers, indexed by value
+     */
+    public Map<Integer, String> getNames() {
+        return Collections.unmodifiableMap(toname);
+    }
+
     public String getNameFromNumer(int number) {
         return this.toname.get(number);
     }
@@ -1,8 +1,16 @@
 package fr.jrds.snmpcodec.smi;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -17,12 +25,21 @@ import org.snmp4j.smi.OctetString;
 import org.snmp4j.smi.UnsignedInteger32;
 import org.snmp4j.smi.Variable;
 
+import fr.jrds.snmpcodec.IpAddressResolver;
 import fr.jrds.snmpcodec.MibException;
 import fr.jrds.snmpcodec.smi.Constraint.ConstraintElement;
 import fr.jrds.snmpcodec.smi.Constraint.Type;
 
 public abstract class TextualConvention extends AnnotedSyntax implements SyntaxContainer {
 
+    /**
+     * The textual conventions provides their own formatting, IpAddress is never formatted by them.
+     */
+    @Override
+    public String format(Variable v, IpAddressResolver resolver) {
+        return format(v);
+    }
+
     public static class OidTextualConvention extends TextualConvention {
 
         public OidTextualConvention(Syntax syntax) {
@@ -71,7 +88,8 @@ public abstract class TextualConvention extends AnnotedSyntax implements SyntaxC
 
         private static final AnnotedSyntax localsyntax = new AnnotedSyntax(SmiType.OctetString, null, Constraint8or11);
 
-        private static final Pattern HINTREGEX = Pattern.compile("(\\d+)-(\\d+)-(\\d+),(\\d+):(\\d+):(\\d+).(\\d+)(,([+-])(\\d+):(\\d+))?");
+        // The separator before each field
+        private static final String SEPARATORS = " --,::.,:";
 
         public DateAndTime() {
             super(localsyntax, "2d-1d-1d,1d:1d:1d.1d,1a1d:1d", null, Constraint8or11);
@@ -79,49 +97,188 @@ public abstract class TextualConvention extends AnnotedSyntax implements SyntaxC
 
         @Override
         public String patternFormat(OctetString os) {
-            ByteBuffer buffer = ByteBuffer.wrap(os.toByteArray());
-            buffer.order(ByteOrder.BIG_ENDIAN);
-            int year = buffer.getShort();
-            int month = buffer.get();
-            int day = buffer.get();
-            int hour = buffer.get();
-            int minutes = buffer.get();
-            int seconds = buffer.get();
-            int deciSeconds = buffer.get();
-            String zoneOffset;
-            if (buffer.hasRemaining()) {
-                char directionFromUTC = Character.toChars(buffer.get())[0];
-                int hourFromUTC = buffer.get();
-                int minutesFromUTC = buffer.get();
-                zoneOffset = String.format(",%c%d:%d", directionFromUTC, hourFromUTC, minutesFromUTC);
-            } else {
-                zoneOffset = "";
-            }
+            StringBuilder formatted = new StringBuilder(28);
+            patternFormat(os, formatted);
+            return formatted.toString();
+        }
 
-            return String.format("%d-%d-%d,%d:%d:%d.%d%s", year, month, day, hour, minutes, seconds, deciSeconds, zoneOffset);
+        /**
+         * Format the value, appending it to the given buffer
+         * @param os the value
+         * @param formatted where the formatted value is appended
+         */
+        public void patternFormat(OctetString os, StringBuilder formatted) {
+            // Not a copy, it must not be modified
+            byte[] octets = os.getValue();
+            if (octets.length < 8) {
+                throw new BufferUnderflowException();
+            }
+            formatted.append((short) (((octets[0] & 0xff) << 8) | (octets[1] & 0xff)))
+                     .append('-').append(octets[2])
+                     .append('-').append(octets[3])
+                     .append(',').append(octets[4])
+                     .append(':').append(octets[5])
+                     .append(':').append(octets[6])
+                     .append('.').append(octets[7]);
+            if (octets.length > 8) {
+                if (octets[8] < 0) {
+                    throw new IllegalArgumentException("Invalid direction from UTC " + octets[8]);
+                } else if (octets.length < 11) {
+                    throw new BufferUnderflowException();
+                }
+                formatted.append(',').append((char) octets[8])
+                         .append(octets[9])
+                         .append(':').append(octets[10]);
+            }
         }
 
+        /**
+         * Parse a date formatted as 2d-1d-1d,1d:1d:1d.1d[,1a1d:1d]
+         * The year can't be greater than 32767, and the other fields than 127.
+         * @return the value, or null if the text is not a valid date
+         */
         @Override
         public Variable patternParse(String text) {
-            Matcher match = HINTREGEX.matcher(text);
-            if (!match.find()) {
+            // year, month, day, hour, minutes, seconds, deci-seconds, hours and minutes from UTC
+            int[] fields = new int[9];
+            int length = text.length();
+            int position = 0;
+            int count;
+            char direction = 0;
+            for (count = 0; count < fields.length; count++) {
+                if (count == 7) {
+                    // The time zone is optional
+                    if (position == length) {
+                        break;
+                    } else if (position + 1 >= length || text.charAt(position) != ',') {
+                        return null;
+                    }
+                    direction = text.charAt(position + 1);
+                    if (direction != '+' && direction != '-') {
+                        return null;
+                    }
+                    position += 2;
+                } else if (count > 0) {
+                    if (position == length || text.charAt(position) != SEPARATORS.charAt(count)) {
+                        return null;
+                    }
+                    position++;
+                }
+                int start = position;
+                int value = 0;
+                while (position < length && position - start < 5 && text.charAt(position) >= '0' && text.charAt(position) <= '9') {
+                    value = value * 10 + text.charAt(position++) - '0';
+                }
+                // The fields are formatted as signed values, so the larger ones can't be parsed back
+                if (position == start || value > (count == 0 ? Short.MAX_VALUE : Byte.MAX_VALUE)) {
+                    return null;
+                }
+                fields[count] = value;
+            }
+            if (position != length) {
                 return null;
             }
-            ByteBuffer buffer = ByteBuffer.allocate(match.group(8) != null ? 11: 8);
-            buffer.order(ByteOrder.BIG_ENDIAN);
-            buffer.putShort(Short.parseShort(match.group(1))); // year
-            buffer.put(Byte.parseByte(match.group(2)));        // month
-            buffer.put(Byte.parseByte(match.group(3)));        // day
-            buffer.put(Byte.parseByte(match.group(4)));        // hour
-            buffer.put(Byte.parseByte(match.group(5)));        // minutes
-            buffer.put(Byte.parseByte(match.group(6)));        // seconds
-            buffer.put(Byte.parseByte(match.group(7)));        // deci-seconds
-            if (match.group(8) != null) {
-                buffer.put(match.group(9).getBytes()[0]);          // direction from UTC
-                buffer.put(Byte.parseByte(match.group(10)));        // hours from UTC*
-                buffer.put(Byte.parseByte(match.group(11)));       // hours from UTC*
+            byte[] octets = new byte[count == 7 ? 8 : 11];
+            octets[0] = (byte) (fields[0] >> 8);
+            octets[1] = (byte) fields[0];
+            for (int i = 1; i < 7; i++) {
+                octets[i + 1] = (byte) fields[i];
+            }
+            if (count > 7) {
+                octets[8] = (byte) direction;
+                octets[9] = (byte) fields[7];
+                octets[10] = (byte) fields[8];
+            }
+            return OctetString.fromByteArray(octets);
+        }
+
+        /**
+         * Convert the value to a date, without an intermediate string.
+         * @param v the value
+         * @param defaultOffset the offset used when the value has no time zone information
+         * @return the date, or null if the value is not a valid date
+         */
+        public OffsetDateTime toOffsetDateTime(Variable v, ZoneOffset defaultOffset) {
+            byte[] octets = ((OctetString) v).getValue();
+            ZoneOffset offset = offset(octets, defaultOffset);
+            long seconds = localSeconds(octets);
+            if (offset == null || seconds == Long.MIN_VALUE) {
+                return null;
             }
-            return OctetString.fromByteArray(buffer.array());
+            LocalDateTime local = LocalDateTime.ofEpochSecond(seconds, (octets[7] & 0xff) * 100_000_000, ZoneOffset.UTC);
+            return OffsetDateTime.of(local, offset);
+        }
+
+        /**
+         * Convert the value to an instant, without an intermediate string.
+         * @param v the value
+         * @param defaultOffset the offset used when the value has no time zone information
+         * @return the instant, or null if the value is not a valid date
+         */
+        public Instant toInstant(Variable v, ZoneOffset defaultOffset) {
+            byte[] octets = ((OctetString) v).getValue();
+            ZoneOffset offset = offset(octets, defaultOffset);
+            long seconds = localSeconds(octets);
+            if (offset == null || seconds == Long.MIN_VALUE) {
+                return null;
+            }
+            return Instant.ofEpochSecond(seconds - offset.getTotalSeconds(), (octets[7] & 0xff) * 100_000_000L);
+        }
+
+        /**
+         * Convert many values, like a column of a table, to instants.
+         * @param values the values
+         * @param defaultOffset the offset used when a value has no time zone information
+         * @return the instants, null for the values that are not valid dates
+         */
+        public Instant[] toInstants(List<? extends Variable> values, ZoneOffset defaultOffset) {
+            Instant[] instants = new Instant[values.size()];
+            int i = 0;
+            for (Variable v: values) {
+                instants[i++] = toInstant(v, defaultOffset);
+            }
+            return instants;
+        }
+
+        /**
+         * @return the local date and time as seconds from the epoch, or Long.MIN_VALUE if invalid
+         */
+        private static long localSeconds(byte[] octets) {
+            if (octets.length < 8) {
+                return Long.MIN_VALUE;
+            }
+            int year = ((octets[0] & 0xff) << 8) | (octets[1] & 0xff);
+            int month = octets[2] & 0xff;
+            int day = octets[3] & 0xff;
+            int hour = octets[4] & 0xff;
+            int minutes = octets[5] & 0xff;
+            // 60 is a leap second
+            int seconds = octets[6] & 0xff;
+            int deciSeconds = octets[7] & 0xff;
+            if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minutes > 59 || seconds > 60 || deciSeconds > 9) {
+                return Long.MIN_VALUE;
+            }
+            try {
+                return LocalDate.of(year, month, day).toEpochDay() * 86400L + hour * 3600 + minutes * 60 + seconds;
+            } catch (DateTimeException e) {
+                return Long.MIN_VALUE;
+            }
+        }
+
+        /**
+         * @return the offset from UTC, or null if invalid
+         */
+        private static ZoneOffset offset(byte[] octets, ZoneOffset defaultOffset) {
+            if (octets.length < 11) {
+                return octets.length == 8 ? defaultOffset : null;
+            }
+            int hours = octets[9] & 0xff;
+            int minutes = octets[10] & 0xff;
+            if (hours > 14 || minutes > 59 || (octets[8] != '+' && octets[8] != '-')) {
+                return null;
+            }
+            int total = (hours * 3600 + minutes * 60) * (octets[8] == '-' ? -1 : 1);
+            return total >= -18 * 3600 && total <= 18 * 3600 ? ZoneOffset.ofTotalSeconds(total) : null;
         }
 
     }
@@ -153,6 +310,12 @@ public abstract class TextualConvention extends AnnotedSyntax implements SyntaxC
             }
         }
 
+        @Override
+        public NumericKind getNumericKind() {
+            NumericKind kind = super.getNumericKind();
+            return kind != null && fixedfloat > 0 ? kind.withScale(fixedfloat) : kind;
+        }
+
         @Override
         public Variable patternParse(String text) {
             Variable val = getSyntax().getVariable();
@@ -222,12 +385,68 @@ public abstract class TextualConvention extends AnnotedSyntax implements SyntaxC
 
     }
 
+    /**
+     * Format some octets, starting at a position, and return the position after the consumed octets
+     */
+    @FunctionalInterface
+    private interface OctetsEmitter {
+        int emit(byte[] octets, int start, int length, StringBuilder formatted);
+    }
+
+    /**
+     * Parse some text, starting at a position, append the parsed octets and return the position after the consumed text,
+     * or -1 if the text can't be parsed
+     */
+    @FunctionalInterface
+    private interface OctetsReader {
+        int read(String text, int start, OctetsBuilder octets);
+    }
+
+    /**
+     * The parsed octets, in a growable buffer or in a buffer given by the caller
+     */
+    private static final class OctetsBuilder {
+        private ByteBuffer buffer;
+        private final boolean growable;
+
+        private OctetsBuilder(int capacity) {
+            buffer = ByteBuffer.allocate(Math.max(capacity, 8));
+            growable = true;
+        }
+
+        private OctetsBuilder(ByteBuffer buffer) {
+            this.buffer = buffer;
+            growable = false;
+        }
+
+        private int put(byte octet) {
+            if (growable && ! buffer.hasRemaining()) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+            }
+            int position = buffer.position();
+            buffer.put(octet);
+            return position;
+        }
+
+        private void set(int position, byte octet) {
+            buffer.put(position, octet);
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
     private static class DisplayHintClause {
         private final boolean repeat;
         private final int length;
         private final char format;
         private final char separator;
         private final char terminator;
+        private final OctetsEmitter emitter;
+        private final OctetsReader reader;
 
         public DisplayHintClause(boolean repeat, int length, char format, char separator, char terminator) {
             this.repeat = repeat;
@@ -235,6 +454,184 @@ public abstract class TextualConvention extends AnnotedSyntax implements SyntaxC
             this.format = format;
             this.separator = separator;
             this.terminator = terminator;
+            switch (format) {
+            case 'd':
+                emitter = (o, s, l, f) -> {
+                    f.append(number(o, s, l));
+                    return s + l;
+                };
+                reader = (t, s, o) -> number(t, s, length, 10, 0, o);
+                break;
+            case 'x':
+                emitter = (o, s, l, f) -> unsigned(o, s, l, 4, f);
+                // Without a separator, the digits must be bounded
+                reader = (t, s, o) -> number(t, s, length, 16, 2 * length, o);
+                break;
+            case 'o':
+                emitter = (o, s, l, f) -> unsigned(o, s, l, 3, f);
+                reader = (t, s, o) -> number(t, s, length, 8, 0, o);
+                break;
+            case 'a':
+                emitter = (o, s, l, f) -> text(o, s, length, StandardCharsets.US_ASCII, f);
+                reader = (t, s, o) -> text(t, s, length, separator, terminator, false, o);
+                break;
+            case 't':
+                emitter = (o, s, l, f) -> text(o, s, length, StandardCharsets.UTF_8, f);
+                reader = (t, s, o) -> text(t, s, length, separator, terminator, true, o);
+                break;
+            case 'h':
+            default:
+                emitter = (o, s, l, f) -> s;
+                reader = (t, s, o) -> -1;
+            }
+        }
+
+        /**
+         * Parse the text for this clause
+         * @return the position after the consumed text, or -1 if it can't be parsed
+         */
+        private int parse(String text, int start, OctetsBuilder octets) {
+            if (! repeat) {
+                int end = reader.read(text, start, octets);
+                return end < 0 ? -1 : skip(text, end, separator);
+            }
+            int countPosition = octets.put((byte) 0);
+            int count = 0;
+            int end = start;
+            while (end < text.length() && ! isChar(text, end, terminator)) {
+                int next = reader.read(text, end, octets);
+                if (next <= end) {
+                    return -1;
+                }
+                end = skip(text, next, separator);
+                count++;
+            }
+            // The repeat count is read as a signed octet
+            if (count > Byte.MAX_VALUE) {
+                return -1;
+            }
+            octets.set(countPosition, (byte) count);
+            return skip(text, end, terminator);
+        }
+
+        private static boolean isChar(String text, int position, char c) {
+            return c != Character.MIN_VALUE && position < text.length() && text.charAt(position) == c;
+        }
+
+        private static int skip(String text, int position, char c) {
+            return isChar(text, position, c) ? position + 1 : position;
+        }
+
+        /**
+         * Parse a number and write it as a big endian value of the given length. If the length is 0, the smallest of
+         * 1, 2 or 4 octets is used.
+         */
+        private static int number(String text, int start, int length, int radix, int maxDigits, OctetsBuilder octets) {
+            int end = start;
+            boolean negative = radix == 10 && end < text.length() && text.charAt(end) == '-';
+            if (negative) {
+                end++;
+            }
+            int digitsStart = end;
+            long value = 0;
+            while (end < text.length() && (maxDigits == 0 || end - digitsStart < maxDigits)) {
+                int digit = Character.digit(text.charAt(end), radix);
+                if (digit < 0) {
+                    break;
+                }
+                value = value * radix + digit;
+                if (value > 0xffffffffL) {
+                    return -1;
+                }
+                end++;
+            }
+            if (end == digitsStart) {
+                return -1;
+            }
+            value = negative ? -value : value;
+            int size = length;
+            if (size == 0) {
+                size = value < Short.MIN_VALUE || value > 0xffff ? 4 : (value < Byte.MIN_VALUE || value > 0xff ? 2 : 1);
+            } else if (size != 1 && size != 2 && size != 4) {
+                return -1;
+            }
+            if (value > (1L << (8 * size)) - 1 || value < -(1L << (8 * size - 1))) {
+                return -1;
+            }
+            for (int i = size - 1; i >= 0; i--) {
+                octets.put((byte) (value >>> (8 * i)));
+            }
+            return end;
+        }
+
+        /**
+         * Parse a text up to a separator, or up to length octets
+         */
+        private static int text(String text, int start, int length, char separator, char terminator, boolean utf8, OctetsBuilder octets) {
+            int end = start;
+            int size = 0;
+            while (end < text.length() && ! isChar(text, end, separator) && ! isChar(text, end, terminator)) {
+                int c = text.codePointAt(end);
+                int width = c < 0x80 ? 1 : (c < 0x800 ? 2 : (c < 0x10000 ? 3 : 4));
+                if (! utf8 && width > 1) {
+                    return -1;
+                } else if (length != 0 && size + width > length) {
+                    break;
+                }
+                if (width == 1) {
+                    octets.put((byte) c);
+                } else {
+                    octets.put((byte) ((0xf0 << (4 - width)) | (c >>> (6 * (width - 1)))));
+                    for (int i = width - 2; i >= 0; i--) {
+                        octets.put((byte) (0x80 | ((c >>> (6 * i)) & 0x3f)));
+                    }
+                }
+                size += width;
+                end += Character.charCount(c);
+            }
+            return end;
+        }
+
+        /**
+         * Read a signed big endian number of 1, 2 or 4 octets
+         */
+        private static long number(byte[] octets, int start, int length) {
+            if (length != 1 && length != 2 && length != 4) {
+                throw new IllegalArgumentException("Invalid length " + length);
+            }
+            if (start + length > octets.length) {
+                throw new BufferUnderflowException();
+            }
+            long value = octets[start];
+            for (int i = start + 1; i < start + length; i++) {
+                value = (value << 8) | (octets[i] & 0xff);
+            }
+            return value;
+        }
+
+        /**
+         * Append a number as an unsigned value, using a radix that is a power of two
+         */
+        private static int unsigned(byte[] octets, int start, int length, int shift, StringBuilder formatted) {
+            long value = number(octets, start, length) & ((1L << (8 * length)) - 1);
+            int mask = (1 << shift) - 1;
+            int digits = Math.max(1, (64 - Long.numberOfLeadingZeros(value) + shift - 1) / shift);
+            for (int i = (digits - 1) * shift; i >= 0; i -= shift) {
+                formatted.append(DIGITS[(int) (value >>> i) & mask]);
+            }
+            return start + length;
+        }
+
+        private static int text(byte[] octets, int start, int length, Charset charset, StringBuilder formatted) {
+            int size = Math.min(length, octets.length - start);
+            if (charset == StandardCharsets.US_ASCII) {
+                for (int i = start; i < start + size; i++) {
+                    formatted.append(octets[i] >= 0 ? (char) octets[i] : '\uFFFD');
+                }
+            } else {
+                formatted.append(new String(octets, start, size, charset));
+            }
+            return start + size;
         }
 
         @Override
@@ -293,61 +690,82 @@ public abstract class TextualConvention extends AnnotedSyntax implements SyntaxC
 
         @Override
         public String patternFormat(OctetString os) {
+            StringBuilder formatted = new StringBuilder(os.length() * 3);
+            patternFormat(os, formatted);
+            return formatted.toString();
+        }
+
+        /**
+         * Format the value using the display hint, appending it to the given buffer
+         * @param os the value
+         * @param formatted where the formatted value is appended
+         */
+        public void patternFormat(OctetString os, StringBuilder formatted) {
             if (hint == null) {
-                return SmiType.OctetString.format(os);
-            } else {
-                ByteBuffer buffer = ByteBuffer.wrap(os.toByteArray());
-                buffer.order(ByteOrder.BIG_ENDIAN);
-                StringBuilder formatted = new StringBuilder();
-                for (DisplayHintClause clause: clauses) {
-                    if (! buffer.hasRemaining()) {
-                        break;
-                    }
-                    int repeat = clause.repeat ? buffer.get() : 1;
-                    // Some modules forget the length, consume everything in one shot then
-                    int length = clause.length != 0 ? clause.length : buffer.remaining();
-                    for (int i = 0; i < repeat ; i++) {
-                        switch (clause.format) {
-                        case 'd':
-                        case 'x':
-                        case 'o':
-                            formatted.append(resolveNumerical("%" + clause.format, buffer, length));
-                            break;
-                        case 'a':
-                        case 't':
-                            byte[] sub = new byte[Math.min(clause.length, buffer.remaining())];
-                            buffer.get(sub);
-                            formatted.append(new String(sub, clause.format == 'a' ? StandardCharsets.US_ASCII : StandardCharsets.UTF_8));
-                            break;
-                        case 'h':
-                        default:
-                            //unreachable
-                        }
-                        if (clause.separator != Character.MIN_VALUE && buffer.hasRemaining()) {
-                            formatted.append(clause.separator);
-                        }
+                formatted.append(SmiType.OctetString.format(os));
+                return;
+            }
+            // Not a copy, it must not be modified
+            byte[] octets = os.getValue();
+            int position = 0;
+            for (DisplayHintClause clause: clauses) {
+                if (position >= octets.length) {
+                    break;
+                }
+                int repeat = clause.repeat ? octets[position++] : 1;
+                // Some modules forget the length, consume everything in one shot then
+                int length = clause.length != 0 ? clause.length : octets.length - position;
+                for (int i = 0; i < repeat ; i++) {
+                    position = clause.emitter.emit(octets, position, length, formatted);
+                    if (clause.separator != Character.MIN_VALUE && position < octets.length) {
+                        formatted.append(clause.separator);
                     }
                 }
-                return formatted.toString();
             }
         }
 
-        private String resolveNumerical(String numberFormatter, ByteBuffer buffer, int length) {
-            switch (length) {
-            case 1:
-                return String.format(numberFormatter, buffer.get());
-            case 2:
-                return String.format(numberFormatter, buffer.getShort());
-            case 4:
-                return String.format(numberFormatter, buffer.getInt());
-            default:
-                throw new IllegalArgumentException("Invalid length " + length);
+        /**
+         * Parse the text using the display hint. As described in RFC 2579, the last clause is used again until all the
+         * text is consumed.
+         * @return the value, or null if the text doesn't match the hint
+         */
+        @Override
+        public Variable patternParse(String text) {
+            OctetsBuilder octets = new OctetsBuilder(text.length());
+            return parse(text, octets) ? new OctetString(octets.toByteArray()) : null;
+        }
+
+        /**
+         * Parse the text using the display hint, putting the octets in the given buffer, so it can be reused.
+         * @param text the text to parse
+         * @param octets where the octets are put, starting at its position
+         * @return true if the text matches the hint, the buffer position is then after the octets. If false, the position
+         *         is unchanged
+         * @throws BufferOverflowException if the buffer is too small
+         */
+        public boolean patternParse(String text, ByteBuffer octets) {
+            int start = octets.position();
+            if (parse(text, new OctetsBuilder(octets))) {
+                return true;
+            } else {
+                octets.position(start);
+                return false;
             }
         }
 
-        @Override
-        public Variable patternParse(String text) {
-            throw new UnsupportedOperationException("Not implemented yet");
+        private boolean parse(String text, OctetsBuilder octets) {
+            if (clauses.length == 0) {
+                return false;
+            }
+            int position = 0;
+            for (int i = 0; position < text.length(); i++) {
+                int next = clauses[Math.min(i, clauses.length - 1)].parse(text, position, octets);
+                if (next <= position) {
+                    return false;
+                }
+                position = next;
+            }
+            return true;
         }
 
         @Override
@@ -11,6 +11,11 @@ public class Trap {
     public final String name;
     public final List<String> variables;
 
+    public Trap(String name, List<String> variables) {
+        this.name = name;
+        this.variables = Collections.unmodifiableList(variables);
+    }
+
     public Trap(Map<String, Object> details) throws MibException {
         if (! details.containsKey("SYMBOL")) {
             throw new MibException("Unfinished trap");
@@ -1,6 +1,6 @@
 module fr.jrds.snmpcodec {
     exports fr.jrds.snmpcodec;
     exports fr.jrds.snmpcodec.smi;
-    requires org.snmp4j;
+    requires transitive org.snmp4j;
     requires org.antlr.antlr4.runtime;
 }
@@ -0,0 +1,119 @@
+package fr.jrds.snmpcodec;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.snmp4j.smi.IpAddress;
+import org.snmp4j.smi.OID;
+
+public class IpAddressResolverTest {
+
+    private static final InetAddress ADDRESS1;
+    private static final InetAddress ADDRESS2;
+    static {
+        try {
+            ADDRESS1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+            ADDRESS2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @BeforeClass
+    static public void configure() {
+        LogUtils.setLevel(IpAddressResolverTest.class, CachedIpAddressResolver.class.getName());
+    }
+
+    @Test
+    public void cached() {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicLong clock = new AtomicLong();
+        IpAddressResolver stub = a -> "host" + calls.incrementAndGet();
+        IpAddressResolver resolver = new CachedIpAddressResolver(stub, Duration.ofNanos(10), 1, null, clock::get);
+        Assert.assertEquals("host1", resolver.resolve(ADDRESS1));
+        Assert.assertEquals("host1", resolver.resolve(ADDRESS1));
+        clock.set(10);
+        // Expired
+        Assert.assertEquals("host2", resolver.resolve(ADDRESS1));
+        // Evicted by the size bound
+        Assert.assertEquals("host3", resolver.resolve(ADDRESS2));
+        Assert.assertEquals("host4", resolver.resolve(ADDRESS1));
+        Assert.assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void async() {
+        List<Runnable> tasks = new ArrayList<>();
+        AtomicLong clock = new AtomicLong();
+        AtomicInteger calls = new AtomicInteger();
+        IpAddressResolver stub = a -> "host" + calls.incrementAndGet();
+        IpAddressResolver resolver = new CachedIpAddressResolver(stub, Duration.ofNanos(10), 10, tasks::add, clock::get);
+        Assert.assertEquals("10.0.0.1", resolver.resolve(ADDRESS1));
+        // Only one resolution pending
+        Assert.assertEquals("10.0.0.1", resolver.resolve(ADDRESS1));
+        Assert.assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+        Assert.assertEquals("host1", resolver.resolve(ADDRESS1));
+        clock.set(10);
+        // Expired, the old name is used while refreshing
+        Assert.assertEquals("host1", resolver.resolve(ADDRESS1));
+        Assert.assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+        Assert.assertEquals("host2", resolver.resolve(ADDRESS1));
+    }
+
+    @Test
+    public void slowResolver() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        IpAddressResolver slow = a -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "slow.example.com";
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            IpAddressResolver resolver = IpAddressResolver.async(slow, Duration.ofMinutes(1), 10, executor);
+            // The resolver is blocked, the formatting is not
+            Assert.assertEquals("10.0.0.1", resolver.resolve(ADDRESS1));
+            latch.countDown();
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            Assert.assertEquals("slow.example.com", resolver.resolve(ADDRESS1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void storeFormat() throws URISyntaxException, IOException {
+        MibStore store = Tasks.load(false,
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-SMI.txt").toURI()).toString(),
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-TC.txt").toURI()).toString(),
+                Paths.get(getClass().getClassLoader().getResource("allindexes.txt").toURI()).toString())
+                .buildTree();
+        OID prefixedAddress = new OID(store.getFromName("prefixedAddress"));
+        store.setIpAddressResolver(a -> "stub.example.com");
+        Assert.assertEquals("stub.example.com", store.format(prefixedAddress, new IpAddress(ADDRESS1)));
+        store.setIpAddressResolver(IpAddressResolver.NUMERIC);
+        Assert.assertEquals("10.0.0.1", store.format(prefixedAddress, new IpAddress(ADDRESS1)));
+    }
+
+}
@@ -0,0 +1,90 @@
+package fr.jrds.snmpcodec;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+
+import fr.jrds.snmpcodec.smi.Syntax;
+import fr.jrds.snmpcodec.smi.Trap;
+
+public class MibStoreUtils {
+
+    public static Path copyModule(Path dir, String module) throws IOException, URISyntaxException {
+        Path source = Paths.get(MibStoreUtils.class.getClassLoader().getResource(module).toURI());
+        return Files.copy(source, dir.resolve(source.getFileName()));
+    }
+
+    public static Path[] copyModules(Path dir, String... modules) throws IOException, URISyntaxException {
+        Path[] sources = new Path[modules.length];
+        for (int i = 0; i < modules.length; i++) {
+            sources[i] = copyModule(dir, modules[i]);
+        }
+        return sources;
+    }
+
+    /**
+     * Check that two stores built from the same modules are the same, the modules must include SNMPv2-MIB and IF-MIB
+     */
+    public static void compare(MibStore store, MibStore loaded) {
+        Assert.assertEquals(store.modules, loaded.modules);
+        Assert.assertEquals(store.names.keySet(), loaded.names.keySet());
+        Assert.assertEquals(store.syntaxes.keySet(), loaded.syntaxes.keySet());
+        Assert.assertEquals(store.objects.size(), loaded.objects.size());
+        Assert.assertEquals(store.resolvedTraps.size(), loaded.resolvedTraps.size());
+        Assert.assertEquals(Tasks.countOid(store.top), Tasks.countOid(loaded.top));
+        store.names.forEach((k, v) -> {
+            List<OidTreeNode> loadedNodes = loaded.names.get(k);
+            Assert.assertEquals(v.toString(), loadedNodes.toString());
+            for (int i = 0; i < v.size(); i++) {
+                OidTreeNode node = v.get(i);
+                OidTreeNode loadedNode = loadedNodes.get(i);
+                Assert.assertEquals(node.getObjectType() != null, loadedNode.getObjectType() != null);
+                if (node.getObjectType() != null) {
+                    Assert.assertEquals(String.valueOf(node.getObjectType().getSyntax()), String.valueOf(loadedNode.getObjectType().getSyntax()));
+                    Assert.assertEquals(node.getObjectType().isIndexed(), loadedNode.getObjectType().isIndexed());
+                }
+                Assert.assertEquals(String.valueOf(node.getTableEntry()), String.valueOf(loadedNode.getTableEntry()));
+                Assert.assertEquals(isTableEntry(node), isTableEntry(loadedNode));
+                Assert.assertEquals(String.valueOf(node.getIndex()), String.valueOf(loadedNode.getIndex()));
+                Assert.assertEquals(String.valueOf(node.getTraps() != null ? node.getTraps().keySet() : null),
+                                    String.valueOf(loadedNode.getTraps() != null ? loadedNode.getTraps().keySet() : null));
+                Map<Integer, Trap> traps = store.resolvedTraps.get(node);
+                Map<Integer, Trap> loadedTraps = loaded.resolvedTraps.get(loadedNode);
+                Assert.assertEquals(String.valueOf(traps != null ? traps.keySet() : null),
+                                    String.valueOf(loadedTraps != null ? loadedTraps.keySet() : null));
+            }
+        });
+        store.syntaxes.forEach((k, v) -> {
+            Syntax loadedSyntax = loaded.syntaxes.get(k);
+            Assert.assertEquals(String.valueOf(v), String.valueOf(loadedSyntax));
+            Assert.assertEquals(v != null ? v.getClass() : null, loadedSyntax != null ? loadedSyntax.getClass() : null);
+        });
+
+        OID sysDescr = new OID("1.3.6.1.2.1.1.1.0");
+        OctetString descr = new OctetString("a description");
+        Assert.assertEquals(store.format(sysDescr, descr), loaded.format(sysDescr, descr));
+        OID ifType = new OID("1.3.6.1.2.1.2.2.1.3.1");
+        Assert.assertEquals(store.format(ifType, new Integer32(6)), loaded.format(ifType, new Integer32(6)));
+        OID ifPhysAddress = new OID("1.3.6.1.2.1.2.2.1.6.1");
+        OctetString mac = OctetString.fromHexString("00:11:22:33:44:55");
+        Assert.assertEquals(store.format(ifPhysAddress, mac), loaded.format(ifPhysAddress, mac));
+        Assert.assertEquals(store.parseIndexOID(ifType.getValue()), loaded.parseIndexOID(ifType.getValue()));
+        OID sysORIndex = new OID("1.3.6.1.2.1.1.9.1.1.1");
+        Assert.assertEquals(store.parseIndexOID(sysORIndex.getValue()), loaded.parseIndexOID(sysORIndex.getValue()));
+    }
+
+    private static boolean isTableEntry(OidTreeNode node) {
+        OidTreeNode parent = node.getParent();
+        return parent != null && parent.equals(node.getTableEntry());
+    }
+
+}
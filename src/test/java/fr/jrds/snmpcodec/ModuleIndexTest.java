@@ -0,0 +1,142 @@
+package fr.jrds.snmpcodec;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+
+import fr.jrds.snmpcodec.parsing.MibLoader;
+
+public class ModuleIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    static public void configure() throws IOException {
+        LogUtils.setLevel(ModuleIndexTest.class, ModuleIndex.class.getName(), MibLoader.class.getName());
+    }
+
+    private Path[] copyModules() throws IOException, URISyntaxException {
+        return MibStoreUtils.copyModules(folder.getRoot().toPath(),
+                "modules/SNMPv2-SMI.txt", "modules/SNMPv2-TC.txt", "modules/SNMPv2-CONF.txt", "modules/SNMPv2-MIB.txt",
+                "modules/IANAifType-MIB.txt", "modules/IF-MIB.txt", "modules/NOTIFICATION-LOG-MIB.txt",
+                "modules/SNMP-FRAMEWORK-MIB.txt", "custommib.txt", "x509Explicit.txt");
+    }
+
+    private Set<String> names(Path[] files) {
+        return Arrays.stream(files).map(i -> i.getFileName().toString()).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void scan() throws IOException, URISyntaxException {
+        Path[] sources = copyModules();
+        ModuleIndex index = ModuleIndex.scan(sources);
+        Assert.assertEquals(sources.length, index.getScanned());
+        Assert.assertEquals(sources[5], index.getFile("IF-MIB"));
+        Assert.assertEquals(sources[8], index.getFile("CUSTOM"));
+        Assert.assertEquals(List.of("SNMPv2-SMI", "SNMPv2-TC", "SNMPv2-CONF", "SNMPv2-MIB", "IANAifType-MIB"), index.getImports("IF-MIB"));
+        Assert.assertEquals(List.of("SNMPv2-SMI", "RFC-1215"), index.getImports("CUSTOM"));
+        Assert.assertTrue(index.getModules().contains("PKIX1Explicit88"));
+        Assert.assertNull(index.getFile("RFC-1215"));
+
+        Assert.assertEquals("IF-MIB", index.findModule(new int[] {1, 3, 6, 1, 2, 1, 2, 2, 1, 3, 1}));
+        Assert.assertEquals("IF-MIB", index.findModule(new int[] {1, 3, 6, 1, 2, 1, 31}));
+        Assert.assertEquals("SNMPv2-MIB", index.findModule(new int[] {1, 3, 6, 1, 2, 1, 1, 1, 0}));
+        Assert.assertEquals("SNMPv2-SMI", index.findModule(new int[] {1, 3, 6, 1, 4, 1, 9999}));
+        Assert.assertNull(index.findModule(new int[] {3, 1}));
+
+        Set<String> needed = names(index.resolve(Collections.singleton("IF-MIB")));
+        Assert.assertEquals(Set.of("SNMPv2-SMI.txt", "SNMPv2-TC.txt", "SNMPv2-CONF.txt", "SNMPv2-MIB.txt", "IANAifType-MIB.txt", "IF-MIB.txt"), needed);
+        Assert.assertEquals(Set.of("SNMPv2-SMI.txt", "custommib.txt"), names(index.resolve(Collections.singleton("CUSTOM"))));
+    }
+
+    @Test
+    public void assignments() throws IOException {
+        Path modules = folder.getRoot().toPath().resolve("assignments.txt");
+        Files.write(modules, List.of(
+                "FIRST-MIB DEFINITIONS ::= BEGIN",
+                "shared OBJECT IDENTIFIER ::= { iso 3 6 1 4 1 200 }",
+                "END",
+                "SECOND-MIB DEFINITIONS ::= BEGIN",
+                "shared OBJECT IDENTIFIER ::= { iso 3 6 1 4 1 40000 }",
+                "END",
+                "THIRD-MIB DEFINITIONS ::= BEGIN",
+                "IMPORTS shared FROM SECOND-MIB;",
+                "-- Defined before its parent",
+                "leaf OBJECT IDENTIFIER ::= { branch 300 }",
+                "branch OBJECT IDENTIFIER ::= { shared 1 }",
+                "loop1 OBJECT IDENTIFIER ::= { loop2 1 }",
+                "loop2 OBJECT IDENTIFIER ::= { loop1 1 }",
+                "END"));
+        ModuleIndex index = ModuleIndex.scan(new Path[] {modules});
+        Assert.assertEquals("FIRST-MIB", index.findModule(new int[] {1, 3, 6, 1, 4, 1, 200, 1, 300}));
+        Assert.assertEquals("THIRD-MIB", index.findModule(new int[] {1, 3, 6, 1, 4, 1, 40000, 1, 300, 5}));
+        Assert.assertEquals("SECOND-MIB", index.findModule(new int[] {1, 3, 6, 1, 4, 1, 40000, 2}));
+        Assert.assertNull(index.findModule(new int[] {1, 3, 6, 1, 4, 1, 201}));
+    }
+
+    @Test
+    public void saved() throws IOException, URISyntaxException {
+        Path[] sources = copyModules();
+        Path indexFile = folder.getRoot().toPath().resolve("modules.index");
+        Assert.assertEquals(sources.length, ModuleIndex.update(indexFile, sources).getScanned());
+        Assert.assertTrue(Files.isRegularFile(indexFile));
+        ModuleIndex index = ModuleIndex.update(indexFile, sources);
+        Assert.assertEquals(0, index.getScanned());
+        Assert.assertEquals(sources[5], index.getFile("IF-MIB"));
+
+        Files.write(sources[8], new byte[] {'\n'}, StandardOpenOption.APPEND);
+        Assert.assertEquals(1, ModuleIndex.update(indexFile, sources).getScanned());
+    }
+
+    @Test
+    public void load() throws IOException, URISyntaxException {
+        Path[] sources = copyModules();
+        String[] paths = Arrays.stream(sources).map(Path::toString).toArray(String[]::new);
+        MibStore store = MibStore.loadModules(folder.getRoot().toPath().resolve("modules.index"), Collections.singleton("IF-MIB"), paths);
+        Assert.assertEquals(Set.of("SNMPv2-SMI", "SNMPv2-TC", "SNMPv2-CONF", "SNMPv2-MIB", "IANAifType-MIB", "IF-MIB"), store.modules);
+        Assert.assertTrue(store.containsKey("ifType"));
+        Assert.assertFalse(store.containsKey("snmpFrameworkMIB"));
+    }
+
+    @Test
+    public void lazy() throws IOException, URISyntaxException {
+        Path[] sources = copyModules();
+        LazyMibStore lazy = new LazyMibStore(ModuleIndex.scan(sources), Collections.singleton("SNMPv2-MIB"));
+        MibStore first = lazy.getStore();
+        Assert.assertFalse(lazy.getModules().contains("IF-MIB"));
+        Assert.assertEquals("a description", lazy.format(new OID("1.3.6.1.2.1.1.1.0"), new OctetString("a description")));
+        Assert.assertSame(first, lazy.getStore());
+
+        OID ifType = new OID("1.3.6.1.2.1.2.2.1.3.1");
+        // IF-MIB is loaded in the background, the current store is used meanwhile
+        Assert.assertSame(first, lazy.resolve(ifType.getValue()));
+        MibStore loaded = lazy.load("IF-MIB").join();
+        Assert.assertSame(loaded, lazy.getStore());
+        Assert.assertEquals("ethernetCsmacd(6)", lazy.format(ifType, new Integer32(6)));
+        Assert.assertTrue(lazy.getModules().contains("IF-MIB"));
+        Assert.assertSame(loaded, lazy.load("IF-MIB").join());
+        Assert.assertNotSame(first, lazy.getStore());
+        // The previous store is unchanged
+        Assert.assertFalse(first.modules.contains("IF-MIB"));
+        Assert.assertEquals(lazy.getStore().parseIndexOID(ifType.getValue()), lazy.parseIndexOID(ifType.getValue()));
+    }
+
+}
@@ -0,0 +1,111 @@
+package fr.jrds.snmpcodec;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+
+import fr.jrds.snmpcodec.parsing.MibLoader;
+
+public class ReloadableMibStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    static public void configure() throws IOException {
+        LogUtils.setLevel(ReloadableMibStoreTest.class, ReloadableMibStore.class.getName(), MibLoader.class.getName());
+    }
+
+    private Path copy(String module) throws IOException, URISyntaxException {
+        return MibStoreUtils.copyModule(folder.getRoot().toPath(), module);
+    }
+
+    @Test
+    public void reload() throws IOException, URISyntaxException {
+        copy("modules/SNMPv2-SMI.txt");
+        copy("modules/SNMPv2-TC.txt");
+        copy("modules/SNMPv2-CONF.txt");
+        Path snmpv2Mib = copy("modules/SNMPv2-MIB.txt");
+        ReloadableMibStore reloadable = new ReloadableMibStore(folder.getRoot().toString());
+        MibStore first = reloadable.getStore();
+        Assert.assertFalse(first.modules.contains("IF-MIB"));
+
+        copy("modules/IANAifType-MIB.txt");
+        copy("modules/IF-MIB.txt");
+        ReloadableMibStore.Reload reload = reloadable.reload();
+        Assert.assertEquals(Set.of("IANAifType-MIB", "IF-MIB"), reload.added);
+        Assert.assertTrue(reload.removed.isEmpty());
+        Assert.assertTrue(reload.changed.isEmpty());
+        Assert.assertEquals(2, reload.parsed);
+        // The unchanged files were reused
+        MibStore second = reloadable.getStore();
+        Assert.assertNotSame(first, second);
+        Assert.assertFalse(first.modules.contains("IF-MIB"));
+        Assert.assertEquals("ethernetCsmacd(6)", second.format(new OID("1.3.6.1.2.1.2.2.1.3.1"), new Integer32(6)));
+        Assert.assertEquals("a description", second.format(new OID("1.3.6.1.2.1.1.1.0"), new OctetString("a description")));
+        Assert.assertEquals(first.format(new OID("1.3.6.1.2.1.1.1.0"), new OctetString("a description")),
+                            second.format(new OID("1.3.6.1.2.1.1.1.0"), new OctetString("a description")));
+
+        // Same content, not parsed again
+        Files.setLastModifiedTime(snmpv2Mib, FileTime.fromMillis(Files.getLastModifiedTime(snmpv2Mib).toMillis() + 10000));
+        Path ifMib = folder.getRoot().toPath().resolve("IF-MIB.txt");
+        Files.move(ifMib, folder.getRoot().toPath().resolve("IF-MIB.mib"));
+        reload = reloadable.reload();
+        Assert.assertEquals(0, reload.parsed);
+        Assert.assertTrue(reload.added.isEmpty());
+        Assert.assertTrue(reload.removed.isEmpty());
+        Assert.assertTrue(reload.changed.isEmpty());
+        Assert.assertEquals("ethernetCsmacd(6)", reloadable.getStore().format(new OID("1.3.6.1.2.1.2.2.1.3.1"), new Integer32(6)));
+
+        // Nothing changed, the store is kept
+        MibStore third = reloadable.getStore();
+        Files.setLastModifiedTime(snmpv2Mib, FileTime.fromMillis(Files.getLastModifiedTime(snmpv2Mib).toMillis() + 10000));
+        reload = reloadable.reload();
+        Assert.assertEquals(0, reload.parsed);
+        Assert.assertSame(third, reloadable.getStore());
+
+        Files.write(snmpv2Mib, new byte[] {'\n'}, StandardOpenOption.APPEND);
+        Files.delete(folder.getRoot().toPath().resolve("IF-MIB.mib"));
+        reload = reloadable.reload();
+        Assert.assertTrue(reload.added.isEmpty());
+        Assert.assertEquals(Set.of("IF-MIB"), reload.removed);
+        Assert.assertEquals(Set.of("SNMPv2-MIB"), reload.changed);
+        Assert.assertEquals(1, reload.parsed);
+        Assert.assertFalse(reloadable.getStore().modules.contains("IF-MIB"));
+    }
+
+    @Test
+    public void watch() throws IOException, URISyntaxException, InterruptedException {
+        copy("modules/SNMPv2-SMI.txt");
+        try (ReloadableMibStore reloadable = new ReloadableMibStore(folder.getRoot().toString())) {
+            BlockingQueue<ReloadableMibStore.Reload> reloads = new LinkedBlockingQueue<>();
+            reloadable.addListener(reloads::add);
+            reloadable.watch();
+            copy("custommib.txt");
+            // A partially copied file might trigger a first reload
+            ReloadableMibStore.Reload reload;
+            do {
+                reload = reloads.poll(30, TimeUnit.SECONDS);
+                Assert.assertNotNull(reload);
+            } while (! reload.added.contains("CUSTOM"));
+            Assert.assertTrue(reloadable.getStore().modules.contains("CUSTOM"));
+        }
+    }
+
+}
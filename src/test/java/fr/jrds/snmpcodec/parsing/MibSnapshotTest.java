@@ -0,0 +1,131 @@
+package fr.jrds.snmpcodec.parsing;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+
+import fr.jrds.snmpcodec.LogUtils;
+import fr.jrds.snmpcodec.MibSnapshot;
+import fr.jrds.snmpcodec.MibStore;
+import fr.jrds.snmpcodec.MibStoreUtils;
+
+public class MibSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    static public void configure() throws IOException {
+        LogUtils.setLevel(MibSnapshotTest.class, SnapshotFormat.class.getName());
+    }
+
+    private Path[] copyModules() throws IOException, URISyntaxException {
+        return MibStoreUtils.copyModules(folder.getRoot().toPath(),
+                "modules/SNMPv2-SMI.txt", "modules/SNMPv2-TC.txt", "modules/SNMPv2-CONF.txt", "modules/SNMPv2-MIB.txt",
+                "modules/IANAifType-MIB.txt", "modules/IF-MIB.txt", "custommib.txt", "allindexes.txt");
+    }
+
+    private String[] toStrings(Path[] sources) {
+        String[] paths = new String[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            paths[i] = sources[i].toString();
+        }
+        return paths;
+    }
+
+    @Test
+    public void roundTrip() throws IOException, URISyntaxException {
+        Path[] sources = copyModules();
+        Path snapshot = folder.getRoot().toPath().resolve("mibs.snapshot");
+        Assert.assertNull(MibSnapshot.read(snapshot, sources, false));
+        MibStore store = MibStore.load(snapshot, false, toStrings(sources));
+        Assert.assertTrue(Files.isRegularFile(snapshot));
+
+        // The table entries flag is found from the public API
+        long entries = store.names.values().stream()
+                                   .flatMap(List::stream)
+                                   .filter(n -> n != null && n.getParent() != null)
+                                   .peek(n -> Assert.assertEquals(((OidTreeNodeImpl) n).isTableEntry(), SnapshotFormat.isTableEntry(n)))
+                                   .filter(SnapshotFormat::isTableEntry)
+                                   .count();
+        Assert.assertNotEquals(0, entries);
+
+        MibStore loaded = MibSnapshot.read(snapshot, sources, false);
+        Assert.assertNotNull(loaded);
+        MibStoreUtils.compare(store, loaded);
+
+        MibStore compiled = MibSnapshot.read(snapshot, sources, true);
+        OID ifType = new OID("1.3.6.1.2.1.2.2.1.3.1");
+        Assert.assertEquals(store.format(ifType, new Integer32(6)), compiled.format(ifType, new Integer32(6)));
+        Assert.assertEquals(store.parseIndexOID(ifType.getValue()), compiled.parseIndexOID(ifType.getValue()));
+    }
+
+    @Test
+    public void mapped() throws IOException, URISyntaxException {
+        Path[] sources = copyModules();
+        Path snapshot = folder.getRoot().toPath().resolve("mibs.mapped");
+        Assert.assertNull(MibSnapshot.map(snapshot, sources));
+        MibStore store = MibStore.load(false, toStrings(sources));
+        MibStore mapped = MibStore.map(snapshot, toStrings(sources));
+        Assert.assertTrue(Files.isRegularFile(snapshot));
+        MibStoreUtils.compare(store, mapped);
+
+        mapped = MibSnapshot.map(snapshot, sources);
+        Assert.assertNotNull(mapped);
+        MibStoreUtils.compare(store, mapped);
+        OID ifType = new OID("1.3.6.1.2.1.2.2.1.3.1");
+        Assert.assertEquals(store.top.search(ifType.getValue()).toString(), mapped.top.search(ifType.getValue()).toString());
+        Assert.assertArrayEquals(store.getFromName("ifType"), mapped.getFromName("ifType"));
+        Assert.assertSame(mapped.syntaxes.get("DisplayString"), mapped.syntaxes.get("DisplayString"));
+        Assert.assertTrue(mapped.objects.containsKey(mapped.names.get("ifType").get(0)));
+        Assert.assertNull(mapped.names.get("noSuchName"));
+
+        // Modified content
+        Files.write(sources[6], new byte[] {'\n'}, StandardOpenOption.APPEND);
+        Assert.assertNull(MibSnapshot.map(snapshot, sources));
+        Assert.assertNotNull(MibStore.map(snapshot, toStrings(sources)));
+        Assert.assertNotNull(MibSnapshot.map(snapshot, sources));
+    }
+
+    @Test
+    public void invalidation() throws IOException, URISyntaxException {
+        Path[] sources = copyModules();
+        Path snapshot = folder.getRoot().toPath().resolve("mibs.snapshot");
+        MibStore.load(snapshot, false, toStrings(sources));
+        Assert.assertNotNull(MibSnapshot.read(snapshot, sources, false));
+
+        // A touched file is hashed, still valid
+        Path custom = sources[6];
+        Files.setLastModifiedTime(custom, FileTime.fromMillis(Files.getLastModifiedTime(custom).toMillis() + 10000));
+        Assert.assertNotNull(MibSnapshot.read(snapshot, sources, false));
+
+        // Missing file
+        Path[] fewer = new Path[sources.length - 1];
+        System.arraycopy(sources, 0, fewer, 0, fewer.length);
+        Assert.assertNull(MibSnapshot.read(snapshot, fewer, false));
+
+        // Modified content
+        Files.write(custom, new byte[] {'\n'}, StandardOpenOption.APPEND);
+        Assert.assertNull(MibSnapshot.read(snapshot, sources, false));
+        // Parsed and written again
+        MibStore.load(snapshot, false, toStrings(sources));
+        Assert.assertNotNull(MibSnapshot.read(snapshot, sources, false));
+
+        // Corrupted snapshot
+        Files.write(snapshot, new byte[] {1, 2, 3});
+        Assert.assertNull(MibSnapshot.read(snapshot, sources, false));
+    }
+
+}
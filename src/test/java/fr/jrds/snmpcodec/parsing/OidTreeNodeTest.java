@@ -1,6 +1,8 @@
 package fr.jrds.snmpcodec.parsing;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -9,6 +11,10 @@ import org.junit.Test;
 import fr.jrds.snmpcodec.LogUtils;
 import fr.jrds.snmpcodec.MibException;
 import fr.jrds.snmpcodec.OidTreeNode;
+import fr.jrds.snmpcodec.smi.AnnotedSyntax;
+import fr.jrds.snmpcodec.smi.ObjectType;
+import fr.jrds.snmpcodec.smi.SmiType;
+import fr.jrds.snmpcodec.smi.Syntax;
 
 public class OidTreeNodeTest {
 
@@ -34,6 +40,19 @@ public class OidTreeNodeTest {
         Assert.assertEquals("1.1.8802.1.1.1.2=dot1xPaeConformance", top.search(new int[] {1, 1, 8802, 1, 1, 1, 2}).toString());
     }
 
+    @Test
+    public void linkUnnamed() throws MibException {
+        OidTreeNodeImpl top = new OidTreeNodeImpl();
+        top.add(new int[] {1}, "iso", false);
+        top.add(new int[] {1, 1}, "unnamed", false);
+        OidTreeNode node = top.find(new int[] {1, 1});
+        Syntax syntax = new AnnotedSyntax(SmiType.INTEGER, null, null);
+        // The node is not in the names, but has an object type
+        MibLoader.linkNodes(Collections.emptyMap(), Collections.singletonMap("unnamed", syntax),
+                            Collections.singletonMap(node, new ObjectType(syntax, false, null)), Collections.emptyMap());
+        Assert.assertSame(syntax, node.getSyntax());
+    }
+
     @Test
     public void fillWithHole() throws MibException {
         OidTreeNodeImpl top = new OidTreeNodeImpl();
@@ -48,4 +67,48 @@ public class OidTreeNodeTest {
         Assert.assertEquals("1=iso", top.search(new int[] {1,3}).toString());
         Assert.assertEquals("1.1.8802.1.1.1.2=dot1xPaeConformance", top.search(new int[] {1, 1, 8802, 1, 1, 1, 2}).toString());
     }
+
+    @Test
+    public void childsOrder() throws MibException {
+        OidTreeNodeImpl top = new OidTreeNodeImpl();
+        top.add(new int[] {1}, "iso", false);
+        top.add(new int[] {1, 3}, "org", false);
+        // Contiguous arcs, added in reverse order
+        for (int i = 10; i >= 0; i--) {
+            top.add(new int[] {1, 3, 6, i}, "dense" + i, false);
+        }
+        // Sparse arcs
+        top.add(new int[] {1, 3, 7, 9}, "sparse9", false);
+        top.add(new int[] {1, 3, 7, -1}, "sparseMinus1", false);
+        top.add(new int[] {1, 3, 7, 311}, "sparse311", false);
+        top.add(new int[] {1, 3, 7, 2}, "sparse2", false);
+        OidTreeNode dense = top.find(new int[] {1, 3, 6});
+        Assert.assertEquals("dense0,dense1,dense2,dense3,dense4,dense5,dense6,dense7,dense8,dense9,dense10",
+                dense.childs().stream().map(OidTreeNode::getSymbol).collect(Collectors.joining(",")));
+        Assert.assertEquals("1.3.6.7=dense7", top.search(new int[] {1, 3, 6, 7, 1}).toString());
+        Assert.assertEquals("1.3.6=", top.search(new int[] {1, 3, 6, 11}).toString());
+        OidTreeNode sparse = top.find(new int[] {1, 3, 7});
+        Assert.assertEquals("sparseMinus1,sparse2,sparse9,sparse311",
+                sparse.childs().stream().map(OidTreeNode::getSymbol).collect(Collectors.joining(",")));
+        Assert.assertEquals("1.3.7.311=sparse311", top.search(new int[] {1, 3, 7, 311}).toString());
+        Assert.assertEquals("1.3.7=", top.search(new int[] {1, 3, 7, 10}).toString());
+    }
+
+    @Test
+    public void searchWithOffset() throws MibException {
+        OidTreeNodeImpl top = new OidTreeNodeImpl();
+        top.add(new int[] {1}, "iso", false);
+        top.add(new int[] {1, 3}, "org", false);
+        top.add(new int[] {1, 3, 6}, "dod", false);
+        int[] oid = new int[] {9, 9, 1, 3, 6, 1, 9};
+        Assert.assertEquals("1.3.6=dod", top.search(oid, 2, 4).toString());
+        Assert.assertEquals("1.3=org", top.search(oid, 2, 2).toString());
+        Assert.assertNull(top.search(oid, 0, 7));
+        Assert.assertNull(top.search(oid, 2, 0));
+        Assert.assertEquals("1.3.6=dod", top.find(oid, 2, 3).toString());
+        Assert.assertNull(top.find(oid, 2, 4));
+        Assert.assertTrue(top.find(oid, 2, 3).oidEquals(oid, 2, 3));
+        Assert.assertFalse(top.find(oid, 2, 3).oidEquals(oid, 1, 3));
+    }
+
 }
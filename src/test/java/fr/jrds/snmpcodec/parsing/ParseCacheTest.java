@@ -0,0 +1,132 @@
+package fr.jrds.snmpcodec.parsing;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+
+import fr.jrds.snmpcodec.LogUtils;
+import fr.jrds.snmpcodec.MibStore;
+import fr.jrds.snmpcodec.MibStoreUtils;
+import fr.jrds.snmpcodec.smi.Symbol;
+
+public class ParseCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    static public void configure() throws IOException {
+        LogUtils.setLevel(ParseCacheTest.class, ParseCache.class.getName(), MibLoader.class.getName());
+    }
+
+    private Path[] copyModules() throws IOException, URISyntaxException {
+        return MibStoreUtils.copyModules(folder.getRoot().toPath(),
+                "modules/SNMPv2-SMI.txt", "modules/SNMPv2-TC.txt", "modules/SNMPv2-CONF.txt", "modules/SNMPv2-MIB.txt",
+                "modules/IANAifType-MIB.txt", "modules/IF-MIB.txt", "modules/SNMP-FRAMEWORK-MIB.txt",
+                "modules/NOTIFICATION-LOG-MIB.txt", "custommib.txt", "allindexes.txt");
+    }
+
+    private MibStore load(ParseCache cache, Path[] sources) {
+        MibLoader loader = new MibLoader();
+        loader.setCache(cache);
+        loader.load(sources);
+        return loader.buildTree();
+    }
+
+    @Test
+    public void cached() throws IOException, URISyntaxException {
+        Path[] sources = copyModules();
+        Path cacheDir = folder.getRoot().toPath().resolve("cache");
+
+        ParseCache cache = new ParseCache(cacheDir);
+        MibStore parsed = load(cache, sources);
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(sources.length, cache.getMisses());
+
+        cache = new ParseCache(cacheDir);
+        MibStore cached = load(cache, sources);
+        Assert.assertEquals(sources.length, cache.getHits());
+        Assert.assertEquals(0, cache.getMisses());
+        MibStoreUtils.compare(parsed, cached);
+        Assert.assertEquals("ethernetCsmacd(6)", cached.format(new OID("1.3.6.1.2.1.2.2.1.3.1"), new Integer32(6)));
+        Assert.assertEquals("a description", cached.format(new OID("1.3.6.1.2.1.1.1.0"), new OctetString("a description")));
+
+        // A modified file is parsed again
+        Files.write(sources[8], new byte[] {'\n'}, StandardOpenOption.APPEND);
+        cache = new ParseCache(cacheDir);
+        load(cache, sources);
+        Assert.assertEquals(sources.length - 1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void replayed() throws IOException, URISyntaxException {
+        Path[] sources = copyModules();
+        ParseCache cache = new ParseCache(folder.getRoot().toPath().resolve("cache"));
+        MibLoader loader = new MibLoader();
+        for (Path source: sources) {
+            cache.parse(source, StandardCharsets.US_ASCII, true);
+        }
+        // A fragment read from the cache can be loaded many times
+        MibLoader[] loaders = new MibLoader[] {new MibLoader(), new MibLoader()};
+        for (Path source: sources) {
+            ModuleFragment fragment = cache.parse(source, StandardCharsets.US_ASCII, true);
+            for (MibLoader l: loaders) {
+                l.load(fragment);
+            }
+        }
+        loader.load(sources);
+        MibStore parsed = loader.buildTree();
+        MibStoreUtils.compare(parsed, loaders[0].buildTree());
+        MibStoreUtils.compare(parsed, loaders[1].buildTree());
+    }
+
+    @Test
+    public void largeStrings() throws IOException, URISyntaxException {
+        Path smi = Files.copy(Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-SMI.txt").toURI()),
+                              folder.getRoot().toPath().resolve("SNMPv2-SMI.txt"));
+        // More than the 64 KB of writeUTF
+        String description = "a".repeat(70000);
+        Path large = folder.getRoot().toPath().resolve("large.txt");
+        Files.write(large, List.of(
+                "LARGE-MIB DEFINITIONS ::= BEGIN",
+                "IMPORTS OBJECT-TYPE, Integer32, enterprises FROM SNMPv2-SMI;",
+                "largeObject OBJECT-TYPE SYNTAX Integer32 MAX-ACCESS read-only STATUS current",
+                "    DESCRIPTION \"" + description + "\" ::= { enterprises 99996 }",
+                "END"));
+        ParseCache cache = new ParseCache(folder.getRoot().toPath().resolve("cache"));
+        Assert.assertNotNull(cache.parse(large, StandardCharsets.US_ASCII, true).getEntry());
+        ModuleFragment fragment = cache.parse(large, StandardCharsets.US_ASCII, true);
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(description, objectAttributes(fragment, "largeObject").get("DESCRIPTION").toString());
+        MibLoader loader = new MibLoader();
+        loader.load(smi);
+        loader.load(fragment);
+        Assert.assertTrue(loader.buildTree().containsKey("largeObject"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> objectAttributes(ModuleFragment fragment, String name) {
+        return fragment.getSteps().stream()
+                .filter(i -> i.kind == ModuleFragment.Step.OBJECTTYPE && name.equals(((Symbol) i.args[0]).name))
+                .map(i -> (Map<String, Object>) i.args[1])
+                .findFirst()
+                .orElseThrow();
+    }
+
+}
@@ -1,18 +1,31 @@
 package fr.jrds.snmpcodec.parsing;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.antlr.v4.runtime.CharStreams;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
 
 import fr.jrds.snmpcodec.LogUtils;
 import fr.jrds.snmpcodec.MibStore;
 import fr.jrds.snmpcodec.OidTreeNode;
+import fr.jrds.snmpcodec.ParsedOid;
 import fr.jrds.snmpcodec.Tasks;
+import fr.jrds.snmpcodec.smi.Symbol;
 
 public class ParserTest {
 
@@ -44,6 +57,202 @@ public class ParserTest {
         Assert.assertEquals(92, countOid);
     }
 
+    @Test
+    public void checkCompiled() throws URISyntaxException, IOException {
+        MibLoader loader = Tasks.load(false,
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-CONF.txt").toURI()).toString(),
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-MIB.txt").toURI()).toString(),
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-SMI.txt").toURI()).toString(),
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-TC.txt").toURI()).toString(),
+                Paths.get(getClass().getClassLoader().getResource("custommib.txt").toURI()).toString());
+        MibStore store = loader.buildTree();
+        MibStore compiled = CompiledOidTree.compile(store);
+        Assert.assertEquals(store.modules, compiled.modules);
+        Assert.assertEquals(store.names.size(), compiled.names.size());
+        Assert.assertEquals(store.objects.size(), compiled.objects.size());
+        Assert.assertEquals(store.resolvedTraps.size(), compiled.resolvedTraps.size());
+        Assert.assertEquals(Tasks.countOid(store.top), Tasks.countOid(compiled.top));
+        store.names.forEach((k, v) -> {
+            List<OidTreeNode> compiledNodes = compiled.names.get(k);
+            Assert.assertEquals(v.size(), compiledNodes.size());
+            for (int i = 0; i < v.size(); i++) {
+                OidTreeNode node = v.get(i);
+                OidTreeNode compiledNode = compiledNodes.get(i);
+                Assert.assertEquals(node.toString(), compiledNode.toString());
+                Assert.assertSame(compiledNode, compiled.top.find(node.getElements()));
+                Assert.assertEquals(store.objects.containsKey(node), compiled.objects.containsKey(compiledNode));
+                Assert.assertSame(store.objects.get(node), node.getObjectType());
+                Assert.assertSame(compiled.objects.get(compiledNode), compiledNode.getObjectType());
+                Assert.assertSame(store.resolvedTraps.get(node), node.getTraps());
+                Assert.assertSame(node.getTraps(), compiledNode.getTraps());
+                Assert.assertSame(node.getSyntax(), compiledNode.getSyntax());
+                Assert.assertEquals(String.valueOf(node.getTableEntry()), String.valueOf(compiledNode.getTableEntry()));
+                Assert.assertEquals(String.valueOf(node.getIndex()), String.valueOf(compiledNode.getIndex()));
+            }
+        });
+        OID sysORIndex = new OID("1.3.6.1.2.1.1.9.1.1.1");
+        OidTreeNode sysORIndexNode = store.top.search(sysORIndex.getValue());
+        Assert.assertEquals("sysORTable", sysORIndexNode.getTableEntry().getSymbol());
+        Assert.assertSame(sysORIndexNode.getParent().getObjectType().getIndex(), sysORIndexNode.getIndex());
+        Assert.assertEquals(store.format(sysORIndex, new Integer32(1)), compiled.format(sysORIndex, new Integer32(1)));
+        Assert.assertEquals(store.parseIndexOID(sysORIndex.getValue()), compiled.parseIndexOID(sysORIndex.getValue()));
+        int[] padded = new int[sysORIndex.size() + 2];
+        System.arraycopy(sysORIndex.getValue(), 0, padded, 1, sysORIndex.size());
+        Assert.assertEquals(store.parseIndexOID(sysORIndex.getValue()), compiled.parseIndexOID(padded, 1, sysORIndex.size()));
+    }
+
+    @Test
+    public void checkParallel() throws URISyntaxException {
+        Path[] modules = new Path[] {
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-CONF.txt").toURI()),
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-MIB.txt").toURI()),
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-SMI.txt").toURI()),
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-TC.txt").toURI()),
+                Paths.get(getClass().getClassLoader().getResource("custommib.txt").toURI()),
+                Paths.get(getClass().getClassLoader().getResource("allindexes.txt").toURI()),
+        };
+        MibLoader sequential = new MibLoader();
+        sequential.load(modules);
+        MibStore store = sequential.buildTree();
+        Assert.assertEquals(modules.length, sequential.getParsedFiles());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            MibLoader parallel = new MibLoader(executor);
+            parallel.load(modules);
+            MibStore parallelStore = parallel.buildTree();
+            Assert.assertEquals(modules.length, parallel.getParsedFiles());
+            Assert.assertEquals(sequential.getFallbackFiles(), parallel.getFallbackFiles());
+            Assert.assertEquals(store.modules, parallelStore.modules);
+            Assert.assertEquals(store.names.keySet(), parallelStore.names.keySet());
+            Assert.assertEquals(store.objects.size(), parallelStore.objects.size());
+            Assert.assertEquals(store.resolvedTraps.size(), parallelStore.resolvedTraps.size());
+            Assert.assertEquals(Tasks.countOid(store.top), Tasks.countOid(parallelStore.top));
+            store.names.forEach((k, v) -> Assert.assertEquals(v.toString(), parallelStore.names.get(k).toString()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFallback() throws URISyntaxException, IOException {
+        String broken = "BROKEN-MIB DEFINITIONS ::= BEGIN\n"
+                + "IMPORTS enterprises FROM SNMPv2-SMI;\n"
+                + "brokenMib OBJECT IDENTIFIER ::= { enterprises 99998 }\n"
+                + "brokenA OBJECT IDENTIFIER ::= { brokenMib 1 }\n"
+                + "brokenB OBJECT IDENTIFIER ::= { brokenMib 2 } }\n"
+                + "END\n";
+        MibLoader loader = new MibLoader();
+        loader.load(Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-SMI.txt").toURI()));
+        Assert.assertEquals(0, loader.getFallbackFiles());
+        loader.load(new StringReader(broken));
+        Assert.assertEquals(2, loader.getParsedFiles());
+        Assert.assertEquals(1, loader.getFallbackFiles());
+        MibStore store = loader.buildTree();
+        Assert.assertTrue(store.modules.contains("BROKEN-MIB"));
+        Assert.assertNotNull(store.top.find(new int[] { 1, 3, 6, 1, 4, 1, 99998, 1 }));
+    }
+
+    @Test
+    public void testTypesOrder() throws URISyntaxException, IOException {
+        String module = "CHAIN-MIB DEFINITIONS ::= BEGIN\n"
+                + "IMPORTS enterprises, Integer32 FROM SNMPv2-SMI TEXTUAL-CONVENTION FROM SNMPv2-TC;\n"
+                + "ChainC ::= TEXTUAL-CONVENTION STATUS current DESCRIPTION \"c\" SYNTAX ChainB\n"
+                + "ChainB ::= TEXTUAL-CONVENTION STATUS current DESCRIPTION \"b\" SYNTAX ChainA\n"
+                + "ChainA ::= TEXTUAL-CONVENTION DISPLAY-HINT \"d-2\" STATUS current DESCRIPTION \"a\" SYNTAX Integer32\n"
+                + "CycleA ::= CycleB\n"
+                + "CycleB ::= CycleA\n"
+                + "Dangling ::= TEXTUAL-CONVENTION STATUS current DESCRIPTION \"d\" SYNTAX Missing\n"
+                + "chainMib OBJECT IDENTIFIER ::= { enterprises 99997 }\n"
+                + "chainObject OBJECT-TYPE SYNTAX ChainC MAX-ACCESS read-only STATUS current DESCRIPTION \"o\" ::= { chainMib 1 }\n"
+                + "END\n";
+        MibLoader loader = new MibLoader();
+        loader.load(Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-SMI.txt").toURI()),
+                    Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-TC.txt").toURI()));
+        loader.load(new StringReader(module));
+        MibStore store = loader.buildTree();
+        Assert.assertNotNull(store.syntaxes.get("ChainA"));
+        Assert.assertNotNull(store.syntaxes.get("ChainB"));
+        Assert.assertNotNull(store.syntaxes.get("ChainC"));
+        Assert.assertEquals("1.23", store.format(new OID("1.3.6.1.4.1.99997.1.0"), new Integer32(123)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> objectAttributes(ModuleFragment fragment, String name) {
+        return fragment.getSteps().stream()
+                .filter(i -> i.kind == ModuleFragment.Step.OBJECTTYPE && name.equals(((Symbol) i.args[0]).name))
+                .map(i -> (Map<String, Object>) i.args[1])
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    public void testSkipDescriptions() throws URISyntaxException, IOException {
+        Path[] modules = new Path[] {
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-SMI.txt").toURI()),
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-TC.txt").toURI()),
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-CONF.txt").toURI()),
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-MIB.txt").toURI()),
+        };
+        ModuleFragment full = ModuleFragment.parse(CharStreams.fromPath(modules[3]), true);
+        ModuleFragment light = ModuleFragment.parse(CharStreams.fromPath(modules[3]), false);
+        Assert.assertTrue(objectAttributes(full, "sysDescr").containsKey("DESCRIPTION"));
+        Assert.assertFalse(objectAttributes(light, "sysDescr").containsKey("DESCRIPTION"));
+        Assert.assertEquals(objectAttributes(full, "sysDescr").get("SYNTAX").toString(), objectAttributes(light, "sysDescr").get("SYNTAX").toString());
+
+        MibLoader fullLoader = new MibLoader();
+        fullLoader.load(modules);
+        MibStore store = fullLoader.buildTree();
+        MibLoader lightLoader = new MibLoader();
+        lightLoader.setKeepDescriptions(false);
+        lightLoader.load(modules);
+        MibStore lightStore = lightLoader.buildTree();
+        Assert.assertEquals(store.modules, lightStore.modules);
+        Assert.assertEquals(store.names.keySet(), lightStore.names.keySet());
+        Assert.assertEquals(store.syntaxes.keySet(), lightStore.syntaxes.keySet());
+        Assert.assertEquals(store.objects.size(), lightStore.objects.size());
+        Assert.assertEquals(Tasks.countOid(store.top), Tasks.countOid(lightStore.top));
+        OID sysDescr = new OID("1.3.6.1.2.1.1.1.0");
+        Assert.assertEquals(store.format(sysDescr, new OctetString("a description")), lightStore.format(sysDescr, new OctetString("a description")));
+    }
+
+    @Test
+    public void testReplay() throws URISyntaxException, IOException {
+        ModuleFragment[] fragments = new ModuleFragment[4];
+        String[] modules = new String[] {"modules/SNMPv2-SMI.txt", "modules/SNMPv2-TC.txt", "modules/SNMPv2-CONF.txt", "modules/SNMPv2-MIB.txt"};
+        for (int i = 0; i < modules.length; i++) {
+            fragments[i] = ModuleFragment.parse(CharStreams.fromPath(Paths.get(getClass().getClassLoader().getResource(modules[i]).toURI())), true);
+            Assert.assertNotNull(fragments[i].getEntry());
+        }
+        OID sysDescr = new OID("1.3.6.1.2.1.1.1.0");
+        // Only the encoded steps are kept after a replay, and decoded again for the next one
+        for (int i = 0; i < 2; i++) {
+            MibLoader loader = new MibLoader();
+            for (ModuleFragment fragment: fragments) {
+                loader.load(fragment);
+                Assert.assertTrue(fragment.getSteps().isEmpty());
+            }
+            MibStore store = loader.buildTree();
+            Assert.assertTrue(store.modules.contains("SNMPv2-MIB"));
+            Assert.assertEquals("a description", store.format(sysDescr, new OctetString("a description")));
+        }
+    }
+
+    @Test
+    public void testWalkErrors() {
+        String module = "BROKEN-MIB DEFINITIONS ::= BEGIN\n"
+                + "IMPORTS OBJECT-TYPE, Integer32 FROM SNMPv2-SMI;\n"
+                + "brokenObject OBJECT-TYPE SYNTAX Integer32 MAX-ACCESS read-only STATUS current ::= 5\n"
+                + "END\n";
+        ModuleFragment fragment = ModuleFragment.parse(CharStreams.fromString(module, "broken"), true);
+        // Syntactically valid, so only the SLL parsing is done, but the error from the walk is still kept
+        Assert.assertFalse(fragment.isFallback());
+        Assert.assertEquals(List.of("Inconsistent parsing stack"),
+                            fragment.getSteps().stream()
+                                    .filter(i -> i.kind == ModuleFragment.Step.ERROR)
+                                    .map(i -> i.args[1])
+                                    .collect(Collectors.toList()));
+    }
+
     @Test
     public void testComment() {
         Path module = Paths.get(getClass().getClassLoader().getResource("allcomments.txt").getFile());
@@ -69,4 +278,60 @@ public class ParserTest {
         Assert.assertEquals(6, store.syntaxes.size());
     }
 
+    @Test
+    public void testIndexes() throws URISyntaxException, IOException {
+        MibStore store = Tasks.load(false,
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-SMI.txt").toURI()).toString(),
+                Paths.get(getClass().getClassLoader().getResource("modules/SNMPv2-TC.txt").toURI()).toString(),
+                Paths.get(getClass().getClassLoader().getResource("allindexes.txt").toURI()).toString())
+                              .buildTree();
+        Map<String, Object> implied = store.parseIndexOID(new OID("1.3.6.1.4.1.99999.1.1.3.2.97.98").getValue());
+        Assert.assertEquals("impliedValue", implied.get("impliedTable"));
+        Assert.assertEquals("down", implied.get("impliedStatus"));
+        Assert.assertEquals("ab", implied.get("impliedName"));
+        Map<String, Object> prefixed = store.parseIndexOID(new OID("1.3.6.1.4.1.99999.2.1.4.10.0.0.1.2.97.98.120.121").getValue());
+        Assert.assertEquals("prefixedValue", prefixed.get("prefixedTable"));
+        Assert.assertEquals(InetAddress.getByAddress(new byte[] {10, 0, 0, 1}), prefixed.get("prefixedAddress"));
+        Assert.assertEquals("ab", prefixed.get("prefixedName"));
+        Assert.assertEquals("xy", prefixed.get("prefixedFixed"));
+        ParsedOid parsed = new ParsedOid();
+        int[] cell = new OID("1.3.6.1.4.1.99999.1.1.3.2.97.98").getValue();
+        Assert.assertTrue(store.parseIndexOID(cell, 0, cell.length, parsed));
+        Assert.assertEquals(ParsedOid.Kind.CELL, parsed.getKind());
+        Assert.assertEquals("impliedValue", parsed.getNode().getSymbol());
+        Assert.assertEquals("impliedTable", parsed.getTable().getSymbol());
+        Assert.assertEquals(2, parsed.getIndexCount());
+        Assert.assertEquals("impliedName", parsed.getIndexColumn(1).getSymbol());
+        Assert.assertEquals("ab", parsed.getIndexValue(1));
+        Assert.assertEquals(cell.length - 2, parsed.getIndexOffset(1));
+        Assert.assertEquals(2, parsed.getIndexLength(1));
+        int[] partial = new OID("1.3.6.1.4.1.99999.3.4").getValue();
+        Assert.assertTrue(store.parseIndexOID(partial, 0, partial.length, parsed));
+        Assert.assertEquals(ParsedOid.Kind.PARTIAL, parsed.getKind());
+        Assert.assertEquals(0, parsed.getIndexCount());
+        Assert.assertEquals("indexesMib", parsed.getNode().getSymbol());
+        Assert.assertEquals(2, parsed.getSuffixLength());
+        Assert.assertFalse(store.parseIndexOID(new int[] {5}, 0, 1, parsed));
+        Assert.assertEquals(ParsedOid.Kind.UNKNOWN, parsed.getKind());
+        try {
+            store.parseIndexOID(new OID("1.3.6.1.4.1.99999.2.1.4.10.0.0.1.2.97.98.120.121.1").getValue());
+            Assert.fail("Trailing elements not detected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Trailing elements in index: 1", e.getMessage());
+        }
+        // Truncated columns are not padded
+        try {
+            store.parseIndexOID(new OID("1.3.6.1.4.1.99999.2.1.4.1.2.3").getValue());
+            Assert.fail("Truncated address not detected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Trailing elements in index: 1.2.3", e.getMessage());
+        }
+        try {
+            store.parseIndexOID(new OID("1.3.6.1.4.1.99999.2.1.4.10.0.0.1.3.97.98").getValue());
+            Assert.fail("Truncated string not detected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Trailing elements in index: 3.97.98", e.getMessage());
+        }
+    }
+
 }
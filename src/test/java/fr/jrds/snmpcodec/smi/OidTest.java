@@ -0,0 +1,70 @@
+package fr.jrds.snmpcodec.smi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.jrds.snmpcodec.MibException;
+import fr.jrds.snmpcodec.parsing.OidPath.OidComponent;
+
+public class OidTest {
+
+    private Oid add(Map<Symbol, Oid> oids, String name, Symbol root, int... numbers) throws MibException {
+        List<OidComponent> components = new ArrayList<>();
+        for (int i: numbers) {
+            components.add(new OidComponent(null, i));
+        }
+        Symbol s = new Symbol("TEST", name);
+        Oid oid = new Oid(root, components, name);
+        oids.put(s, oid);
+        return oid;
+    }
+
+    @Test
+    public void testPath() throws MibException {
+        Map<Symbol, Oid> oids = new HashMap<>();
+        add(oids, "iso", null, 1);
+        Oid org = add(oids, "org", new Symbol("TEST", "iso"), 3);
+        Oid internet = add(oids, "internet", new Symbol("TEST", "org"), 6, 1);
+        Assert.assertArrayEquals(new int[] {1, 3, 6, 1}, internet.getPath(oids));
+        Assert.assertArrayEquals(new int[] {1, 3}, org.getPath(oids));
+        Assert.assertEquals("1.3.6.1", internet.toString());
+        Assert.assertEquals(new Oid(new int[] {1, 3, 6, 1}, "internet"), new Oid(internet.getPath(oids).clone(), "internet"));
+        Assert.assertEquals(new Oid(new int[] {1, 3, 6, 1}, "internet").hashCode(), new Oid(new int[] {1, 3, 6, 1}, "internet").hashCode());
+    }
+
+    @Test
+    public void testMissingRoot() throws MibException {
+        Map<Symbol, Oid> oids = new HashMap<>();
+        Oid orphan = add(oids, "orphan", new Symbol("TEST", "missing"), 2);
+        Oid child = add(oids, "child", new Symbol("TEST", "orphan"), 3);
+        try {
+            child.getPath(oids);
+            Assert.fail("Missing root not detected");
+        } catch (MibException e) {
+            Assert.assertEquals("missing root symbol from TEST.missing.2", e.getMessage());
+        }
+        // Now placed under the broken modules root
+        Assert.assertArrayEquals(new int[] {-1, 2}, orphan.getPath(oids));
+        Assert.assertArrayEquals(new int[] {-1, 2, 3}, child.getPath(oids));
+    }
+
+    @Test
+    public void testCycle() throws MibException {
+        Map<Symbol, Oid> oids = new HashMap<>();
+        add(oids, "a", new Symbol("TEST", "b"), 1);
+        Oid b = add(oids, "b", new Symbol("TEST", "a"), 2);
+        try {
+            b.getPath(oids);
+            Assert.fail("Cycle not detected");
+        } catch (MibException e) {
+            Assert.assertTrue(e.getMessage().startsWith("cyclic definition"));
+        }
+        Assert.assertEquals(-1, b.getPath(oids)[0]);
+    }
+
+}
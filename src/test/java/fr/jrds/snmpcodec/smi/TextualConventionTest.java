@@ -1,14 +1,23 @@
 package fr.jrds.snmpcodec.smi;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.Gauge32;
 import org.snmp4j.smi.Integer32;
 import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.TimeTicks;
 import org.snmp4j.smi.UnsignedInteger32;
 import org.snmp4j.smi.Variable;
 
@@ -54,6 +63,71 @@ public class TextualConventionTest {
         testHint(new Symbol("CountryCode"), "2a", new OctetString("123".getBytes(StandardCharsets.UTF_8)), "12");
     }
 
+    @Test
+    public void testOctets() throws MibException {
+        testHint(new Symbol("MacAddress"), "1x:1x:1x:1x:1x:1x", new OctetString(new byte[]{(byte)0x00,(byte)0x1b,(byte)0xc5,(byte)0x12,(byte)0xfe,(byte)0x01}), "0:1b:c5:12:fe:1");
+        testHint(new Symbol("Signed"), "1d.2d.4d", new OctetString(new byte[]{(byte)0xff,(byte)0xff,(byte)0xfe,(byte)0x80,(byte)0x00,(byte)0x00,(byte)0x00}), "-1.-2.-2147483648");
+        testHint(new Symbol("Unsigned"), "1o.2x.4x", new OctetString(new byte[]{(byte)0xff,(byte)0xff,(byte)0xfe,(byte)0x80,(byte)0x00,(byte)0x00,(byte)0x00}), "377.fffe.80000000");
+        testHint(new Symbol("Repeated"), "*1d.", new OctetString(new byte[]{(byte)3,(byte)1,(byte)2,(byte)3}), "1.2.3");
+        testHint(new Symbol("NotAscii"), "4a", new OctetString(new byte[]{(byte)'a',(byte)0xe9,(byte)'b'}), "a\uFFFDb");
+        PatternDisplayHint tc = new PatternDisplayHint(SmiType.OctetString, "1x:1x", null);
+        StringBuilder formatted = new StringBuilder("mac=");
+        tc.patternFormat(new OctetString(new byte[]{(byte)0xaa,(byte)0x0b}), formatted);
+        Assert.assertEquals("mac=aa:b", formatted.toString());
+        try {
+            new PatternDisplayHint(SmiType.OctetString, "3x", null).format(new OctetString(new byte[]{1, 2, 3}));
+            Assert.fail("Invalid length accepted");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Invalid length 3", e.getMessage());
+        }
+    }
+
+    private void testParse(String displayHint, String text, byte[] expected) throws MibException {
+        PatternDisplayHint tc = new PatternDisplayHint(SmiType.OctetString, displayHint, null);
+        Assert.assertEquals(expected == null ? null : new OctetString(expected), tc.parse(text));
+    }
+
+    @Test
+    public void testParsePattern() throws MibException {
+        testParse("1x:", "00:1a:2B:3c:4d:5e", new byte[]{(byte)0x00,(byte)0x1a,(byte)0x2b,(byte)0x3c,(byte)0x4d,(byte)0x5e});
+        testParse("1x", "001a2b", new byte[]{(byte)0x00,(byte)0x1a,(byte)0x2b});
+        testParse("1d.1d.1d.1d", "192.168.1.1", new byte[]{(byte)192,(byte)168,(byte)1,(byte)1});
+        testParse("1d.1d.1d.1d:2d:", "1.2.3.4:1286", new byte[]{(byte)1,(byte)2,(byte)3,(byte)4,(byte)5,(byte)6});
+        testParse("1d.1d.1d.1d:2d@*1t", "1.2.3.4:1286@AB", new byte[]{(byte)1,(byte)2,(byte)3,(byte)4,(byte)5,(byte)6,(byte)2,(byte)'A', (byte)'B'});
+        testParse("*1d./1d", "1.2.3/4", new byte[]{(byte)3,(byte)1,(byte)2,(byte)3,(byte)4});
+        testParse("2o", "177777", new byte[]{(byte)255,(byte)255});
+        testParse("1d", "-1", new byte[]{(byte)255});
+        testParse("127t", "éœ€", "éœ€".getBytes(StandardCharsets.UTF_8));
+        testParse("2a", "12", new byte[]{(byte)'1',(byte)'2'});
+        testParse("255a", "", new byte[]{});
+        // Not matching the hint
+        testParse("1d.1d.1d.1d", "192.168.1.256", null);
+        testParse("1d.1d.1d.1d", "192.168..1", null);
+        testParse("1x:", "00:zz", null);
+        testParse("2a", "é", null);
+        // Parsed in a reused buffer
+        PatternDisplayHint mac = new PatternDisplayHint(SmiType.OctetString, "1x:", null);
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        Assert.assertTrue(mac.patternParse("00:1a", buffer));
+        Assert.assertEquals(2, buffer.position());
+        Assert.assertFalse(mac.patternParse("2b:zz", buffer));
+        Assert.assertEquals(2, buffer.position());
+        Assert.assertTrue(mac.patternParse("2b", buffer));
+        Assert.assertArrayEquals(new byte[]{(byte)0x00,(byte)0x1a,(byte)0x2b}, Arrays.copyOf(buffer.array(), buffer.position()));
+        try {
+            mac.patternParse("01:02:03:04:05:06", buffer);
+            Assert.fail("Buffer overflow not detected");
+        } catch (BufferOverflowException e) {
+            // Expected
+        }
+        // Formatted values are parsed back
+        byte[] value = new byte[]{(byte)0x07,(byte)0xe6,(byte)0x09,(byte)0x16,(byte)0x11,(byte)0x30,(byte)0x2b,(byte)0x00, (byte)0x2b, (byte)0x02, (byte)0x00};
+        for (String hint: new String[] {"2d-1d-1d,1d:1d:1d.1d,1a1d:1d", "1x:1x:1x:1x:1x:1x:1x:1x:1x:1x:1x", "2o.1d.1d.1d.1d.1d.1d.1d.2x"}) {
+            PatternDisplayHint tc = new PatternDisplayHint(SmiType.OctetString, hint, null);
+            Assert.assertEquals(new OctetString(value), tc.parse(tc.format(new OctetString(value))));
+        }
+    }
+
     @Test
     public void test3() throws MibException {
         Map<Number, String> names = new HashMap<>();
@@ -74,11 +148,70 @@ public class TextualConventionTest {
         Assert.assertEquals(new Counter64(2), tc.parse("2"));
     }
 
+    @Test
+    public void testNumeric() throws MibException {
+        Assert.assertEquals(-5L, SmiType.INTEGER.convertToLong(new Integer32(-5)));
+        Assert.assertEquals(NumericKind.Type.SIGNED, SmiType.INTEGER.getNumericKind().getType());
+        Assert.assertEquals(4294967295L, SmiType.Gauge32.convertToLong(new Gauge32(4294967295L)));
+        Assert.assertEquals(NumericKind.Type.GAUGE, SmiType.Gauge32.getNumericKind().getType());
+        Assert.assertEquals(1230L, SmiType.TimeTicks.convertToLong(new TimeTicks(123)));
+        Assert.assertEquals(NumericKind.Type.TICKS, SmiType.TimeTicks.getNumericKind().getType());
+        Assert.assertEquals(-1L, SmiType.Counter64.convertToLong(new Counter64(-1)));
+        Assert.assertEquals(1.8446744073709552E19, SmiType.Counter64.convertToDouble(new Counter64(-1)), 0);
+        Assert.assertTrue(SmiType.Counter64.getNumericKind().isUnsigned64());
+        Assert.assertNull(SmiType.OctetString.getNumericKind());
+        Assert.assertThrows(UnsupportedOperationException.class, () -> SmiType.OctetString.convertToDouble(new OctetString("a")));
+
+        // The scale of the display hint
+        TextualConvention tc = SmiType.INTEGER.getTextualConvention("d-3", SmiType.INTEGER);
+        Assert.assertEquals(3, tc.getNumericKind().getScale());
+        Assert.assertEquals(1234L, tc.convertToLong(new Integer32(1234)));
+        Assert.assertEquals(1.234, tc.convertToDouble(new Integer32(1234)), 1e-12);
+        Assert.assertEquals(0, SmiType.Unsigned32.getTextualConvention("x", SmiType.Unsigned32).getNumericKind().getScale());
+        ObjectType ot = new ObjectType(new AnnotedSyntax(tc, null, null), false, null);
+        Assert.assertEquals(-0.5, ot.convertToDouble(new Integer32(-500)), 1e-12);
+        Assert.assertEquals(NumericKind.Type.SIGNED, ot.getNumericKind().getType());
+    }
+
     @Test
     public void testDateTime() {
         TextualConvention tc = new TextualConvention.DateAndTime();
         Assert.assertEquals("2015-10-13,12:45:53.8,+2:0", tc.format(tc.parse("2015-10-13,12:45:53.8,+2:0")));
         Assert.assertEquals("2015-10-13,12:45:53.8", tc.format(tc.parse("2015-10-13,12:45:53.8")));
+        Assert.assertNull(tc.parse("2015-10-13,12:45:53"));
+        Assert.assertNull(tc.parse("2015-10-13,12:45:53.8,"));
+        Assert.assertNull(tc.parse("2015-10-13,12:45:53.8,*2:0"));
+        Assert.assertNull(tc.parse("2015-10-256,12:45:53.8"));
+        // The bounds of the fields, formatted as signed values
+        for (String date: new String[] {"32767-127-127,127:127:127.127,+127:127", "0-0-0,0:0:0.0,-0:0"}) {
+            Assert.assertEquals(date, tc.format(tc.parse(date)));
+        }
+        Assert.assertNull(tc.parse("32768-10-13,12:45:53.8"));
+        Assert.assertNull(tc.parse("2015-10-128,12:45:53.8"));
+        Assert.assertNull(tc.parse("2015-10-200,12:45:53.8"));
+        Assert.assertNull(tc.parse("2015-10-13,12:45:53.8,+128:0"));
+        StringBuilder formatted = new StringBuilder("date=");
+        ((TextualConvention.DateAndTime) tc).patternFormat((OctetString) tc.parse("2015-10-13,12:45:53.8"), formatted);
+        Assert.assertEquals("date=2015-10-13,12:45:53.8", formatted.toString());
+    }
+
+    @Test
+    public void testDateTimeConvert() {
+        TextualConvention.DateAndTime tc = new TextualConvention.DateAndTime();
+        OffsetDateTime expected = OffsetDateTime.of(2015, 10, 13, 12, 45, 53, 800_000_000, ZoneOffset.ofHours(2));
+        Assert.assertEquals(expected, tc.toOffsetDateTime(tc.parse("2015-10-13,12:45:53.8,+2:0"), ZoneOffset.UTC));
+        Assert.assertEquals(expected.toInstant(), tc.toInstant(tc.parse("2015-10-13,12:45:53.8,+2:0"), ZoneOffset.UTC));
+        Assert.assertEquals(expected.withOffsetSameLocal(ZoneOffset.ofHoursMinutes(-5, -30)), tc.toOffsetDateTime(tc.parse("2015-10-13,12:45:53.8,-5:30"), ZoneOffset.UTC));
+        // Without time zone, the default one is used
+        Assert.assertEquals(expected, tc.toOffsetDateTime(tc.parse("2015-10-13,12:45:53.8"), ZoneOffset.ofHours(2)));
+        // A leap second
+        Assert.assertEquals(Instant.parse("2016-12-31T00:00:00Z"), tc.toInstant(tc.parse("2016-12-30,23:59:60.0"), ZoneOffset.UTC));
+        // Invalid values, like the empty dates some agents send
+        Assert.assertNull(tc.toInstant(new OctetString(new byte[8]), ZoneOffset.UTC));
+        Assert.assertNull(tc.toInstant(tc.parse("2015-2-30,12:45:53.8"), ZoneOffset.UTC));
+        Assert.assertNull(tc.toInstant(new OctetString(new byte[]{1, 2, 3}), ZoneOffset.UTC));
+        Instant[] column = tc.toInstants(List.of(tc.parse("2015-10-13,12:45:53.8,+2:0"), new OctetString(new byte[8])), ZoneOffset.UTC);
+        Assert.assertArrayEquals(new Instant[] {expected.toInstant(), null}, column);
     }
 
 }